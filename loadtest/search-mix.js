@@ -0,0 +1,71 @@
+// 搜索混合负载：关键词搜索、审定详情高级搜索、批量搜索（含语义子查询）和个性化推荐
+//
+// 以固定到达率（每秒请求数）施压，到达率与响应时间无关，服务端变慢时请求会积压而不是自动降速，
+// 这样测得的 p99 才能反映该吞吐下的真实排队情况。
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e RATE=200 -e DURATION=2m loadtest/search-mix.js
+//
+// 对比方法见 loadtest/README.md
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const RATE = parseInt(__ENV.RATE || '100');
+const DURATION = __ENV.DURATION || '2m';
+const P99_TARGET_MS = parseInt(__ENV.P99_TARGET_MS || '500');
+
+export const options = {
+    scenarios: {
+        mix: {
+            executor: 'constant-arrival-rate',
+            rate: RATE,
+            timeUnit: '1s',
+            duration: DURATION,
+            preAllocatedVUs: Math.max(50, RATE),
+            maxVUs: Math.max(500, RATE * 5),
+        },
+    },
+    thresholds: {
+        http_req_duration: [`p(99)<${P99_TARGET_MS}`],
+        http_req_failed: ['rate<0.01'],
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const KEYWORDS = ['郑单958', '先玉335', '隆平', '抗倒伏', 'zd958', '登海', '中黄13', '扬麦'];
+const CROPS = ['玉米', '水稻', '小麦', '大豆'];
+const SEMANTIC = ['抗倒伏的水稻品种', '高产耐密植玉米', '抗赤霉病小麦', '早熟高蛋白大豆'];
+
+function pick(values) {
+    return values[Math.floor(Math.random() * values.length)];
+}
+
+const JSON_HEADERS = { headers: { 'Content-Type': 'application/json' } };
+
+export default function () {
+    const r = Math.random();
+    let res;
+    if (r < 0.4) {
+        res = http.get(`${BASE_URL}/api/search/seeds?keyword=${encodeURIComponent(pick(KEYWORDS))}&page=0&pageSize=10`,
+            { tags: { endpoint: 'seeds' } });
+    } else if (r < 0.65) {
+        res = http.post(`${BASE_URL}/api/seeds/search/advanced`, JSON.stringify({
+            cropName: pick(CROPS),
+            page: 1 + Math.floor(Math.random() * 5),
+            pageSize: 20,
+        }), Object.assign({ tags: { endpoint: 'approvals' } }, JSON_HEADERS));
+    } else if (r < 0.85) {
+        res = http.post(`${BASE_URL}/api/search/batch`, JSON.stringify({
+            queries: {
+                seeds: { type: 'seeds', keyword: pick(KEYWORDS) },
+                semantic: { type: 'semantic', keyword: pick(SEMANTIC), topK: 5 },
+                gmo: { type: 'gmoCount' },
+            },
+        }), Object.assign({ tags: { endpoint: 'batch' } }, JSON_HEADERS));
+    } else {
+        res = http.get(`${BASE_URL}/api/recommend/guess-like?userId=load-${__VU}&limit=6`,
+            { tags: { endpoint: 'recommend' } });
+    }
+    check(res, { 'status is 200': (response) => response.status === 200 });
+}
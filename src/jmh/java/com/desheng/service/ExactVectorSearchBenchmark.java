@@ -0,0 +1,87 @@
+package com.desheng.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 精确向量检索内核的微基准
+ * dot：单行点积，对比标量实现和 Vector API 实现；search：对 rows 个候选行做精确 top-10 检索（按块复制 + 当前内核）
+ *
+ * 运行：mvn -Pjmh test-compile exec:exec（可用 -Djmh.benchmarks=正则 只运行部分基准）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ExactVectorSearchBenchmark {
+
+    @Param({"384", "1536"})
+    public int dimensions;
+
+    @Param({"5000"})
+    public int rows;
+
+    private float[] query;
+    private float[] block;
+    private SegmentedVectors matrix;
+    private int[] candidates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        query = randomVector(random);
+        block = randomVector(random);
+        matrix = new SegmentedVectors(dimensions, null);
+        matrix.ensureCapacity(rows, 0);
+        candidates = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            matrix.put(i, randomVector(random));
+            candidates[i] = i;
+        }
+    }
+
+    @Benchmark
+    public float scalarDot() {
+        return ExactVectorSearch.scalarDot(query, block, 0);
+    }
+
+    @Benchmark
+    public float vectorApiDot() {
+        return VectorApiDot.dot(query, block, 0);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] search() {
+        return ExactVectorSearch.search(query, matrix, candidates, rows, 10).rows();
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
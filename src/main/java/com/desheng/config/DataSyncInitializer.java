@@ -1,5 +1,6 @@
 package com.desheng.config;
 
+import com.desheng.service.SeedApprovalDetailsService;
 import com.desheng.service.SeedSyncService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +18,7 @@ import org.springframework.stereotype.Component;
 public class DataSyncInitializer implements ApplicationRunner {
 
     private final SeedSyncService seedSyncService;
+    private final SeedApprovalDetailsService seedApprovalDetailsService;
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
@@ -30,5 +32,12 @@ public class DataSyncInitializer implements ApplicationRunner {
             log.error("Data sync initialization failed", e);
             // 不中断应用启动，但记录错误
         }
+        
+        try {
+            // 审定详情只保存在 ES 中，从 ES 加载到本地降级索引
+            seedApprovalDetailsService.rebuildLocalIndex();
+        } catch (Exception e) {
+            log.error("Failed to build local search index for seed approval details", e);
+        }
     }
 }
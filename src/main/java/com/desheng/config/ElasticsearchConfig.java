@@ -1,6 +1,11 @@
 package com.desheng.config;
 
+import co.elastic.clients.transport.ElasticsearchTransport;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchClient;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
 /**
@@ -12,4 +17,19 @@ import org.springframework.data.elasticsearch.repository.config.EnableElasticsea
 public class ElasticsearchConfig {
     // Spring Boot 会自动配置 Elasticsearch 连接
     // 具体配置在 application.properties 中
+
+    /**
+     * 异步 Elasticsearch 客户端
+     * 与同步客户端共用同一个 transport（底层 RestClient 本身是异步的），请求发出后不占用调用线程
+     */
+    @Bean
+    public ReactiveElasticsearchClient reactiveElasticsearchClient(ElasticsearchTransport transport) {
+        return new ReactiveElasticsearchClient(transport);
+    }
+
+    @Bean
+    public ReactiveElasticsearchTemplate reactiveElasticsearchTemplate(ReactiveElasticsearchClient client,
+                                                                       ElasticsearchConverter converter) {
+        return new ReactiveElasticsearchTemplate(client, converter);
+    }
 }
@@ -30,10 +30,20 @@ public class ElasticsearchIndexInitializer implements CommandLineRunner {
             // 创建种子审定详情索引
             elasticsearchIndexService.createSeedApprovalDetailsIndex();
             
+            // 创建输入联想索引
+            elasticsearchIndexService.createSeedSuggestIndex();
+            
             log.info("Successfully initialized all Elasticsearch indexes");
         } catch (Exception e) {
             log.error("Failed to initialize Elasticsearch indexes", e);
             // 不抛出异常，允许应用继续启动
         }
+
+        try {
+            // 索引没有重建时（创建失败或沿用已有索引），补上后来新增的子字段
+            elasticsearchIndexService.migrateSeedApprovalDetailsMapping();
+        } catch (Exception e) {
+            log.error("Failed to migrate seed approval details mapping", e);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.desheng.config;
+
+import com.desheng.model.HotSearchDto;
+import com.desheng.service.CachingEmbeddingModel;
+import com.desheng.service.SearchHistoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Embedding 缓存预热器
+ * 启动完成后以及之后定期把热搜词的向量加载进缓存，热门查询的第一次语义搜索也不需要调用 Embedding 接口
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class EmbeddingCacheWarmer {
+
+    private final CachingEmbeddingModel cachingEmbeddingModel;
+    private final SearchHistoryService searchHistoryService;
+
+    @Value("${semantic-search.embedding-cache.warm-up-size:100}")
+    private int warmUpSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${semantic-search.embedding-cache.warm-up-interval:30m}",
+            initialDelayString = "${semantic-search.embedding-cache.warm-up-interval:30m}")
+    public void warmUp() {
+        if (warmUpSize <= 0) {
+            return;
+        }
+        try {
+            List<String> queries = searchHistoryService.getHotSearches(warmUpSize).stream()
+                    .map(HotSearchDto::getQuery)
+                    .collect(Collectors.toList());
+            int embedded = cachingEmbeddingModel.warm(queries);
+            log.info("Embedding cache warmed up - hot queries: {}, newly embedded: {}", queries.size(), embedded);
+        } catch (Exception e) {
+            log.warn("Failed to warm up embedding cache: {}", e.getMessage());
+        }
+    }
+}
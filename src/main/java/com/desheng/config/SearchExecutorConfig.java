@@ -0,0 +1,88 @@
+package com.desheng.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 搜索并发执行线程池配置
+ * 用于批量搜索、混合搜索等需要并行调用多个后端的场景
+ *
+ * 开启 spring.threads.virtual.enabled（需要 Java 21）时，每个任务使用一个虚拟线程，
+ * 阻塞 I/O 期间不占用平台线程；并发上限用于保护下游（ES、Redis、Embedding API）
+ */
+@Configuration
+public class SearchExecutorConfig {
+
+    @Bean(name = "searchExecutor")
+    public AsyncTaskExecutor searchExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${search.executor.core-size:8}") int coreSize,
+            @Value("${search.executor.max-size:32}") int maxSize,
+            @Value("${search.executor.queue-capacity:200}") int queueCapacity,
+            @Value("${search.executor.virtual-concurrency-limit:256}") int virtualConcurrencyLimit) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("search-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualConcurrencyLimit);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("search-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 批量向量化线程池
+     * 线程数即并行调用 Embedding 接口的批次数，与搜索线程池隔离，全量索引不影响在线搜索
+     */
+    @Bean(name = "embeddingExecutor")
+    public AsyncTaskExecutor embeddingExecutor(
+            @Value("${vector-store.index.concurrency:4}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setThreadNamePrefix("embedding-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 查询向量微批处理线程池
+     * 线程数即同时进行的批量调用数（max-in-flight）
+     */
+    @Bean(name = "embeddingBatchExecutor")
+    public AsyncTaskExecutor embeddingBatchExecutor(
+            @Value("${semantic-search.embedding.micro-batch.max-in-flight:4}") int maxInFlight) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxInFlight);
+        executor.setMaxPoolSize(maxInFlight);
+        executor.setThreadNamePrefix("embedding-batch-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 本地 Embedding 模型推理线程池
+     * CPU 密集型任务，线程数默认等于 CPU 核数
+     */
+    @Bean(name = "embeddingInferenceExecutor")
+    public AsyncTaskExecutor embeddingInferenceExecutor(
+            @Value("${semantic-search.embedding.local.threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(size);
+        executor.setMaxPoolSize(size);
+        executor.setThreadNamePrefix("embedding-inference-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -1,42 +1,335 @@
 package com.desheng.config;
 
+import com.desheng.service.ApprovalVectorIndexService;
+import com.desheng.service.CachingEmbeddingModel;
+import com.desheng.service.HashingEmbeddingModel;
+import com.desheng.service.HnswVectorStore;
+import com.desheng.service.MicroBatchingEmbeddingModel;
+import com.desheng.service.ParallelEmbeddingModel;
+import com.desheng.service.SemanticSearchService;
+import com.desheng.service.VectorIndexService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.MetadataMode;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.transformers.TransformersEmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPooled;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 /**
  * Spring AI 配置类
- * 配置 OpenAI Embedding 模型和 Redis 向量存储
+ * 配置 Embedding 模型（OpenAI / 本地模型）和向量存储（种子向量、审定详情分块向量）
  */
 @Configuration
+@Slf4j
 public class SpringAiConfig {
 
     /**
-     * 配置 Redis 向量存储
-     * 使用 OpenAI 的 Embedding 模型将文本转换为向量
+     * 查询向量化：只对 5xx 和网络错误快速重试一次，429 直接失败（查询不排队等待限流恢复）
+     */
+    private static final RetryTemplate QUERY_RETRY_TEMPLATE = RetryTemplate.builder()
+            .maxAttempts(2)
+            .fixedBackoff(200)
+            .retryOn(List.of(HttpServerErrorException.class, ResourceAccessException.class))
+            .traversingCauses()
+            .build();
+
+    /**
+     * 文档批量向量化：不重试，由 EmbeddingPipeline 统一重试（Spring AI 默认模板最多 10 次，会与流水线的重试叠加）
+     */
+    private static final RetryTemplate NO_RETRY_TEMPLATE = RetryTemplate.builder()
+            .maxAttempts(1)
+            .build();
+
+    /**
+     * Embedding 模型（主 Bean）
+     * 由 semantic-search.embedding.provider 选择实现：
+     * - openai：OpenAI Embedding 接口（默认）
+     * - onnx：本地 ONNX Runtime（CPU）句向量模型，必须通过 model-uri / tokenizer-uri 指定（默认配置为多语言模型
+     *   paraphrase-multilingual-MiniLM-L12-v2）；Spring AI 内置的 all-MiniLM-L6-v2 只支持英文，不作为默认值
+     * - hashing：确定性的哈希 Embedding，不依赖网络和模型文件，用于离线环境和测试
+     * 本地模型在推理线程池中按小批次并行推理；并发的单条查询向量化合并为批量调用（micro-batch.max-wait 为 0 时关闭）；
+     * 最外层是查询向量缓存
+     *
+     * 文档批量向量化（向量存储写入）走单独的索引模型：不经过微批处理，OpenAI 模型不做内部重试，
+     * 由 EmbeddingPipeline 统一按 Retry-After / 退避重试，避免两层重试叠加
+     *
+     * 不同模型的向量维度不同，切换模型时需要同时更换 vector-store.redis.index-name / prefix
+     *
+     * semantic-search.embedding.dimensions 大于 0 时 OpenAI 模型输出缩短后的向量（Matryoshka 截断，text-embedding-3 系列支持），
+     * 索引和查询使用同一个模型，维度始终一致；维度记入模型 ID，查询向量缓存和索引清单随之失效
      */
     @Bean
-    @ConditionalOnProperty(name = "spring.data.redis.host")
-    public VectorStore vectorStore(
-            EmbeddingModel embeddingModel,
+    @Primary
+    public CachingEmbeddingModel cachingEmbeddingModel(
+            StringRedisTemplate redisTemplate,
+            MeterRegistry meterRegistry,
+            @Qualifier("embeddingInferenceExecutor") Executor embeddingInferenceExecutor,
+            @Qualifier("embeddingBatchExecutor") Executor embeddingBatchExecutor,
+            @Value("${semantic-search.embedding.provider:openai}") String provider,
+            @Value("${spring.ai.openai.api-key:}") String apiKey,
+            @Value("${spring.ai.openai.base-url:https://api.openai.com}") String baseUrl,
+            @Value("${spring.ai.embedding.openai.model:text-embedding-3-small}") String openAiModel,
+            @Value("${semantic-search.embedding.dimensions:0}") int dimensions,
+            @Value("${semantic-search.embedding.onnx.model-uri:}") String onnxModelUri,
+            @Value("${semantic-search.embedding.onnx.tokenizer-uri:}") String onnxTokenizerUri,
+            @Value("${semantic-search.embedding.onnx.cache-directory:}") String onnxCacheDirectory,
+            @Value("${semantic-search.embedding.hashing.dimensions:384}") int hashingDimensions,
+            @Value("${semantic-search.embedding.local.batch-size:32}") int localBatchSize,
+            @Value("${semantic-search.embedding.micro-batch.max-wait:5ms}") Duration microBatchMaxWait,
+            @Value("${semantic-search.embedding.micro-batch.result-timeout:10s}") Duration microBatchResultTimeout,
+            @Value("${semantic-search.embedding.micro-batch.max-batch-size:32}") int microBatchMaxSize,
+            @Value("${semantic-search.embedding.micro-batch.max-in-flight:4}") int microBatchMaxInFlight,
+            @Value("${semantic-search.embedding-cache.max-size:10000}") long maxSize,
+            @Value("${semantic-search.embedding-cache.ttl:7d}") Duration ttl) throws Exception {
+        EmbeddingModel delegate;
+        EmbeddingModel indexingDelegate;
+        String modelId;
+        switch (provider) {
+            case "openai" -> {
+                OpenAiApi openAiApi = openAiApi(apiKey, baseUrl);
+                delegate = openAiEmbeddingModel(openAiApi, openAiModel, dimensions, QUERY_RETRY_TEMPLATE);
+                indexingDelegate = openAiEmbeddingModel(openAiApi, openAiModel, dimensions, NO_RETRY_TEMPLATE);
+                modelId = dimensions > 0 ? openAiModel + "@" + dimensions : openAiModel;
+            }
+            case "onnx" -> {
+                if (onnxModelUri.isBlank() || onnxTokenizerUri.isBlank()) {
+                    throw new IllegalArgumentException("semantic-search.embedding.onnx.model-uri and tokenizer-uri "
+                            + "are required for the onnx provider");
+                }
+                delegate = new ParallelEmbeddingModel(
+                        onnxEmbeddingModel(onnxModelUri, onnxTokenizerUri, onnxCacheDirectory),
+                        embeddingInferenceExecutor, localBatchSize);
+                indexingDelegate = delegate;
+                modelId = "onnx:" + onnxModelName(onnxModelUri);
+            }
+            case "hashing" -> {
+                delegate = new ParallelEmbeddingModel(new HashingEmbeddingModel(hashingDimensions),
+                        embeddingInferenceExecutor, localBatchSize);
+                indexingDelegate = delegate;
+                modelId = "hashing:" + hashingDimensions;
+            }
+            default -> throw new IllegalArgumentException("Unknown embedding provider: " + provider);
+        }
+        if (dimensions > 0 && !"openai".equals(provider)) {
+            log.warn("semantic-search.embedding.dimensions is only supported by the openai provider, ignoring it for {}",
+                    provider);
+        }
+        if (!microBatchMaxWait.isZero()) {
+            delegate = new MicroBatchingEmbeddingModel(delegate, embeddingBatchExecutor, microBatchMaxWait,
+                    microBatchResultTimeout, microBatchMaxSize, microBatchMaxInFlight, meterRegistry);
+        }
+        log.info("Using embedding model {}", modelId);
+        return new CachingEmbeddingModel(delegate, indexingDelegate, modelId, redisTemplate, maxSize, ttl,
+                meterRegistry);
+    }
+
+    /**
+     * OpenAI 接口客户端
+     * OpenAiApi 会在 base-url 后拼接 /v1/embeddings，这里去掉配置中多余的 /v1
+     * 错误响应使用 Spring 默认的处理器，抛出带响应头的 HttpClientErrorException / HttpServerErrorException：
+     * Spring AI 默认的处理器只保留状态码和响应体（NonTransientAiException），429 的 Retry-After 会丢失
+     */
+    private OpenAiApi openAiApi(String apiKey, String baseUrl) {
+        return OpenAiApi.builder()
+                .apiKey(apiKey)
+                .baseUrl(baseUrl.replaceAll("/v1/?$", ""))
+                .responseErrorHandler(new DefaultResponseErrorHandler())
+                .build();
+    }
+
+    /**
+     * OpenAI Embedding 模型
+     * 指定 dimensions 时 dimensions() 按模型名查表仍会返回完整维度，这里覆盖为实际输出的维度（向量索引按它建 schema）
+     */
+    private OpenAiEmbeddingModel openAiEmbeddingModel(OpenAiApi openAiApi, String model, int dimensions,
+                                                      RetryTemplate retryTemplate) {
+        if (dimensions <= 0) {
+            return new OpenAiEmbeddingModel(openAiApi, MetadataMode.EMBED,
+                    OpenAiEmbeddingOptions.builder().model(model).build(), retryTemplate);
+        }
+        return new OpenAiEmbeddingModel(openAiApi, MetadataMode.EMBED,
+                OpenAiEmbeddingOptions.builder().model(model).dimensions(dimensions).build(), retryTemplate) {
+            @Override
+            public int dimensions() {
+                return dimensions;
+            }
+        };
+    }
+
+    /**
+     * ONNX Runtime 句向量模型，模型和分词器首次加载后缓存到本地目录
+     */
+    private TransformersEmbeddingModel onnxEmbeddingModel(String modelUri, String tokenizerUri,
+                                                          String cacheDirectory) throws Exception {
+        TransformersEmbeddingModel model = new TransformersEmbeddingModel(MetadataMode.EMBED);
+        model.setModelResource(modelUri);
+        model.setTokenizerResource(tokenizerUri);
+        if (!cacheDirectory.isEmpty()) {
+            model.setResourceCacheDirectory(cacheDirectory);
+        }
+        model.afterPropertiesSet();
+        return model;
+    }
+
+    /**
+     * 模型 ID 中的模型名：Hugging Face 导出的模型文件都叫 model.onnx，这类地址取仓库名
+     * （.../paraphrase-multilingual-MiniLM-L12-v2/resolve/main/onnx/model.onnx），其他地址取文件名
+     */
+    private static String onnxModelName(String uri) {
+        int resolve = uri.indexOf("/resolve/");
+        String path = resolve >= 0 ? uri.substring(0, resolve) : uri;
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Redis 向量存储共用的 Jedis 连接池（vector-store.type=redis，默认）
+     * 连接池大小决定向量检索的最大并发，虚拟线程模式下请求并发不再受 Tomcat 线程数限制，需要相应调大
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "vector-store.type", havingValue = "redis", matchIfMissing = true)
+    public JedisPooled vectorStoreJedis(
             @Value("${spring.data.redis.host:localhost}") String host,
             @Value("${spring.data.redis.port:6379}") int port,
-            @Value("${spring.data.redis.password:}") String password) {
+            @Value("${spring.data.redis.password:}") String password,
+            @Value("${vector-store.redis.pool.max-total:8}") int maxTotal,
+            @Value("${vector-store.redis.pool.max-wait:2s}") Duration maxWait) {
+        ConnectionPoolConfig poolConfig = new ConnectionPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxTotal);
+        poolConfig.setMaxWait(maxWait);
         
-        // 创建 JedisPooled 连接池
-        JedisPooled jedisPooled;
+        DefaultJedisClientConfig.Builder clientConfig = DefaultJedisClientConfig.builder();
         if (password != null && !password.isEmpty()) {
-            jedisPooled = new JedisPooled(host, port, null, password);
-        } else {
-            jedisPooled = new JedisPooled(host, port);
+            clientConfig.password(password);
         }
+        return new JedisPooled(poolConfig, new HostAndPort(host, port), clientConfig.build());
+    }
+
+    /**
+     * 配置 Redis 向量存储（vector-store.type=redis，默认）
+     * 使用配置的 Embedding 模型将文本转换为向量
+     * 配置了 semantic-search.embedding.dimensions 时索引名和前缀带上维度后缀（如 seed-vector-index-256），
+     * 不同维度的索引在 Redis 中并存，切换维度时旧索引不受影响
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "vector-store.type", havingValue = "redis", matchIfMissing = true)
+    public VectorStore vectorStore(
+            EmbeddingModel embeddingModel,
+            JedisPooled vectorStoreJedis,
+            @Value("${vector-store.redis.index-name:seed-vector-index-v2}") String indexName,
+            @Value("${vector-store.redis.prefix:seed-vector:}") String prefix,
+            @Value("${semantic-search.embedding.dimensions:0}") int dimensions) {
         
         // 返回 Redis 向量存储
-        return org.springframework.ai.vectorstore.redis.RedisVectorStore.builder(jedisPooled, embeddingModel)
+        // 作物类型、审定地区声明为 TAG，审定年份声明为 NUMERIC，元数据过滤在 Redis 的 KNN 查询中执行
+        // 查询结果只返回 schema 中声明的元数据字段：种子 ID 和列表展示字段也需要声明，搜索结果不必再回查 MySQL
+        return RedisVectorStore.builder(vectorStoreJedis, embeddingModel)
+                .indexName(VectorIndexService.scoped(indexName, dimensions))
+                .prefix(VectorIndexService.scoped(prefix, dimensions))
+                .metadataFields(
+                        RedisVectorStore.MetadataField.tag(SemanticSearchService.META_CROP_TYPE),
+                        RedisVectorStore.MetadataField.tag(SemanticSearchService.META_APPROVAL_REGION),
+                        RedisVectorStore.MetadataField.numeric(SemanticSearchService.META_APPROVAL_YEAR),
+                        RedisVectorStore.MetadataField.numeric(SemanticSearchService.META_SEED_ID),
+                        RedisVectorStore.MetadataField.text(SemanticSearchService.META_VARIETY_NAME),
+                        RedisVectorStore.MetadataField.text(SemanticSearchService.META_APPROVAL_NUMBER),
+                        RedisVectorStore.MetadataField.text(SemanticSearchService.META_COMPANY))
+                .initializeSchema(true)
+                .build();
+    }
+
+    /**
+     * 审定详情分块向量的 Redis 向量存储（vector-store.type=redis，默认）
+     * 与种子向量分开建索引；审定详情 ID、字段名、作物名称声明为 TAG，查询结果按审定详情 ID 聚合
+     */
+    @Bean
+    @Qualifier("approvalVectorStore")
+    @ConditionalOnProperty(name = "vector-store.type", havingValue = "redis", matchIfMissing = true)
+    public VectorStore redisApprovalVectorStore(
+            EmbeddingModel embeddingModel,
+            JedisPooled vectorStoreJedis,
+            @Value("${vector-store.approval.redis.index-name:approval-chunk-index}") String indexName,
+            @Value("${vector-store.approval.redis.prefix:approval-chunk:}") String prefix,
+            @Value("${semantic-search.embedding.dimensions:0}") int dimensions) {
+        return RedisVectorStore.builder(vectorStoreJedis, embeddingModel)
+                .indexName(VectorIndexService.scoped(indexName, dimensions))
+                .prefix(VectorIndexService.scoped(prefix, dimensions))
+                .metadataFields(
+                        RedisVectorStore.MetadataField.tag(ApprovalVectorIndexService.META_APPROVAL_ID),
+                        RedisVectorStore.MetadataField.tag(ApprovalVectorIndexService.META_FIELD),
+                        RedisVectorStore.MetadataField.tag(ApprovalVectorIndexService.META_CROP_NAME),
+                        RedisVectorStore.MetadataField.numeric(ApprovalVectorIndexService.META_CHUNK),
+                        RedisVectorStore.MetadataField.text(SemanticSearchService.META_VARIETY_NAME),
+                        RedisVectorStore.MetadataField.text(SemanticSearchService.META_APPROVAL_NUMBER))
+                .initializeSchema(true)
                 .build();
     }
+
+    /**
+     * 配置进程内 HNSW 向量存储（vector-store.type=hnsw）
+     * 语义搜索在 JVM 内完成，不需要 RediSearch；snapshot-path 为空时索引只在内存中，每次启动重新向量化
+     * quantization=int8 / binary 时用量化编码检索、全精度向量重排；设置 vector-file 后全精度向量放在内存映射文件中
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "vector-store.type", havingValue = "hnsw")
+    public HnswVectorStore hnswVectorStore(
+            EmbeddingModel embeddingModel,
+            @Value("${vector-store.hnsw.m:16}") int m,
+            @Value("${vector-store.hnsw.ef-construction:200}") int efConstruction,
+            @Value("${vector-store.hnsw.ef-search:64}") int efSearch,
+            @Value("${vector-store.hnsw.snapshot-path:}") String snapshotPath,
+            @Value("${vector-store.hnsw.quantization:none}") String quantization,
+            @Value("${vector-store.hnsw.rerank-factor:4}") int rerankFactor,
+            @Value("${vector-store.hnsw.vector-file:}") String vectorFile) {
+        return new HnswVectorStore(embeddingModel, embeddingModel.dimensions(), m, efConstruction, efSearch,
+                snapshotPath.isEmpty() ? null : Path.of(snapshotPath),
+                quantization, rerankFactor, vectorFile.isEmpty() ? null : Path.of(vectorFile));
+    }
+
+    /**
+     * 审定详情分块向量的进程内 HNSW 向量存储（vector-store.type=hnsw）
+     * 图参数与种子索引相同，快照写入单独的文件；分块数是种子数的数倍，可以单独开启量化、把全精度向量放到内存映射文件中
+     */
+    @Bean
+    @Qualifier("approvalVectorStore")
+    @ConditionalOnProperty(name = "vector-store.type", havingValue = "hnsw")
+    public HnswVectorStore hnswApprovalVectorStore(
+            EmbeddingModel embeddingModel,
+            @Value("${vector-store.hnsw.m:16}") int m,
+            @Value("${vector-store.hnsw.ef-construction:200}") int efConstruction,
+            @Value("${vector-store.hnsw.ef-search:64}") int efSearch,
+            @Value("${vector-store.approval.hnsw.snapshot-path:}") String snapshotPath,
+            @Value("${vector-store.approval.hnsw.quantization:none}") String quantization,
+            @Value("${vector-store.hnsw.rerank-factor:4}") int rerankFactor,
+            @Value("${vector-store.approval.hnsw.vector-file:}") String vectorFile) {
+        return new HnswVectorStore(embeddingModel, embeddingModel.dimensions(), m, efConstruction, efSearch,
+                snapshotPath.isEmpty() ? null : Path.of(snapshotPath),
+                quantization, rerankFactor, vectorFile.isEmpty() ? null : Path.of(vectorFile));
+    }
 }
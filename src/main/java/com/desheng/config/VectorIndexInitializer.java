@@ -1,15 +1,18 @@
 package com.desheng.config;
 
 import com.desheng.service.SemanticSearchService;
+import com.desheng.service.VectorIndexService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 /**
  * 向量索引初始化器
- * 在应用启动完成后，自动初始化种子数据的向量索引
+ * 在应用启动完成后，增量同步种子数据的向量索引（内容没有变化的种子不会重新向量化）；
+ * 审定详情的分块向量索引需要滚动读取全部审定详情，默认不在启动时同步（vector-store.approval.sync-on-startup）
  */
 @Component
 @Slf4j
@@ -17,6 +20,10 @@ import org.springframework.stereotype.Component;
 public class VectorIndexInitializer {
 
     private final SemanticSearchService semanticSearchService;
+    private final VectorIndexService vectorIndexService;
+
+    @Value("${vector-store.approval.sync-on-startup:false}")
+    private boolean approvalSyncOnStartup;
 
     /**
      * 应用启动完成后自动初始化向量索引
@@ -25,12 +32,25 @@ public class VectorIndexInitializer {
     public void initializeVectorIndex() {
         log.info("Application started, initializing vector index for semantic search...");
         
+        vectorIndexService.dropLegacyIndexes();
+        
         try {
             // 自动初始化向量索引
-            semanticSearchService.indexAllSeeds();
+            semanticSearchService.indexAllSeeds(false);
             log.info("Vector index initialized successfully");
         } catch (Exception e) {
             log.warn("Failed to initialize vector index automatically. You can manually call POST /api/semantic-search/index", e);
         }
+        
+        if (!approvalSyncOnStartup) {
+            log.info("Approval vector index sync on startup disabled. You can manually call POST /api/semantic-search/approvals/index");
+            return;
+        }
+        try {
+            semanticSearchService.indexAllApprovals(false);
+            log.info("Approval vector index initialized successfully");
+        } catch (Exception e) {
+            log.warn("Failed to initialize approval vector index automatically. You can manually call POST /api/semantic-search/approvals/index", e);
+        }
     }
 }
@@ -0,0 +1,92 @@
+package com.desheng.controller;
+
+import com.desheng.model.dto.IndexSortBenchmarkResult;
+import com.desheng.model.dto.VectorBenchmarkResult;
+import com.desheng.service.IndexSortBenchmarkService;
+import com.desheng.service.SemanticSearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 基准测试控制器
+ * 基准测试会创建临时索引、对整个向量索引做暴力扫描，占用大量 CPU 和内存，只在显式开启 benchmark.enabled 时注册
+ */
+@RestController
+@RequestMapping("/api/admin/benchmark")
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "benchmark.enabled", havingValue = "true")
+public class BenchmarkController {
+
+    private final IndexSortBenchmarkService indexSortBenchmarkService;
+    private final SemanticSearchService semanticSearchService;
+
+    /**
+     * POST /api/admin/benchmark/index-sort
+     * 索引排序基准测试 - 同一批合成文档分别写入带 / 不带索引排序的临时索引，对比纯筛选浏览查询的延迟
+     *
+     * @param documents 合成文档数（默认 1000000）
+     * @param samples 每个索引的查询数（默认 500）
+     */
+    @PostMapping("/index-sort")
+    public ResponseEntity<List<IndexSortBenchmarkResult>> indexSort(
+            @RequestParam(defaultValue = "1000000") int documents,
+            @RequestParam(defaultValue = "500") int samples) {
+        log.info("Index sort benchmark - documents: {}, samples: {}", documents, samples);
+        return ResponseEntity.ok(indexSortBenchmarkService.benchmark(
+                Math.min(documents, 10_000_000), Math.min(samples, 10000)));
+    }
+
+    /**
+     * GET /api/admin/benchmark/vector
+     * 向量检索基准测试 - 随机取已索引的向量作为查询，对比全精度 / int8 / binary 检索的 recall@K 和延迟，
+     * 以及精确检索内核（exact-kernel）与逐个计算的暴力扫描（exact-scan）的延迟
+     * 只支持进程内 HNSW 向量存储（vector-store.type=hnsw）
+     *
+     * @param topK K（默认 10）
+     * @param samples 查询数量（默认 200）
+     */
+    @GetMapping("/vector")
+    public ResponseEntity<List<VectorBenchmarkResult>> vector(
+            @RequestParam(defaultValue = "10") int topK,
+            @RequestParam(defaultValue = "200") int samples) {
+        log.info("Vector index benchmark - topK: {}, samples: {}", topK, samples);
+
+        try {
+            return ResponseEntity.ok(semanticSearchService.benchmarkVectorIndex(Math.min(topK, 100), Math.min(samples, 10000)));
+        } catch (IllegalStateException e) {
+            log.warn("Vector index benchmark unavailable: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * GET /api/admin/benchmark/dimensions
+     * 降维基准测试 - 把全维向量截断到各维度，对比暴力扫描的 recall@K（以全维结果为准）、延迟和每个向量的内存
+     * 只支持进程内 HNSW 向量存储，且索引需要是全维向量
+     *
+     * @param dimensions 候选维度（默认 256,512,1024）
+     * @param topK K（默认 10）
+     * @param samples 查询数量（默认 200）
+     */
+    @GetMapping("/dimensions")
+    public ResponseEntity<List<VectorBenchmarkResult>> dimensions(
+            @RequestParam(defaultValue = "256,512,1024") List<Integer> dimensions,
+            @RequestParam(defaultValue = "10") int topK,
+            @RequestParam(defaultValue = "200") int samples) {
+        log.info("Vector dimension benchmark - dimensions: {}, topK: {}, samples: {}", dimensions, topK, samples);
+
+        try {
+            return ResponseEntity.ok(semanticSearchService.benchmarkDimensions(
+                    Math.min(topK, 100), Math.min(samples, 10000), dimensions));
+        } catch (IllegalStateException e) {
+            log.warn("Vector dimension benchmark unavailable: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
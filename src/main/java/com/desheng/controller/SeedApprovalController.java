@@ -4,10 +4,14 @@ import com.desheng.model.dto.*;
 import com.desheng.service.SeedApprovalDetailsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/seeds")
@@ -18,6 +22,9 @@ public class SeedApprovalController {
 
     private final SeedApprovalDetailsService seedApprovalDetailsService;
 
+    @Value("${search.async.enabled:false}")
+    private boolean asyncEnabled;
+
     /**
      * 获取种子审定详情
      * GET /api/seeds/{id}/approval-details
@@ -43,16 +50,40 @@ public class SeedApprovalController {
      * POST /api/seeds/search/advanced
      */
     @PostMapping("/search/advanced")
-    public ResponseEntity<ApiResponse<PagedResponse<SeedSearchResultDto>>> advancedSearch(
+    public CompletableFuture<ResponseEntity<ApiResponse<PagedResponse<SeedSearchResultDto>>>> advancedSearch(
             @RequestBody AdvancedSearchRequest request) {
         log.info("POST /api/seeds/search/advanced - request: {}", request);
         
+        if (request.getFacets() != null) {
+            List<String> unsupported = request.getFacets().stream()
+                    .filter(facet -> !SeedApprovalDetailsService.FACETS.contains(facet))
+                    .toList();
+            if (!unsupported.isEmpty()) {
+                return CompletableFuture.completedFuture(ResponseEntity.ok(ApiResponse.error(400,
+                        "Invalid request parameters",
+                        "Unsupported facets: " + unsupported + ", supported: " + SeedApprovalDetailsService.FACETS)));
+            }
+        }
+        
         try {
-            PagedResponse<SeedSearchResultDto> results = seedApprovalDetailsService.advancedSearch(request);
-            return ResponseEntity.ok(ApiResponse.success(results));
+            CompletableFuture<PagedResponse<SeedSearchResultDto>> results = asyncEnabled
+                    ? seedApprovalDetailsService.advancedSearchAsync(request)
+                    : CompletableFuture.completedFuture(seedApprovalDetailsService.advancedSearch(request));
+            return results
+                    .thenApply(response -> ResponseEntity.ok(ApiResponse.success(response)))
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof TimeoutException) {
+                            log.warn("Advanced search timed out - request: {}", request);
+                            return ResponseEntity.ok(ApiResponse.error(504, "Search timed out", cause.getMessage()));
+                        }
+                        log.error("Error in advanced search", cause);
+                        return ResponseEntity.ok(ApiResponse.error(500, "Internal server error", cause.getMessage()));
+                    });
         } catch (Exception e) {
             log.error("Error in advanced search", e);
-            return ResponseEntity.ok(ApiResponse.error(500, "Internal server error", e.getMessage()));
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.ok(ApiResponse.error(500, "Internal server error", e.getMessage())));
         }
     }
 
@@ -2,13 +2,26 @@ package com.desheng.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.desheng.model.SeedDocument;
+import com.desheng.model.dto.BatchSearchRequest;
+import com.desheng.model.dto.BatchSearchResponse;
+import com.desheng.model.dto.HybridSearchResponse;
+import com.desheng.model.dto.SuggestionDto;
+import com.desheng.service.BatchSearchService;
+import com.desheng.service.HybridSearchService;
 import com.desheng.service.SeedSearchService;
+import com.desheng.service.SeedSuggestService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
 /**
  * 种子搜索控制器
  * 使用 Elasticsearch 进行高级搜索，支持拼音搜索、全文搜索等
@@ -21,6 +34,15 @@ import org.springframework.web.bind.annotation.*;
 public class SeedSearchController {
 
     private final SeedSearchService seedSearchService;
+    private final SeedSuggestService seedSuggestService;
+    private final BatchSearchService batchSearchService;
+    private final HybridSearchService hybridSearchService;
+
+    /**
+     * 异步模式：搜索请求通过异步 ES 客户端执行，等待响应期间不占用 Servlet 线程
+     */
+    @Value("${search.async.enabled:false}")
+    private boolean asyncEnabled;
 
     /**
      * GET /api/search/seeds
@@ -32,7 +54,7 @@ public class SeedSearchController {
      * @return 搜索结果
      */
     @GetMapping("/seeds")
-    public ResponseEntity<Page<SeedDocument>> searchSeeds(
+    public CompletableFuture<ResponseEntity<Page<SeedDocument>>> searchSeeds(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int pageSize) {
@@ -40,11 +62,13 @@ public class SeedSearchController {
         log.info("GET /api/search/seeds - keyword: {}, page: {}, pageSize: {}", keyword, page, pageSize);
         
         if (keyword == null || keyword.trim().isEmpty()) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
         
-        Page<SeedDocument> results = seedSearchService.searchSeeds(keyword, page, pageSize);
-        return ResponseEntity.ok(results);
+        CompletableFuture<Page<SeedDocument>> results = asyncEnabled
+                ? seedSearchService.searchSeedsAsync(keyword, page, pageSize)
+                : CompletableFuture.completedFuture(seedSearchService.searchSeeds(keyword, page, pageSize));
+        return results.thenApply(ResponseEntity::ok);
     }
 
     /**
@@ -52,15 +76,17 @@ public class SeedSearchController {
      * 按作物类型搜索
      */
     @GetMapping("/crop-type")
-    public ResponseEntity<Page<SeedDocument>> searchByCropType(
+    public CompletableFuture<ResponseEntity<Page<SeedDocument>>> searchByCropType(
             @RequestParam String cropType,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int pageSize) {
         
         log.info("GET /api/search/crop-type - cropType: {}", cropType);
         
-        Page<SeedDocument> results = seedSearchService.searchByCropType(cropType, page, pageSize);
-        return ResponseEntity.ok(results);
+        CompletableFuture<Page<SeedDocument>> results = asyncEnabled
+                ? seedSearchService.searchByCropTypeAsync(cropType, page, pageSize)
+                : CompletableFuture.completedFuture(seedSearchService.searchByCropType(cropType, page, pageSize));
+        return results.thenApply(ResponseEntity::ok);
     }
 
     /**
@@ -68,15 +94,17 @@ public class SeedSearchController {
      * 按审定地区搜索
      */
     @GetMapping("/region")
-    public ResponseEntity<Page<SeedDocument>> searchByRegion(
+    public CompletableFuture<ResponseEntity<Page<SeedDocument>>> searchByRegion(
             @RequestParam String region,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int pageSize) {
         
         log.info("GET /api/search/region - region: {}", region);
         
-        Page<SeedDocument> results = seedSearchService.searchByApprovalRegion(region, page, pageSize);
-        return ResponseEntity.ok(results);
+        CompletableFuture<Page<SeedDocument>> results = asyncEnabled
+                ? seedSearchService.searchByApprovalRegionAsync(region, page, pageSize)
+                : CompletableFuture.completedFuture(seedSearchService.searchByApprovalRegion(region, page, pageSize));
+        return results.thenApply(ResponseEntity::ok);
     }
 
     /**
@@ -94,7 +122,7 @@ public class SeedSearchController {
      * @return 搜索结果
      */
     @GetMapping("/advanced")
-    public ResponseEntity<Page<SeedDocument>> advancedSearch(
+    public CompletableFuture<ResponseEntity<Page<SeedDocument>>> advancedSearch(
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false) String cropType,
             @RequestParam(required = false) String approvalRegion,
@@ -107,8 +135,90 @@ public class SeedSearchController {
         log.info("GET /api/search/advanced - keyword: {}, cropType: {}, region: {}, years: {}-{}, company: {}",
                  keyword, cropType, approvalRegion, startYear, endYear, company);
         
-        Page<SeedDocument> results = seedSearchService.advancedSearch(keyword, cropType, approvalRegion,
-                                                                      startYear, endYear, company, page, pageSize);
-        return ResponseEntity.ok(results);
+        CompletableFuture<Page<SeedDocument>> results = asyncEnabled
+                ? seedSearchService.advancedSearchAsync(keyword, cropType, approvalRegion,
+                                                        startYear, endYear, company, page, pageSize)
+                : CompletableFuture.completedFuture(seedSearchService.advancedSearch(keyword, cropType, approvalRegion,
+                                                        startYear, endYear, company, page, pageSize));
+        return results.thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * GET /api/search/hybrid
+     * 混合搜索：关键词召回和语义召回并行执行，按倒数排名融合（RRF）后返回前 K 个种子
+     * 某一路超时或失败时只返回另一路的结果，并在 degradedLegs 中标记
+     * 
+     * @param query 查询文本
+     * @param topK 返回数量（默认 10，最多 100）
+     * @return 融合后的搜索结果
+     */
+    @GetMapping("/hybrid")
+    public CompletableFuture<ResponseEntity<HybridSearchResponse>> hybridSearch(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "10") int topK) {
+        
+        log.info("GET /api/search/hybrid - query: {}, topK: {}", query, topK);
+        
+        if (query == null || query.trim().isEmpty() || topK <= 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        
+        return hybridSearchService.search(query, Math.min(topK, 100)).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * GET /api/search/suggest
+     * 输入联想（审定编号、品种名汉字/全拼/简拼、申请单位、企业名）
+     * 
+     * @param prefix 已输入的前缀
+     * @param types 建议类型（approvalNumber, varietyName, applicant, company），为空表示全部
+     * @param size 返回数量（默认 10，最多 20）
+     * @return 建议列表
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(required = false) List<String> types,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        log.debug("GET /api/search/suggest - prefix: {}, types: {}", prefix, types);
+        
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        List<SuggestionDto> suggestions = seedSuggestService.suggest(prefix, types, Math.min(size, 20));
+        return ResponseEntity.ok(suggestions);
+    }
+
+    /**
+     * POST /api/search/batch
+     * 批量搜索：一次请求执行多个命名子查询（seeds, approvals, suggest, gmoCount, semantic）
+     * Elasticsearch 子查询合并为一次 _msearch，语义搜索并行执行
+     * 
+     * @param request 命名子查询集合
+     * @return 按名称返回的子查询结果，单个子查询失败时对应结果带 error
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchSearchResponse> batchSearch(@RequestBody BatchSearchRequest request) {
+        
+        log.info("POST /api/search/batch - queries: {}", 
+                request.getQueries() != null ? request.getQueries().keySet() : null);
+        
+        try {
+            return ResponseEntity.ok(batchSearchService.search(request));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid batch search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * 异步搜索超时（下游请求已取消）
+     */
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<Void> handleTimeout(TimeoutException e) {
+        log.warn("Search timed out: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
     }
 }
@@ -1,13 +1,24 @@
 package com.desheng.controller;
 
 import com.desheng.model.SeedVector;
+import com.desheng.model.dto.ApprovalSemanticSearchResult;
+import com.desheng.model.dto.SemanticSearchRequest;
+import com.desheng.service.ApprovalVectorIndexService;
 import com.desheng.service.SemanticSearchService;
+import com.desheng.service.VectorIndexService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 语义搜索控制器
@@ -22,21 +33,27 @@ public class SemanticSearchController {
 
     private final SemanticSearchService semanticSearchService;
 
+    @Value("${search.async.enabled:false}")
+    private boolean asyncEnabled;
+
     /**
      * POST /api/semantic-search/index
-     * 初始化索引 - 将所有种子数据向量化并存储到向量存储
-     * 注意：这是一个初始化操作，应在应用启动时执行一次
+     * 同步索引 - 只向量化新增或内容变化的种子，删除已不存在的种子的向量
+     * 
+     * @param rebuild 为 true 时清空索引后全量重新向量化（默认 false）
      */
     @PostMapping("/index")
-    public ResponseEntity<String> indexSeeds() {
+    public ResponseEntity<String> indexSeeds(@RequestParam(defaultValue = "false") boolean rebuild) {
         log.info("Initializing seed index for semantic search...");
         
         try {
-            semanticSearchService.indexAllSeeds();
-            return ResponseEntity.ok("Seeds indexed successfully for semantic search");
+            VectorIndexService.SyncResult result = semanticSearchService.indexAllSeeds(rebuild);
+            return ResponseEntity.ok(String.format(
+                    "Seeds indexed successfully for semantic search - total: %d, embedded: %d, unchanged: %d, deleted: %d (%s)",
+                    result.total(), result.embedded(), result.unchanged(), result.deleted(), result.stats()));
         } catch (Exception e) {
             log.error("Error indexing seeds", e);
-            return ResponseEntity.badRequest().body("Failed to index seeds: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to index seeds: " + e.getMessage());
         }
     }
 
@@ -46,22 +63,35 @@ public class SemanticSearchController {
      * 
      * @param query 查询文本（例如："抗倒伏的水稻品种"）
      * @param topK 返回最相似的 K 个结果（默认 10）
-     * @return 相似度最高的种子列表
+     * @param threshold 最低相似度（0~1，可选）
+     * @param cropType 作物类型（可选，精确匹配）
+     * @param approvalRegion 审定地区（可选，精确匹配）
+     * @param startYear 审定年份开始（可选）
+     * @param endYear 审定年份结束（可选）
+     * @param hydrate 是否附带完整种子信息（默认 false，只返回向量元数据中的列表字段，不访问数据库）
+     * @return 相似度最高的种子列表（按相似度排序）
      * 
      * 示例：
      * GET /api/semantic-search/search?query=抗倒伏的水稻品种&topK=5
-     * GET /api/semantic-search/search?query=高产量玉米&topK=10
-     * GET /api/semantic-search/search?query=抗病性强的大豆&topK=5
+     * GET /api/semantic-search/search?query=高产量玉米&topK=10&startYear=2020
+     * GET /api/semantic-search/search?query=抗病性强&cropType=大豆&threshold=0.6
      */
     @GetMapping("/search")
-    public ResponseEntity<List<SeedVector>> semanticSearch(
+    public CompletableFuture<ResponseEntity<List<SeedVector>>> semanticSearch(
             @RequestParam String query,
-            @RequestParam(defaultValue = "10") int topK) {
+            @RequestParam(defaultValue = "10") int topK,
+            @RequestParam(required = false) Double threshold,
+            @RequestParam(required = false) String cropType,
+            @RequestParam(required = false) String approvalRegion,
+            @RequestParam(required = false) Integer startYear,
+            @RequestParam(required = false) Integer endYear,
+            @RequestParam(defaultValue = "false") boolean hydrate) {
         
-        log.info("Semantic search - query: {}, topK: {}", query, topK);
+        log.info("Semantic search - query: {}, topK: {}, threshold: {}, cropType: {}, region: {}, years: {}-{}, hydrate: {}",
+                 query, topK, threshold, cropType, approvalRegion, startYear, endYear, hydrate);
         
-        if (query == null || query.trim().isEmpty()) {
-            return ResponseEntity.badRequest().build();
+        if (query == null || query.trim().isEmpty() || !validSearchArguments(topK, threshold)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
         
         // 限制 topK 的最大值
@@ -69,13 +99,123 @@ public class SemanticSearchController {
             topK = 100;
         }
         
+        SemanticSearchRequest request = SemanticSearchRequest.builder()
+                .query(query)
+                .topK(topK)
+                .similarityThreshold(threshold)
+                .cropType(cropType)
+                .approvalRegion(approvalRegion)
+                .startYear(startYear)
+                .endYear(endYear)
+                .hydrate(hydrate)
+                .build();
+        
         try {
-            List<SeedVector> results = semanticSearchService.semanticSearch(query, topK);
-            return ResponseEntity.ok(results);
+            CompletableFuture<List<SeedVector>> results = asyncEnabled
+                    ? semanticSearchService.semanticSearchAsync(request)
+                    : CompletableFuture.completedFuture(semanticSearchService.semanticSearch(request));
+            return results
+                    .thenApply(ResponseEntity::ok)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        if (cause instanceof TimeoutException) {
+                            log.warn("Semantic search timed out - query: {}", query);
+                            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+                        }
+                        log.error("Error performing semantic search", cause);
+                        return ResponseEntity.status(errorStatus(cause)).build();
+                    });
         } catch (Exception e) {
             log.error("Error performing semantic search", e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(errorStatus(e)).build());
+        }
+    }
+
+    /**
+     * POST /api/semantic-search/approvals/index
+     * 同步审定详情索引 - 长文本按字段分块向量化，只处理新增或版本号变化的审定详情，删除已不存在的审定详情的分块
+     * 
+     * @param rebuild 为 true 时清空索引后全量重新向量化（默认 false）
+     */
+    @PostMapping("/approvals/index")
+    public ResponseEntity<String> indexApprovals(@RequestParam(defaultValue = "false") boolean rebuild) {
+        log.info("Initializing seed approval index for semantic search...");
+        
+        try {
+            ApprovalVectorIndexService.SyncResult result = semanticSearchService.indexAllApprovals(rebuild);
+            return ResponseEntity.ok(String.format(
+                    "Seed approval details indexed successfully for semantic search - total: %d, embedded: %d (%d chunks), unchanged: %d, deleted: %d (%s)",
+                    result.total(), result.embedded(), result.chunks(), result.unchanged(), result.deleted(), result.stats()));
+        } catch (Exception e) {
+            log.error("Error indexing seed approval details", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to index seed approval details: " + e.getMessage());
+        }
+    }
+
+    /**
+     * GET /api/semantic-search/approvals
+     * 审定详情语义搜索 - 在抗性、品质性状、产量表现、栽培技术等长文本的分块中检索，按审定详情聚合（取最相似分块）
+     * 
+     * @param query 查询文本（例如："抗稻瘟病、适合机插的品种"）
+     * @param topK 返回的审定详情数（默认 10）
+     * @param threshold 最低相似度（0~1，可选）
+     * @param cropName 作物名称（可选，精确匹配）
+     * @return 审定详情列表（按最相似分块的相似度排序，附带命中字段和片段）
+     * 
+     * 示例：
+     * GET /api/semantic-search/approvals?query=抗稻瘟病适合机插&topK=5
+     * GET /api/semantic-search/approvals?query=耐密植高产&cropName=玉米
+     */
+    @GetMapping("/approvals")
+    public ResponseEntity<List<ApprovalSemanticSearchResult>> searchApprovals(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "10") int topK,
+            @RequestParam(required = false) Double threshold,
+            @RequestParam(required = false) String cropName) {
+        log.info("Approval semantic search - query: {}, topK: {}, threshold: {}, cropName: {}",
+                 query, topK, threshold, cropName);
+        
+        if (query == null || query.trim().isEmpty() || !validSearchArguments(topK, threshold)) {
             return ResponseEntity.badRequest().build();
         }
+        
+        try {
+            return ResponseEntity.ok(semanticSearchService.searchApprovals(query, Math.min(topK, 100), threshold, cropName));
+        } catch (Exception e) {
+            log.error("Error performing approval semantic search", e);
+            return ResponseEntity.status(errorStatus(e)).build();
+        }
+    }
+
+    /**
+     * topK 至少为 1，相似度阈值（可选）在 [0, 1] 内；超出范围时 Spring AI 构建 SearchRequest 会抛出异常
+     */
+    private static boolean validSearchArguments(int topK, Double threshold) {
+        return topK >= 1 && (threshold == null || (threshold >= 0 && threshold <= 1));
+    }
+
+    /**
+     * 搜索失败时的响应状态：参数不合法返回 400，执行器已满（拒绝任务）返回 503，
+     * 向量存储 / 嵌入服务等下游故障返回 500
+     */
+    private static HttpStatus errorStatus(Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        if (error instanceof RejectedExecutionException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * GET /api/semantic-search/index
+     * 向量索引元数据 - 模型 ID、向量维度、文档数和最近一次同步时间
+     */
+    @GetMapping("/index")
+    public ResponseEntity<Map<String, String>> getIndexInfo() {
+        return ResponseEntity.ok(semanticSearchService.vectorIndexInfo());
     }
 
     /**
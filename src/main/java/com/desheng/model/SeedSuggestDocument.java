@@ -0,0 +1,60 @@
+package com.desheng.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.CompletionField;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+
+/**
+ * Elasticsearch Document for search suggestions
+ * 输入联想（自动补全）文档，映射由 ElasticsearchIndexService 创建
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(indexName = "seed_suggestions", createIndex = false)
+public class SeedSuggestDocument {
+
+    /**
+     * 文档 ID：来源:来源ID:类型
+     */
+    @Id
+    private String id;
+
+    /**
+     * 建议类型（approvalNumber, varietyName, applicant, company）
+     */
+    @Field(type = FieldType.Keyword)
+    private String type;
+
+    /**
+     * 来源索引（seeds, seed_approval_details）
+     */
+    @Field(type = FieldType.Keyword)
+    private String source;
+
+    /**
+     * 来源文档 ID
+     */
+    @Field(type = FieldType.Keyword)
+    private String refId;
+
+    /**
+     * 展示文本
+     */
+    @Field(type = FieldType.Keyword)
+    private String text;
+
+    /**
+     * 补全字段 - 输入包括原文、全拼和简拼
+     */
+    @CompletionField(maxInputLength = 50)
+    private Completion suggest;
+}
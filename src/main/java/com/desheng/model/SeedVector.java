@@ -40,16 +40,31 @@ public class SeedVector {
      */
     private String company;
 
+    /**
+     * 审定年份
+     */
+    private Integer approvalYear;
+
+    /**
+     * 审定地区
+     */
+    private String approvalRegion;
+
     /**
      * 综合文本内容（用于向量化）
      */
     private String content;
 
     /**
-     * 相似度分数（搜索结果时使用）
+     * 相似度分数（搜索结果时使用，0~1，越大越相似）
      */
     private Double similarity;
 
+    /**
+     * 完整的种子信息（搜索请求指定 hydrate 时填充）
+     */
+    private Seed seed;
+
     /**
      * 生成综合文本内容
      * 将种子的多个字段组合成一个文本用于向量化
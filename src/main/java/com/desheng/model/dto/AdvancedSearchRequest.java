@@ -24,6 +24,15 @@ public class AdvancedSearchRequest {
     private Boolean isGMO;
     private String approvalAuthority;
     private String suitableRegion;
+
+    /**
+     * 需要返回的分面统计：cropName, approvalYear, isGMO, approvalAuthority, suitableRegion
+     * 每个分面忽略自身的筛选条件，只受其他条件约束
+     */
+    private List<String> facets;
+
+    @Builder.Default
+    private Integer facetSize = 20;
     
     @Builder.Default
     private Integer page = 1;
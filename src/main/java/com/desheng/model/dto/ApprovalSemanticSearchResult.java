@@ -0,0 +1,37 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 审定详情语义搜索结果（按审定详情聚合后的一条）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ApprovalSemanticSearchResult {
+
+    private String approvalId;
+    private String varietyName;
+    private String approvalNumber;
+    private String cropName;
+    /**
+     * 相似度：命中分块中的最高值（max-sim）
+     */
+    private Double similarity;
+    /**
+     * 最相似分块的来源字段，如 resistance、cultivationTechniques
+     */
+    private String matchedField;
+    /**
+     * 最相似分块的文本
+     */
+    private String snippet;
+    /**
+     * 该审定详情命中的分块数
+     */
+    private Integer matchedChunks;
+}
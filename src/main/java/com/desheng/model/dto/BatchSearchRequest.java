@@ -0,0 +1,74 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchSearchRequest {
+
+    /**
+     * 命名子查询，响应中按相同名称返回
+     */
+    @Builder.Default
+    private Map<String, SubQuery> queries = new LinkedHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SubQuery {
+
+        /**
+         * 子查询类型：seeds, approvals, suggest, gmoCount, semantic
+         */
+        private String type;
+
+        /**
+         * seeds / semantic：关键词或查询文本
+         */
+        private String keyword;
+
+        /**
+         * seeds：页码（0-indexed）和每页数量
+         */
+        @Builder.Default
+        private Integer page = 0;
+
+        @Builder.Default
+        private Integer pageSize = 10;
+
+        /**
+         * approvals：审定详情高级搜索条件
+         */
+        private AdvancedSearchRequest approval;
+
+        /**
+         * suggest：前缀、建议类型和数量
+         */
+        private String prefix;
+        private List<String> suggestTypes;
+
+        @Builder.Default
+        private Integer size = 10;
+
+        /**
+         * gmoCount：转基因状态
+         */
+        private Boolean isGMO;
+
+        /**
+         * semantic：返回最相似的 K 个结果
+         */
+        @Builder.Default
+        private Integer topK = 10;
+    }
+}
@@ -0,0 +1,37 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchSearchResponse {
+
+    @Builder.Default
+    private Map<String, SubResult> results = new LinkedHashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SubResult {
+        private String type;
+        private Object data;
+        private String error;
+
+        public static SubResult success(String type, Object data) {
+            return SubResult.builder().type(type).data(data).build();
+        }
+
+        public static SubResult error(String type, String error) {
+            return SubResult.builder().type(type).error(error).build();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetBucket {
+
+    private String key;
+    private Long count;
+}
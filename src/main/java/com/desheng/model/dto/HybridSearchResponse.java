@@ -0,0 +1,27 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HybridSearchResponse {
+
+    private String query;
+
+    @Builder.Default
+    private List<HybridSearchResultDto> results = new ArrayList<>();
+
+    /**
+     * 超时或失败、未参与融合的召回通道（lexical, semantic）
+     */
+    @Builder.Default
+    private List<String> degradedLegs = new ArrayList<>();
+}
@@ -0,0 +1,20 @@
+package com.desheng.model.dto;
+
+import com.desheng.model.SeedDocument;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HybridSearchResultDto {
+
+    private Long seedId;
+    private Double score;
+    private Integer lexicalRank;
+    private Integer semanticRank;
+    private SeedDocument seed;
+}
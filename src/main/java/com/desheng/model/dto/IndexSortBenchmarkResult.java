@@ -0,0 +1,33 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 索引排序基准测试结果（一种索引配置）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IndexSortBenchmarkResult {
+
+    /**
+     * 索引配置：index-sort（按审定年份倒序、ID 正序存储）/ no-sort
+     */
+    private String method;
+    private Integer documents;
+    private Integer queries;
+    /**
+     * 客户端测得的端到端延迟
+     */
+    private Double p50Micros;
+    private Double p99Micros;
+    /**
+     * ES 返回的 took（服务端查询耗时）
+     */
+    private Double tookP50Millis;
+    private Double tookP99Millis;
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -13,20 +14,42 @@ import java.util.List;
 @Builder
 public class PagedResponse<T> {
 
+    public static final String TOTAL_EXACT = "eq";
+    public static final String TOTAL_LOWER_BOUND = "gte";
+
     private List<T> items;
     private Long total;
     private Integer page;
     private Integer pageSize;
+    /**
+     * 总页数（total 只是下限时为空）
+     */
     private Integer totalPages;
 
+    /**
+     * total 的含义：eq 为精确值，gte 为下限（纯筛选浏览只统计到上限，超过后 total 为上限值）
+     */
+    private String totalHitsRelation;
+
+    /**
+     * 分面统计（仅在请求了分面时返回）
+     */
+    private Map<String, List<FacetBucket>> facets;
+
     public static <T> PagedResponse<T> of(List<T> items, Long total, Integer page, Integer pageSize) {
-        int totalPages = (int) Math.ceil((double) total / pageSize);
+        return of(items, total, true, page, pageSize);
+    }
+
+    public static <T> PagedResponse<T> of(List<T> items, Long total, boolean totalExact,
+                                          Integer page, Integer pageSize) {
+        Integer totalPages = totalExact ? (int) Math.ceil((double) total / pageSize) : null;
         return PagedResponse.<T>builder()
                 .items(items)
                 .total(total)
                 .page(page)
                 .pageSize(pageSize)
                 .totalPages(totalPages)
+                .totalHitsRelation(totalExact ? TOTAL_EXACT : TOTAL_LOWER_BOUND)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,53 @@
+package com.desheng.model.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * 带总数精确度的分页结果
+ * 纯筛选浏览只统计到上限，此时 totalElements 只是下限：
+ * 不能据此判断是否还有下一页，当前页取满时视为还有下一页，总页数至少覆盖到下一页
+ */
+public class SearchPage<T> extends PageImpl<T> {
+
+    private final boolean totalExact;
+
+    public SearchPage(List<T> content, Pageable pageable, long total, boolean totalExact) {
+        super(content, pageable, total);
+        this.totalExact = totalExact;
+    }
+
+    /**
+     * totalElements 的含义：eq 为精确值，gte 为下限
+     */
+    public String getTotalHitsRelation() {
+        return totalExact ? PagedResponse.TOTAL_EXACT : PagedResponse.TOTAL_LOWER_BOUND;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (totalExact) {
+            return super.hasNext();
+        }
+        return getSize() > 0 && getNumberOfElements() == getSize() || getNumber() + 1 < lowerBoundPages();
+    }
+
+    @Override
+    public boolean isLast() {
+        return !hasNext();
+    }
+
+    @Override
+    public int getTotalPages() {
+        if (totalExact) {
+            return super.getTotalPages();
+        }
+        return Math.max(lowerBoundPages(), getNumber() + (hasNext() ? 2 : 1));
+    }
+
+    private int lowerBoundPages() {
+        return getSize() == 0 ? 1 : (int) Math.ceil((double) getTotalElements() / getSize());
+    }
+}
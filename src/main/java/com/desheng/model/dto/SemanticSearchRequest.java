@@ -0,0 +1,36 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SemanticSearchRequest {
+
+    private String query;
+
+    @Builder.Default
+    private Integer topK = 10;
+
+    /**
+     * 最低相似度（0~1），为空表示不限制
+     */
+    private Double similarityThreshold;
+
+    /**
+     * 元数据过滤条件（在 Redis 中执行）
+     */
+    private String cropType;
+    private String approvalRegion;
+    private Integer startYear;
+    private Integer endYear;
+
+    /**
+     * 为 true 时结果附带完整种子信息（种子缓存，未命中的批量查询 MySQL）；默认只返回向量元数据中的列表字段，不访问数据库
+     */
+    private Boolean hydrate;
+}
@@ -0,0 +1,34 @@
+package com.desheng.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 向量检索基准测试结果（一种检索方式）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VectorBenchmarkResult {
+
+    /**
+     * 检索方式：exact-scan / exact-kernel / hnsw / hnsw+int8 / hnsw+binary / int8-scan / binary-scan，降维测试为 exact-scan@维度
+     */
+    private String method;
+    private Integer topK;
+    private Integer queries;
+    private Double recallAtK;
+    private Double p50Micros;
+    private Double p99Micros;
+    /**
+     * 遍历 / 扫描时每个向量占用的内存（量化方式不含用于重排的全精度向量）
+     */
+    private Integer bytesPerVector;
+    /**
+     * 向量维度
+     */
+    private Integer dimensions;
+}
@@ -0,0 +1,17 @@
+package com.desheng.repository;
+
+import com.desheng.model.SeedSuggestDocument;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Elasticsearch Repository for SeedSuggestDocument
+ */
+@Repository
+public interface SeedSuggestElasticsearchRepository extends ElasticsearchRepository<SeedSuggestDocument, String> {
+
+    /**
+     * 删除某个来源文档的建议
+     */
+    void deleteBySourceAndRefId(String source, String refId);
+}
@@ -0,0 +1,450 @@
+package com.desheng.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import com.desheng.model.SeedApprovalDocument;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 审定详情向量索引服务
+ * 审定详情（SeedApprovalDocument）的长文本按字段分块向量化，写入单独的向量索引（approvalVectorStore）：
+ * 1. 每个文本字段（抗性、品质性状、产量表现、栽培技术等）单独分块，超过 chunk.max-chars 的字段在句子边界处切开，
+ *    相邻分块重叠 chunk.overlap 个字符；分块文本带上品种名称和字段名，单独检索时也有完整语义
+ * 2. 分块文档 ID 由审定详情 ID 和分块序号确定（name-based UUID），重新向量化时按序号覆盖，分块变少时删除多出的序号
+ * 3. Redis Hash（清单）记录每个审定详情已写入的 模型 ID + 版本号（version）+ 分块内容的 SHA-256 + 分块数，
+ *    都没变的文档不再向量化；分块参数变化或版本号没有随内容更新时按内容哈希重新向量化
+ * 4. 全量同步从 ES 滚动读取（scroll），分块逐条交给向量化流水线，一个文档的所有分块写入成功后才记入清单
+ * 5. 审定详情的保存、删除先进入待写队列（同一文档只保留最后一次操作），定时合并写入
+ *
+ * 查询时按分块检索，再按审定详情 ID 聚合（取最相似分块的分数，max-sim），见 SemanticSearchService.searchApprovals
+ */
+@Service
+@Slf4j
+public class ApprovalVectorIndexService {
+
+    public static final String META_APPROVAL_ID = "approvalId";
+    public static final String META_FIELD = "field";
+    public static final String META_CHUNK = "chunk";
+    public static final String META_CROP_NAME = "cropName";
+
+    /**
+     * 参与向量化的文本字段（按顺序编号分块）
+     */
+    private static final List<ChunkField> FIELDS = List.of(
+            new ChunkField("detailedDescription", "详细描述", SeedApprovalDocument::getDetailedDescription),
+            new ChunkField("resistance", "抗性", SeedApprovalDocument::getResistance),
+            new ChunkField("qualityTraits", "品质性状", SeedApprovalDocument::getQualityTraits),
+            new ChunkField("yieldSummary", "产量表现", SeedApprovalDocument::getYieldSummary),
+            new ChunkField("cultivationRequirements", "栽培要求", SeedApprovalDocument::getCultivationRequirements),
+            new ChunkField("cultivationTechniques", "栽培技术", SeedApprovalDocument::getCultivationTechniques),
+            new ChunkField("cultivationPrecautions", "栽培注意事项", SeedApprovalDocument::getCultivationPrecautions),
+            new ChunkField("approvalOpinion", "审定意见", SeedApprovalDocument::getApprovalOpinion),
+            new ChunkField("suitableRegions", "适宜地区", document -> document.getSuitableRegions() != null
+                    ? String.join("、", document.getSuitableRegions()) : null),
+            new ChunkField("plantingRestrictions", "种植限制", SeedApprovalDocument::getPlantingRestrictions));
+
+    private final VectorStore vectorStore;
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final String modelId;
+    private final VectorManifest manifestStore;
+    private final int pageSize;
+    private final int maxChars;
+    private final int overlap;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final PendingWrites<String, SeedApprovalDocument> pending = new PendingWrites<>("approval vector");
+
+    public ApprovalVectorIndexService(@Qualifier("approvalVectorStore") VectorStore vectorStore,
+                                      ElasticsearchTemplate elasticsearchTemplate,
+                                      StringRedisTemplate redisTemplate,
+                                      EmbeddingPipeline embeddingPipeline,
+                                      CachingEmbeddingModel embeddingModel,
+                                      @Value("${vector-store.approval.manifest-key:vector-manifest:approvals}") String manifestKey,
+                                      @Value("${vector-store.approval.redis.prefix:approval-chunk:}") String vectorPrefix,
+                                      @Value("${vector-store.index.page-size:500}") int pageSize,
+                                      @Value("${vector-store.approval.chunk.max-chars:400}") int maxChars,
+                                      @Value("${vector-store.approval.chunk.overlap:50}") int overlap,
+                                      @Value("${semantic-search.embedding.dimensions:0}") int configuredDimensions) {
+        this.vectorStore = vectorStore;
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.embeddingPipeline = embeddingPipeline;
+        this.modelId = embeddingModel.getModelId();
+        this.manifestStore = new VectorManifest(redisTemplate, vectorStore,
+                VectorIndexService.scoped(manifestKey, configuredDimensions),
+                VectorIndexService.scoped(vectorPrefix, configuredDimensions));
+        this.pageSize = pageSize;
+        this.maxChars = maxChars;
+        this.overlap = Math.min(overlap, maxChars / 2);
+    }
+
+    /**
+     * 增量同步所有审定详情
+     * 从 ES 滚动读取全部文档，版本号或模型有变化的文档分块后交给向量化流水线，删除 ES 中已不存在的文档的分块
+     *
+     * @param rebuild true 时忽略清单，清空后全量重新向量化
+     */
+    public SyncResult syncAllApprovals(boolean rebuild) {
+        writeLock.lock();
+        try {
+            return sync(rebuild);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private SyncResult sync(boolean rebuild) {
+        Map<Object, Object> manifest = rebuild ? Map.of() : manifestStore.entries();
+
+        if (manifest.isEmpty()) {
+            purge();
+        } else if (vectorStore instanceof HnswVectorStore hnsw) {
+            // 进程内索引可能比清单旧（快照之后写入的向量在重启后丢失），第一个分块不在索引中的文档重新向量化
+            manifest = new HashMap<>(manifest);
+            manifest.replaceAll((field, entry) -> chunkCount(entry) == 0
+                    || hnsw.contains(chunkId(String.valueOf(field), 0)) ? entry : "");
+        }
+
+        Set<String> current = new HashSet<>();
+        int embedded = 0;
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(QueryBuilders.matchAll(m -> m))
+                .withPageable(PageRequest.of(0, pageSize))
+                .build();
+        IndexRun run = new IndexRun("approvals", manifest);
+        try (SearchHitsIterator<SeedApprovalDocument> hits =
+                     elasticsearchTemplate.searchForStream(query, SeedApprovalDocument.class)) {
+            while (hits.hasNext()) {
+                SeedApprovalDocument document = hits.next().getContent();
+                current.add(document.getId());
+                if (run.add(document)) {
+                    embedded++;
+                }
+            }
+        }
+        EmbeddingPipeline.Stats stats = run.finish();
+
+        List<String> removed = manifest.keySet().stream()
+                .map(String::valueOf)
+                .filter(id -> !current.contains(id))
+                .collect(Collectors.toList());
+        if (!removed.isEmpty()) {
+            delete(removed, manifest);
+        }
+
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            hnsw.snapshot();
+        }
+
+        SyncResult result = new SyncResult(current.size(), embedded, current.size() - embedded, removed.size(),
+                run.chunks.get(), stats);
+        log.info("Approval vector index synced - total: {}, embedded: {} ({} chunks), unchanged: {}, deleted: {}",
+                result.total(), result.embedded(), result.chunks(), result.unchanged(), result.deleted());
+        return result;
+    }
+
+    /**
+     * 审定详情保存后排队写入分块向量（不阻塞调用方），由 flushPending 批量写入
+     */
+    public void enqueueUpsert(SeedApprovalDocument document) {
+        if (document.getId() != null) {
+            pending.upsert(document.getId(), document);
+        }
+    }
+
+    /**
+     * 审定详情删除后排队删除分块向量
+     */
+    public void enqueueDelete(String approvalId) {
+        pending.delete(approvalId);
+    }
+
+    /**
+     * 批量写入待写队列：版本号有变化的文档分块后经向量化流水线写入，删除的文档删除全部分块。
+     * 同步正在执行时跳过本轮；失败的文档放回队列（期间有更新的以更新为准），下一轮重试
+     */
+    @Scheduled(fixedDelayString = "${vector-store.write.flush-interval:2s}")
+    public void flushPending() {
+        pending.flush(writeLock, this::write);
+    }
+
+    private void write(PendingWrites.Batch<String, SeedApprovalDocument> batch) {
+        List<String> ids = new ArrayList<>(batch.upserts().keySet());
+        ids.addAll(batch.deletes());
+        Map<Object, Object> manifest = manifestStore.entries(ids);
+
+        IndexRun run = new IndexRun("approvals-pending", manifest);
+        int upserted = 0;
+        for (SeedApprovalDocument document : batch.upserts().values()) {
+            if (run.add(document)) {
+                upserted++;
+            }
+        }
+        run.finish();
+        if (!batch.deletes().isEmpty()) {
+            delete(batch.deletes(), manifest);
+        }
+        log.info("Flushed pending approval vector writes - upserted: {} ({} chunks), unchanged: {}, deleted: {}",
+                upserted, run.chunks.get(), batch.upserts().size() - upserted, batch.deletes().size());
+    }
+
+    /**
+     * 一次分块向量化运行：比较清单跳过未变化的文档，分块逐条提交给流水线；
+     * 分块数变少的文档在运行结束后删除多出的分块
+     */
+    private class IndexRun {
+
+        private final Map<Object, Object> manifest;
+        private final EmbeddingPipeline.Run<Chunk> run;
+        private final Map<String, PendingDocument> inFlight = new ConcurrentHashMap<>();
+        private final List<String> staleChunks = new ArrayList<>();
+        private final AtomicInteger chunks = new AtomicInteger();
+
+        private IndexRun(String name, Map<Object, Object> manifest) {
+            this.manifest = manifest;
+            this.run = embeddingPipeline.start(name, vectorStore, Chunk::toDocument, this::recordWritten);
+        }
+
+        /**
+         * 提交一个文档，返回是否需要重新向量化
+         */
+        private boolean add(SeedApprovalDocument document) {
+            List<Chunk> documentChunks = chunk(document);
+            String fingerprint = fingerprint(document, documentChunks);
+            Object indexed = manifest.get(document.getId());
+            if (indexed != null && fingerprint.equals(fingerprintOf(indexed))) {
+                return false;
+            }
+
+            int previousCount = indexed != null ? chunkCount(indexed) : 0;
+            for (int ordinal = documentChunks.size(); ordinal < previousCount; ordinal++) {
+                staleChunks.add(chunkId(document.getId(), ordinal));
+            }
+            if (documentChunks.isEmpty()) {
+                manifestStore.put(document.getId(), entry(fingerprint, 0));
+                return true;
+            }
+
+            inFlight.put(document.getId(), new PendingDocument(fingerprint, documentChunks.size()));
+            documentChunks.forEach(run::add);
+            chunks.addAndGet(documentChunks.size());
+            return true;
+        }
+
+        private EmbeddingPipeline.Stats finish() {
+            try {
+                return run.finish();
+            } finally {
+                if (!staleChunks.isEmpty()) {
+                    vectorStore.delete(staleChunks);
+                }
+            }
+        }
+
+        /**
+         * 文档的全部分块写入后才记入清单，中途失败的文档下次同步整体重新向量化
+         */
+        private void recordWritten(List<Chunk> written) {
+            Map<String, String> entries = new HashMap<>();
+            for (Chunk chunk : written) {
+                PendingDocument document = inFlight.get(chunk.approvalId());
+                if (document != null && document.remaining().decrementAndGet() == 0) {
+                    inFlight.remove(chunk.approvalId());
+                    entries.put(chunk.approvalId(), entry(document.fingerprint(), document.chunks()));
+                }
+            }
+            if (!entries.isEmpty()) {
+                manifestStore.putAll(entries);
+            }
+        }
+    }
+
+    /**
+     * 把审定详情按字段切成分块，序号在文档内连续编号
+     */
+    private List<Chunk> chunk(SeedApprovalDocument document) {
+        List<Chunk> chunks = new ArrayList<>();
+        String title = document.getVarietyName() != null ? document.getVarietyName() + " " : "";
+        for (ChunkField field : FIELDS) {
+            String text = field.value().apply(document);
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            for (String part : split(text.trim(), maxChars, overlap)) {
+                chunks.add(new Chunk(document.getId(), chunks.size(), field.name(),
+                        title + field.label() + "：" + part, document));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 按 maxChars 切分长文本：在窗口后半段找最后一个句子边界切开，找不到时硬切；相邻分块重叠 overlap 个字符。
+     * 每个分块的起点至少前进一个字符
+     */
+    static List<String> split(String text, int maxChars, int overlap) {
+        if (text.length() <= maxChars) {
+            return List.of(text);
+        }
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(start + maxChars, text.length());
+            if (end < text.length()) {
+                for (int i = end - 1; i > start + maxChars / 2; i--) {
+                    if (isSentenceEnd(text.charAt(i))) {
+                        end = i + 1;
+                        break;
+                    }
+                }
+            }
+            parts.add(text.substring(start, end).trim());
+            if (end == text.length()) {
+                break;
+            }
+            start = Math.max(end - overlap, start + 1);
+        }
+        return parts;
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '。' || c == '；' || c == '！' || c == '？' || c == ';' || c == '\n';
+    }
+
+    /**
+     * 删除一批审定详情的全部分块和清单记录
+     */
+    private void delete(List<String> approvalIds, Map<Object, Object> manifest) {
+        List<String> chunkIds = new ArrayList<>();
+        for (String approvalId : approvalIds) {
+            Object indexed = manifest.get(approvalId);
+            int count = indexed != null ? chunkCount(indexed) : 0;
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                chunkIds.add(chunkId(approvalId, ordinal));
+            }
+        }
+        if (!chunkIds.isEmpty()) {
+            vectorStore.delete(chunkIds);
+        }
+        manifestStore.remove(approvalIds);
+    }
+
+    /**
+     * 删除分块前缀下的所有文档和清单
+     */
+    private void purge() {
+        long deleted = manifestStore.purge();
+        log.info("Approval vector manifest missing, purged {} existing chunk documents", deleted);
+    }
+
+    /**
+     * 分块文档 ID：由审定详情 ID 和分块序号确定
+     */
+    public static String chunkId(String approvalId, int ordinal) {
+        return UUID.nameUUIDFromBytes(("approval:" + approvalId + ":" + ordinal).getBytes(StandardCharsets.UTF_8))
+                .toString();
+    }
+
+    /**
+     * 模型 ID + 版本号（没有时省略）+ 分块内容的哈希
+     */
+    private String fingerprint(SeedApprovalDocument document, List<Chunk> chunks) {
+        String hash = VectorManifest.sha256(chunks.stream().map(Chunk::text).toList());
+        return document.getVersion() != null
+                ? modelId + ":v" + document.getVersion() + ":" + hash
+                : modelId + ":" + hash;
+    }
+
+    /**
+     * 清单值：指纹 + "|" + 分块数
+     */
+    private static String entry(String fingerprint, int chunks) {
+        return fingerprint + "|" + chunks;
+    }
+
+    private static String fingerprintOf(Object entry) {
+        String value = String.valueOf(entry);
+        int separator = value.lastIndexOf('|');
+        return separator >= 0 ? value.substring(0, separator) : value;
+    }
+
+    private static int chunkCount(Object entry) {
+        String value = String.valueOf(entry);
+        int separator = value.lastIndexOf('|');
+        return separator >= 0 ? Integer.parseInt(value.substring(separator + 1)) : 0;
+    }
+
+    private record ChunkField(String name, String label, Function<SeedApprovalDocument, String> value) {
+    }
+
+    private record PendingDocument(String fingerprint, int chunks, AtomicInteger remaining) {
+
+        private PendingDocument(String fingerprint, int chunks) {
+            this(fingerprint, chunks, new AtomicInteger(chunks));
+        }
+    }
+
+    /**
+     * 审定详情的一个分块
+     *
+     * @param approvalId 审定详情 ID
+     * @param ordinal 文档内的分块序号
+     * @param field 来源字段
+     * @param text 分块文本（带品种名称和字段名）
+     * @param document 所属文档（用于写入列表展示字段）
+     */
+    private record Chunk(String approvalId, int ordinal, String field, String text, SeedApprovalDocument document) {
+
+        private Document toDocument() {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put(META_APPROVAL_ID, approvalId);
+            metadata.put(META_FIELD, field);
+            metadata.put(META_CHUNK, ordinal);
+            metadata.put(META_CROP_NAME, document.getCropName());
+            metadata.put(SemanticSearchService.META_VARIETY_NAME, document.getVarietyName());
+            metadata.put(SemanticSearchService.META_APPROVAL_NUMBER, document.getApprovalNumber());
+            // 元数据不允许为 null，缺失的字段不写入
+            metadata.values().removeIf(Objects::isNull);
+            return new Document(chunkId(approvalId, ordinal), text, metadata);
+        }
+    }
+
+    /**
+     * 同步结果
+     *
+     * @param total ES 中的审定详情数
+     * @param embedded 新增或版本变化、重新向量化的文档数
+     * @param unchanged 跳过的文档数
+     * @param deleted 删除分块的文档数
+     * @param chunks 本次写入的分块数
+     * @param stats 向量化流水线统计
+     */
+    public record SyncResult(int total, int embedded, int unchanged, int deleted, int chunks,
+                             EmbeddingPipeline.Stats stats) {
+    }
+}
@@ -0,0 +1,241 @@
+package com.desheng.service;
+
+import com.desheng.model.SeedApprovalDocument;
+import com.desheng.model.SeedDocument;
+import com.desheng.model.SeedSuggestDocument;
+import com.desheng.model.SeedVector;
+import com.desheng.model.dto.AdvancedSearchRequest;
+import com.desheng.model.dto.BatchSearchRequest;
+import com.desheng.model.dto.BatchSearchResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 批量搜索服务
+ * 搜索页一次请求携带多个子查询：Elasticsearch 子查询合并为一次 _msearch，语义搜索并行执行，
+ * 单个子查询失败只影响自身结果
+ */
+@Service
+@Slf4j
+public class BatchSearchService {
+
+    public static final String TYPE_SEEDS = "seeds";
+    public static final String TYPE_APPROVALS = "approvals";
+    public static final String TYPE_SUGGEST = "suggest";
+    public static final String TYPE_GMO_COUNT = "gmoCount";
+    public static final String TYPE_SEMANTIC = "semantic";
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final SeedSearchService seedSearchService;
+    private final SeedApprovalDetailsService seedApprovalDetailsService;
+    private final SeedSuggestService seedSuggestService;
+    private final SemanticSearchService semanticSearchService;
+    private final Executor searchExecutor;
+
+    @Value("${search.batch.max-queries:10}")
+    private int maxQueries;
+
+    @Value("${search.batch.semantic-timeout:5s}")
+    private Duration semanticTimeout;
+
+    public BatchSearchService(ElasticsearchTemplate elasticsearchTemplate,
+                              SeedSearchService seedSearchService,
+                              SeedApprovalDetailsService seedApprovalDetailsService,
+                              SeedSuggestService seedSuggestService,
+                              SemanticSearchService semanticSearchService,
+                              @Qualifier("searchExecutor") Executor searchExecutor) {
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.seedSearchService = seedSearchService;
+        this.seedApprovalDetailsService = seedApprovalDetailsService;
+        this.seedSuggestService = seedSuggestService;
+        this.semanticSearchService = semanticSearchService;
+        this.searchExecutor = searchExecutor;
+    }
+
+    /**
+     * 执行批量搜索
+     *
+     * @param request 命名子查询集合
+     * @return 按子查询名称返回的结果（失败的子查询带 error 信息）
+     */
+    public BatchSearchResponse search(BatchSearchRequest request) {
+        Map<String, BatchSearchRequest.SubQuery> queries = request.getQueries();
+        if (queries == null || queries.isEmpty()) {
+            return new BatchSearchResponse();
+        }
+        if (queries.size() > maxQueries) {
+            throw new IllegalArgumentException("Too many sub-queries: " + queries.size() + " (max " + maxQueries + ")");
+        }
+
+        log.info("Batch search with {} sub-queries: {}", queries.size(), queries.keySet());
+
+        Map<String, BatchSearchResponse.SubResult> results = new LinkedHashMap<>();
+        Map<String, CompletableFuture<List<SeedVector>>> semanticFutures = new LinkedHashMap<>();
+        List<PendingSearch> pendingSearches = new ArrayList<>();
+
+        queries.forEach((name, subQuery) -> {
+            results.put(name, null);
+            try {
+                if (TYPE_SEMANTIC.equals(subQuery.getType())) {
+                    semanticFutures.put(name, submitSemantic(subQuery));
+                } else {
+                    pendingSearches.add(prepare(name, subQuery));
+                }
+            } catch (Exception e) {
+                log.warn("Invalid batch sub-query {}: {}", name, e.getMessage());
+                results.put(name, BatchSearchResponse.SubResult.error(subQuery.getType(), e.getMessage()));
+            }
+        });
+
+        // 语义搜索已在线程池中执行，这里同时发起一次 _msearch
+        executeMultiSearch(pendingSearches, results);
+
+        long deadline = System.nanoTime() + semanticTimeout.toNanos();
+        semanticFutures.forEach((name, future) ->
+                results.put(name, awaitSemantic(future, deadline)));
+
+        return BatchSearchResponse.builder().results(results).build();
+    }
+
+    private CompletableFuture<List<SeedVector>> submitSemantic(BatchSearchRequest.SubQuery subQuery) {
+        String keyword = requireText(subQuery.getKeyword(), "keyword");
+        int topK = subQuery.getTopK() != null ? subQuery.getTopK() : 10;
+        return CompletableFuture.supplyAsync(() -> semanticSearchService.semanticSearch(keyword, topK), searchExecutor);
+    }
+
+    private BatchSearchResponse.SubResult awaitSemantic(CompletableFuture<List<SeedVector>> future, long deadline) {
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            return BatchSearchResponse.SubResult.success(TYPE_SEMANTIC, future.get(remaining, TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            // 不取消任务：supplyAsync 的 future 取消时不会中断执行中的线程，语义搜索（Embedding 调用、向量检索）
+            // 会在后台继续执行到结束，受 Embedding 接口和 Redis 的超时约束；这里只是不再等待它的结果
+            return BatchSearchResponse.SubResult.error(TYPE_SEMANTIC, "Semantic search timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return BatchSearchResponse.SubResult.error(TYPE_SEMANTIC, "Semantic search interrupted");
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("Batch semantic search failed", cause);
+            return BatchSearchResponse.SubResult.error(TYPE_SEMANTIC, cause.getMessage());
+        }
+    }
+
+    /**
+     * 将子查询转换为 Elasticsearch 查询，同时记录结果的转换方式
+     */
+    private PendingSearch prepare(String name, BatchSearchRequest.SubQuery subQuery) {
+        String type = subQuery.getType();
+        if (type == null) {
+            throw new IllegalArgumentException("Sub-query type is required");
+        }
+
+        switch (type) {
+            case TYPE_SEEDS: {
+                String keyword = requireText(subQuery.getKeyword(), "keyword");
+                Pageable pageable = PageRequest.of(subQuery.getPage(), subQuery.getPageSize());
+                return new PendingSearch(name, type,
+                        seedSearchService.buildSearchSeedsQuery(keyword, pageable), SeedDocument.class,
+                        hits -> seedSearchService.toPage(castHits(hits), pageable));
+            }
+            case TYPE_APPROVALS: {
+                AdvancedSearchRequest approval = subQuery.getApproval() != null
+                        ? subQuery.getApproval() : new AdvancedSearchRequest();
+                return new PendingSearch(name, type,
+                        seedApprovalDetailsService.buildAdvancedSearchQuery(approval), SeedApprovalDocument.class,
+                        hits -> seedApprovalDetailsService.toPagedResponse(
+                                castHits(hits), approval.getPage(), approval.getPageSize()));
+            }
+            case TYPE_SUGGEST: {
+                String prefix = requireText(subQuery.getPrefix(), "prefix");
+                int size = Math.min(subQuery.getSize() != null ? subQuery.getSize() : 10, 20);
+                return new PendingSearch(name, type,
+                        seedSuggestService.buildSuggestQuery(prefix, subQuery.getSuggestTypes(), size),
+                        SeedSuggestDocument.class,
+                        seedSuggestService::extractSuggestions);
+            }
+            case TYPE_GMO_COUNT: {
+                if (subQuery.getIsGMO() == null) {
+                    throw new IllegalArgumentException("isGMO is required");
+                }
+                return new PendingSearch(name, type,
+                        seedApprovalDetailsService.buildCountByGMOQuery(subQuery.getIsGMO()), SeedApprovalDocument.class,
+                        SearchHits::getTotalHits);
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported sub-query type: " + type);
+        }
+    }
+
+    private void executeMultiSearch(List<PendingSearch> pendingSearches,
+                                    Map<String, BatchSearchResponse.SubResult> results) {
+        if (pendingSearches.isEmpty()) {
+            return;
+        }
+
+        List<Query> queries = new ArrayList<>();
+        List<Class<?>> classes = new ArrayList<>();
+        pendingSearches.forEach(pending -> {
+            queries.add(pending.query());
+            classes.add(pending.clazz());
+        });
+
+        List<SearchHits<?>> responses;
+        try {
+            responses = elasticsearchTemplate.multiSearch(queries, classes);
+        } catch (Exception e) {
+            log.error("Batch multi-search failed", e);
+            pendingSearches.forEach(pending -> results.put(pending.name(),
+                    BatchSearchResponse.SubResult.error(pending.type(), "Search failed: " + e.getMessage())));
+            return;
+        }
+
+        for (int i = 0; i < pendingSearches.size(); i++) {
+            PendingSearch pending = pendingSearches.get(i);
+            try {
+                results.put(pending.name(), BatchSearchResponse.SubResult.success(
+                        pending.type(), pending.mapper().map(responses.get(i))));
+            } catch (Exception e) {
+                log.error("Failed to map batch sub-query {}", pending.name(), e);
+                results.put(pending.name(), BatchSearchResponse.SubResult.error(pending.type(), e.getMessage()));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> SearchHits<T> castHits(SearchHits<?> hits) {
+        return (SearchHits<T>) hits;
+    }
+
+    private static String requireText(String value, String field) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    private interface ResultMapper {
+        Object map(SearchHits<?> hits);
+    }
+
+    private record PendingSearch(String name, String type, Query query, Class<?> clazz, ResultMapper mapper) {
+    }
+}
@@ -0,0 +1,244 @@
+package com.desheng.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 带缓存的 Embedding 模型
+ * 对查询文本的 Embedding（embed(String)）做两级缓存：进程内 LRU + Redis，缓存键为 模型 ID + 规范化文本的 SHA-256。
+ * Redis 中按 float32 小端字节序编码后 Base64 存储，比 JSON 数组小约 3 倍
+ *
+ * 进程内缓存的值是 Future：未命中的线程先放入未完成的 Future，再在自己的线程里读 Redis / 调用模型，
+ * 相同键的并发请求等待这个 Future。加载期间不占用缓存内部的锁，不会阻塞同一分段上其他键的读写
+ *
+ * 文档批量向量化（vectorStore.add）走 call(EmbeddingRequest)，不经过缓存，交给单独的索引模型（不做内部重试）
+ *
+ * 指标：embedding.cache.requests{result=local_hit|redis_hit|miss}
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel, DisposableBean {
+
+    /**
+     * 不能使用 "embedding:"：旧版 Redis 向量存储的文档键也以它开头，清理旧索引时会被一并删除
+     */
+    private static final String KEY_PREFIX = "embedding-cache:";
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingModel indexingDelegate;
+    private final String modelId;
+    private final StringRedisTemplate redisTemplate;
+    private final Duration redisTtl;
+    private final AsyncCache<String, float[]> localCache;
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingModel indexingDelegate, String modelId,
+                                 StringRedisTemplate redisTemplate, long maxSize, Duration redisTtl,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.indexingDelegate = indexingDelegate;
+        this.modelId = modelId;
+        this.redisTemplate = redisTemplate;
+        this.redisTtl = redisTtl;
+        this.localCache = Caffeine.newBuilder().maximumSize(maxSize).buildAsync();
+        this.localHits = counter(meterRegistry, "local_hit");
+        this.redisHits = counter(meterRegistry, "redis_hit");
+        this.misses = counter(meterRegistry, "miss");
+    }
+
+    @Override
+    public float[] embed(String text) {
+        String normalized = normalize(text);
+        String key = cacheKey(normalized);
+
+        // 同一个键并发未命中时只调用一次 Embedding 接口，其他线程等待同一个 Future
+        CompletableFuture<float[]> pending = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = localCache.asMap().putIfAbsent(key, pending);
+        if (existing != null) {
+            localHits.increment();
+            return join(existing);
+        }
+        try {
+            pending.complete(load(key, normalized));
+        } catch (RuntimeException e) {
+            // 失败的 Future 从缓存中移除，下次请求重新加载
+            localCache.asMap().remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        return pending.join();
+    }
+
+    private static float[] join(CompletableFuture<float[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 预热：只对两级缓存中都没有的文本批量调用一次 Embedding 接口
+     *
+     * @return 新计算的数量
+     */
+    public int warm(List<String> texts) {
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (String text : texts) {
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            String normalized = normalize(text);
+            String key = cacheKey(normalized);
+            if (localCache.getIfPresent(key) != null) {
+                continue;
+            }
+            float[] cached = readRemote(key);
+            if (cached != null) {
+                localCache.put(key, CompletableFuture.completedFuture(cached));
+            } else {
+                missing.putIfAbsent(key, normalized);
+            }
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        List<String> keys = new ArrayList<>(missing.keySet());
+        List<float[]> embeddings = delegate.embed(new ArrayList<>(missing.values()));
+        for (int i = 0; i < keys.size(); i++) {
+            localCache.put(keys.get(i), CompletableFuture.completedFuture(embeddings.get(i)));
+            writeRemote(keys.get(i), embeddings.get(i));
+        }
+        return keys.size();
+    }
+
+    /**
+     * 模型 ID（写入缓存键和向量索引清单，模型变化时旧数据自动失效）
+     */
+    public String getModelId() {
+        return modelId;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return indexingDelegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return indexingDelegate.embed(document);
+    }
+
+    /**
+     * 被包装的模型不是 Spring Bean，关闭时由这里转发（停止微批处理的调度线程）
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (delegate instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private float[] load(String key, String normalized) {
+        float[] cached = readRemote(key);
+        if (cached != null) {
+            redisHits.increment();
+            return cached;
+        }
+        misses.increment();
+        float[] embedding = delegate.embed(normalized);
+        writeRemote(key, embedding);
+        return embedding;
+    }
+
+    /**
+     * Redis 只作为缓存，读写失败时直接调用模型
+     */
+    private float[] readRemote(String key) {
+        try {
+            String value = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+            return value != null ? decode(value) : null;
+        } catch (Exception e) {
+            log.debug("Failed to read embedding cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRemote(String key, float[] embedding) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + key, encode(embedding), redisTtl);
+        } catch (Exception e) {
+            log.debug("Failed to write embedding cache: {}", e.getMessage());
+        }
+    }
+
+    private String cacheKey(String normalized) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return modelId + ":" + HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 文本规范化：全角转半角（NFKC）、转小写、合并空白，使等价的查询命中同一个缓存项
+     */
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text == null ? "" : text, Normalizer.Form.NFKC);
+        return normalized.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    static String encode(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    static float[] decode(String value) {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(value)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] embedding = new float[buffer.remaining() / Float.BYTES];
+        buffer.asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("embedding.cache.requests").tag("result", result).register(meterRegistry);
+    }
+}
@@ -0,0 +1,79 @@
+package com.desheng.service;
+
+import co.elastic.clients.elasticsearch._types.QueryCacheStats;
+import co.elastic.clients.elasticsearch._types.RequestCacheStats;
+import co.elastic.clients.elasticsearch.indices.IndicesStatsResponse;
+import co.elastic.clients.elasticsearch.indices.stats.IndexStats;
+import co.elastic.clients.elasticsearch.indices.stats.IndicesStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Elasticsearch 缓存指标
+ * 定期读取索引统计中的查询缓存（filter bitset）和分片请求缓存的命中/未命中次数，注册为 Micrometer 指标：
+ * es.cache.hits / es.cache.misses / es.cache.evictions / es.cache.memory（tag: index, cache=query|request）
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ElasticsearchCacheMetrics {
+
+    private static final List<String> INDICES = List.of("seeds", "seed_approval_details");
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    @Scheduled(fixedDelayString = "${search.es-cache-metrics.interval:60s}",
+            initialDelayString = "${search.es-cache-metrics.interval:60s}")
+    public void refresh() {
+        try {
+            IndicesStatsResponse response = elasticsearchTemplate.execute(client -> client.indices()
+                    .stats(s -> s.index(INDICES).metric("query_cache", "request_cache")));
+
+            response.indices().forEach((index, stats) -> record(index, stats));
+        } catch (Exception e) {
+            log.warn("Failed to refresh Elasticsearch cache metrics: {}", e.getMessage());
+        }
+    }
+
+    private void record(String index, IndicesStats stats) {
+        IndexStats total = stats.total();
+        if (total == null) {
+            return;
+        }
+
+        QueryCacheStats queryCache = total.queryCache();
+        if (queryCache != null) {
+            set("es.cache.hits", index, "query", queryCache.hitCount());
+            set("es.cache.misses", index, "query", queryCache.missCount());
+            set("es.cache.evictions", index, "query", queryCache.evictions());
+            set("es.cache.memory", index, "query", queryCache.memorySizeInBytes());
+        }
+
+        RequestCacheStats requestCache = total.requestCache();
+        if (requestCache != null) {
+            set("es.cache.hits", index, "request", requestCache.hitCount());
+            set("es.cache.misses", index, "request", requestCache.missCount());
+            set("es.cache.evictions", index, "request", requestCache.evictions());
+            set("es.cache.memory", index, "request", requestCache.memorySizeInBytes());
+        }
+    }
+
+    private void set(String name, String index, String cache, long value) {
+        gauges.computeIfAbsent(name + "|" + index + "|" + cache,
+                key -> meterRegistry.gauge(name, Tags.of("index", index, "cache", cache), new AtomicLong()))
+                .set(value);
+    }
+}
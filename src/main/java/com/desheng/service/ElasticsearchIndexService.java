@@ -2,9 +2,14 @@ package com.desheng.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
 import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
 import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -20,6 +25,11 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ElasticsearchIndexService {
 
+    /**
+     * 与索引排序一致的查询排序，列表浏览使用该排序可以提前结束查询
+     */
+    public static final Sort INDEX_SORT = Sort.by(Sort.Order.desc("approvalYear"), Sort.Order.asc("id"));
+
     private final ElasticsearchTemplate elasticsearchTemplate;
 
     /**
@@ -39,16 +49,12 @@ public class ElasticsearchIndexService {
             Document settings = Document.create()
                     .append("number_of_shards", 1)
                     .append("number_of_replicas", 0)
-                    .append("analysis", createAnalysisSettings());
-
-            // 创建索引
-            indexOps.create(settings);
-            log.info("Created index: seed_approval_details");
+                    .append("analysis", createAnalysisSettings())
+                    .append("sort", createApprovalYearSortSettings());
 
-            // 创建映射
-            Document mapping = createSeedApprovalDetailsMapping();
-            indexOps.putMapping(mapping);
-            log.info("Created mapping for seed_approval_details");
+            // 创建索引（索引排序依赖字段映射，映射必须随索引一起创建）
+            indexOps.create(settings, createSeedApprovalDetailsMapping());
+            log.info("Created index with mapping: seed_approval_details");
 
         } catch (Exception e) {
             log.error("Failed to create seed approval details index", e);
@@ -56,6 +62,54 @@ public class ElasticsearchIndexService {
         }
     }
 
+    /**
+     * 为已有的种子审定详情索引补上 suitableRegions.keyword 子字段（适宜地区分面依赖它）
+     * 旧索引的 suitableRegions 只有 text 类型，缺少子字段时分面聚合没有结果。给已有字段增加子字段可以直接 put mapping，
+     * 但已有文档不会自动写入新子字段，需要再执行一次 _update_by_query（不修改文档内容）重新索引所有文档
+     *
+     * @return 是否执行了迁移
+     */
+    @SuppressWarnings("unchecked")
+    public boolean migrateSeedApprovalDetailsMapping() {
+        IndexOperations indexOps = elasticsearchTemplate.indexOps(com.desheng.model.SeedApprovalDocument.class);
+        if (!indexOps.exists()) {
+            return false;
+        }
+        Map<String, Object> properties = (Map<String, Object>) indexOps.getMapping().get("properties");
+        Map<String, Object> suitableRegions = properties != null
+                ? (Map<String, Object>) properties.get("suitableRegions") : null;
+        Map<String, Object> fields = suitableRegions != null
+                ? (Map<String, Object>) suitableRegions.get("fields") : null;
+        if (fields != null && fields.containsKey("keyword")) {
+            return false;
+        }
+
+        log.info("Index seed_approval_details has no suitableRegions.keyword field, updating mapping...");
+        indexOps.putMapping(Document.create().append("properties",
+                Map.of("suitableRegions", createSuitableRegionsMapping())));
+
+        UpdateQuery updateQuery = UpdateQuery.builder(Query.findAll())
+                .withAbortOnVersionConflict(false)
+                .withRefreshPolicy(RefreshPolicy.IMMEDIATE)
+                .build();
+        ByQueryResponse response = elasticsearchTemplate.updateByQuery(updateQuery, indexOps.getIndexCoordinates());
+        log.info("Reindexed {} seed approval documents for suitableRegions.keyword (version conflicts: {})",
+                response.getUpdated(), response.getVersionConflicts());
+        return true;
+    }
+
+    /**
+     * 索引排序设置：按审定年份倒序、ID 正序存储
+     * 与默认列表排序一致时，分段内的文档已有序，查询收集到足够的结果即可提前结束
+     */
+    Map<String, Object> createApprovalYearSortSettings() {
+        return Map.of(
+            "field", List.of("approvalYear", "id"),
+            "order", List.of("desc", "asc"),
+            "missing", List.of("_last", "_last")
+        );
+    }
+
     /**
      * 创建分析器设置
      */
@@ -287,11 +341,7 @@ public class ElasticsearchIndexService {
             "analyzer", "ik_max_word_analyzer",
             "search_analyzer", "ik_smart_analyzer"
         ));
-        properties.put("suitableRegions", Map.of(
-            "type", "text",
-            "analyzer", "ik_max_word_analyzer",
-            "search_analyzer", "ik_smart_analyzer"
-        ));
+        properties.put("suitableRegions", createSuitableRegionsMapping());
         properties.put("plantingRestrictions", Map.of(
             "type", "text",
             "analyzer", "ik_max_word_analyzer",
@@ -323,6 +373,20 @@ public class ElasticsearchIndexService {
     }
 
     /**
+     * 适宜地区映射：全文检索用 text，分面聚合用 keyword 子字段
+     */
+    private Map<String, Object> createSuitableRegionsMapping() {
+        return Map.of(
+            "type", "text",
+            "analyzer", "ik_max_word_analyzer",
+            "search_analyzer", "ik_smart_analyzer",
+            "fields", Map.of(
+                "keyword", Map.of("type", "keyword")
+            )
+        );
+    }
+
+        /**
      * 创建种子索引（原有的）
      */
     public void createSeedIndex() {
@@ -337,14 +401,12 @@ public class ElasticsearchIndexService {
             Document settings = Document.create()
                     .append("number_of_shards", 1)
                     .append("number_of_replicas", 0)
-                    .append("analysis", createAnalysisSettings());
+                    .append("analysis", createAnalysisSettings())
+                    .append("sort", createApprovalYearSortSettings());
 
-            indexOps.create(settings);
-            log.info("Created index: seeds");
-
-            Document mapping = createSeedMapping();
-            indexOps.putMapping(mapping);
-            log.info("Created mapping for seeds");
+            // 索引排序依赖字段映射，映射必须随索引一起创建
+            indexOps.create(settings, createSeedMapping());
+            log.info("Created index with mapping: seeds");
 
         } catch (Exception e) {
             log.error("Failed to create seed index", e);
@@ -426,4 +488,80 @@ public class ElasticsearchIndexService {
 
         return Document.create().append("properties", properties);
     }
+
+    /**
+     * 创建输入联想索引
+     * completion 字段使用内存 FST，适合逐键输入的前缀补全
+     */
+    public void createSeedSuggestIndex() {
+        try {
+            IndexOperations indexOps = elasticsearchTemplate.indexOps(com.desheng.model.SeedSuggestDocument.class);
+
+            if (indexOps.exists()) {
+                log.info("Index seed_suggestions already exists, deleting...");
+                indexOps.delete();
+            }
+
+            Document settings = Document.create()
+                    .append("number_of_shards", 1)
+                    .append("number_of_replicas", 0)
+                    .append("analysis", createSuggestAnalysisSettings());
+
+            indexOps.create(settings);
+            log.info("Created index: seed_suggestions");
+
+            Document mapping = createSeedSuggestMapping();
+            indexOps.putMapping(mapping);
+            log.info("Created mapping for seed_suggestions");
+
+        } catch (Exception e) {
+            log.error("Failed to create seed suggest index", e);
+            throw new RuntimeException("Failed to create ES index", e);
+        }
+    }
+
+    /**
+     * 创建输入联想分析器设置
+     * 整体作为一个词元并转小写，审定编号中的数字不会被拆掉
+     */
+    private Map<String, Object> createSuggestAnalysisSettings() {
+        Map<String, Object> analysis = new HashMap<>();
+
+        Map<String, Object> analyzers = new HashMap<>();
+        analyzers.put("suggest_analyzer", Map.of(
+            "type", "custom",
+            "tokenizer", "keyword",
+            "filter", List.of("lowercase")
+        ));
+
+        analysis.put("analyzer", analyzers);
+        return analysis;
+    }
+
+    /**
+     * 创建输入联想映射
+     */
+    private Document createSeedSuggestMapping() {
+        Map<String, Object> properties = new HashMap<>();
+
+        properties.put("id", Map.of("type", "keyword"));
+        properties.put("type", Map.of("type", "keyword"));
+        properties.put("source", Map.of("type", "keyword"));
+        properties.put("refId", Map.of("type", "keyword"));
+        properties.put("text", Map.of("type", "keyword"));
+        properties.put("suggest", Map.of(
+            "type", "completion",
+            "analyzer", "suggest_analyzer",
+            "search_analyzer", "suggest_analyzer",
+            "preserve_separators", false,
+            "max_input_length", 50,
+            "contexts", List.of(Map.of(
+                "name", "type",
+                "type", "category",
+                "path", "type"
+            ))
+        ));
+
+        return Document.create().append("properties", properties);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,381 @@
+package com.desheng.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 批量向量化流水线
+ * 调用方逐条提交待索引的数据，流水线按 Token 预算打包成批次，在独立的线程池中并行写入向量存储
+ * （RedisVectorStore 对每个批次做一次批量 Embedding，再用 Jedis pipeline 批量写入）
+ *
+ * 1. 批次大小同时受 Token 数（max-batch-tokens）和条数（max-batch-size）限制
+ * 2. 并行批次数受 embeddingExecutor 线程数限制，排队的批次最多为并行数的两倍，提交方被阻塞以控制内存
+ * 3. 按每分钟 Token 数限流；Embedding 接口返回 429 时按 Retry-After（没有时指数退避）暂停所有批次后重试
+ *
+ * 每次运行结束后输出吞吐量和按 Token 估算的费用
+ */
+@Component
+@Slf4j
+public class EmbeddingPipeline {
+
+    private final VectorStore vectorStore;
+    private final Executor embeddingExecutor;
+    private final TokenCountEstimator tokenCountEstimator = new JTokkitTokenCountEstimator();
+    private final RateLimiter rateLimiter;
+    private final int concurrency;
+    private final int maxBatchTokens;
+    private final int maxBatchSize;
+    private final int maxRetries;
+    private final Duration initialBackoff;
+    private final double pricePerMillionTokens;
+    private final Counter tokenCounter;
+    private final Counter documentCounter;
+    private final Counter rateLimitedCounter;
+    private final Timer batchTimer;
+
+    public EmbeddingPipeline(VectorStore vectorStore,
+                             @Qualifier("embeddingExecutor") Executor embeddingExecutor,
+                             MeterRegistry meterRegistry,
+                             @Value("${vector-store.index.concurrency:4}") int concurrency,
+                             @Value("${vector-store.index.max-batch-tokens:8000}") int maxBatchTokens,
+                             @Value("${vector-store.index.max-batch-size:256}") int maxBatchSize,
+                             @Value("${vector-store.index.tokens-per-minute:1000000}") long tokensPerMinute,
+                             @Value("${vector-store.index.max-retries:5}") int maxRetries,
+                             @Value("${vector-store.index.initial-backoff:1s}") Duration initialBackoff,
+                             @Value("${vector-store.index.price-per-million-tokens:0.02}") double pricePerMillionTokens) {
+        this.vectorStore = vectorStore;
+        this.embeddingExecutor = embeddingExecutor;
+        this.concurrency = concurrency;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxBatchSize = maxBatchSize;
+        this.rateLimiter = new RateLimiter(tokensPerMinute);
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+        this.pricePerMillionTokens = pricePerMillionTokens;
+        this.tokenCounter = Counter.builder("vector.index.tokens").register(meterRegistry);
+        this.documentCounter = Counter.builder("vector.index.documents").register(meterRegistry);
+        this.rateLimitedCounter = Counter.builder("vector.index.rate-limited").register(meterRegistry);
+        this.batchTimer = Timer.builder("vector.index.batch.latency").register(meterRegistry);
+    }
+
+    /**
+     * 开始一次流水线运行
+     *
+     * @param name 运行名称（用于日志）
+     * @param toDocument 数据转换为向量文档
+     * @param onWritten 每个批次写入成功后的回调（在工作线程中调用，用于记录进度）
+     */
+    public <T> Run<T> start(String name, Function<T, Document> toDocument, Consumer<List<T>> onWritten) {
+        return start(name, vectorStore, toDocument, onWritten);
+    }
+
+    /**
+     * 开始一次写入指定向量存储的流水线运行（种子以外的索引，如审定详情的分块向量）
+     */
+    public <T> Run<T> start(String name, VectorStore target, Function<T, Document> toDocument,
+                            Consumer<List<T>> onWritten) {
+        return new Run<>(name, target, toDocument, onWritten);
+    }
+
+    /**
+     * 一次流水线运行，add 和 finish 只能由同一个线程调用
+     */
+    public class Run<T> {
+
+        private final String name;
+        private final VectorStore target;
+        private final Function<T, Document> toDocument;
+        private final Consumer<List<T>> onWritten;
+        private final Semaphore permits = new Semaphore(concurrency * 2);
+        private final AtomicLong writtenDocuments = new AtomicLong();
+        private final AtomicLong writtenTokens = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final long startTime = System.nanoTime();
+
+        private List<T> items = new ArrayList<>();
+        private List<Document> documents = new ArrayList<>();
+        private int batchTokens;
+
+        private Run(String name, VectorStore target, Function<T, Document> toDocument, Consumer<List<T>> onWritten) {
+            this.name = name;
+            this.target = target;
+            this.toDocument = toDocument;
+            this.onWritten = onWritten;
+        }
+
+        /**
+         * 提交一条数据，当前批次放不下时先把它发出去
+         */
+        public void add(T item) {
+            Document document = toDocument.apply(item);
+            int tokens = tokenCountEstimator.estimate(document.getText());
+            if (!documents.isEmpty() && (batchTokens + tokens > maxBatchTokens || documents.size() >= maxBatchSize)) {
+                flush();
+            }
+            items.add(item);
+            documents.add(document);
+            batchTokens += tokens;
+        }
+
+        /**
+         * 发出最后一个批次并等待所有批次完成
+         *
+         * @throws RuntimeException 任一批次重试后仍失败（已成功的批次已经通过回调记录）
+         */
+        public Stats finish() {
+            flush();
+            awaitAll();
+
+            Throwable error = failure.get();
+            if (error != null) {
+                throw new RuntimeException("Embedding pipeline " + name + " failed", error);
+            }
+
+            long elapsedNanos = System.nanoTime() - startTime;
+            Stats stats = new Stats(writtenDocuments.get(), batches.get(), writtenTokens.get(),
+                    Duration.ofNanos(elapsedNanos), pricePerMillionTokens);
+            log.info("Embedding pipeline {} finished - {}", name, stats);
+            return stats;
+        }
+
+        private void flush() {
+            if (documents.isEmpty()) {
+                return;
+            }
+            Throwable error = failure.get();
+            if (error != null) {
+                throw new RuntimeException("Embedding pipeline " + name + " failed", error);
+            }
+
+            List<T> batchItems = items;
+            List<Document> batchDocuments = documents;
+            int tokens = batchTokens;
+            items = new ArrayList<>();
+            documents = new ArrayList<>();
+            batchTokens = 0;
+
+            acquire(1);
+            CompletableFuture.runAsync(() -> write(batchItems, batchDocuments, tokens), embeddingExecutor)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            failure.compareAndSet(null, e.getCause() != null ? e.getCause() : e);
+                        }
+                        permits.release();
+                    });
+        }
+
+        private void write(List<T> batchItems, List<Document> batchDocuments, int tokens) {
+            if (failure.get() != null) {
+                return;
+            }
+            rateLimiter.acquire(tokens);
+            batchTimer.record(() -> addWithRetry(target, batchDocuments));
+            onWritten.accept(batchItems);
+
+            batches.incrementAndGet();
+            writtenDocuments.addAndGet(batchDocuments.size());
+            writtenTokens.addAndGet(tokens);
+            documentCounter.increment(batchDocuments.size());
+            tokenCounter.increment(tokens);
+        }
+
+        private void awaitAll() {
+            acquire(concurrency * 2);
+            permits.release(concurrency * 2);
+        }
+
+        private void acquire(int count) {
+            try {
+                permits.acquire(count);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Embedding pipeline " + name + " interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * 写入一个批次：限流（429）和临时错误按退避重试，其他错误直接失败
+     */
+    private void addWithRetry(VectorStore target, List<Document> documents) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                target.add(documents);
+                return;
+            } catch (RuntimeException e) {
+                boolean rateLimited = isRateLimited(e);
+                if (attempt >= maxRetries || !(rateLimited || isTransient(e))) {
+                    throw e;
+                }
+                Duration backoff = retryAfter(e);
+                if (backoff == null) {
+                    backoff = initialBackoff.multipliedBy(1L << Math.min(attempt, 6));
+                }
+                if (rateLimited) {
+                    rateLimitedCounter.increment();
+                    // 所有批次一起暂停，避免其他工作线程继续触发限流
+                    rateLimiter.pause(backoff);
+                }
+                log.warn("Embedding batch of {} documents failed (attempt {}), retrying in {}: {}",
+                        documents.size(), attempt + 1, backoff, e.getMessage());
+                rateLimiter.sleep(backoff);
+            }
+        }
+    }
+
+    private boolean isRateLimited(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof RestClientResponseException response && response.getStatusCode().value() == 429) {
+                return true;
+            }
+            // 其他模型客户端（Spring AI 默认的错误处理器）把 HTTP 错误包装为 AiException，消息以状态码开头
+            if (e.getMessage() != null && e.getMessage().startsWith("429")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTransient(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof TransientAiException || e instanceof ResourceAccessException) {
+                return true;
+            }
+            if (e instanceof RestClientResponseException response && response.getStatusCode().is5xxServerError()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Duration retryAfter(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof RestClientResponseException response && response.getResponseHeaders() != null) {
+                String value = response.getResponseHeaders().getFirst("Retry-After");
+                if (value != null) {
+                    try {
+                        return Duration.ofSeconds(Long.parseLong(value.trim()));
+                    } catch (NumberFormatException ignored) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按每分钟 Token 数的令牌桶限流，允许透支（单个批次超过桶容量时等待到还清为止）
+     */
+    private static final class RateLimiter {
+
+        private final double tokensPerNano;
+        private final double capacity;
+        private double available;
+        private long lastRefill = System.nanoTime();
+        private long pausedUntil;
+
+        RateLimiter(long tokensPerMinute) {
+            this.tokensPerNano = tokensPerMinute / (double) Duration.ofMinutes(1).toNanos();
+            this.capacity = tokensPerMinute;
+            this.available = tokensPerMinute;
+        }
+
+        void acquire(long tokens) {
+            if (tokensPerNano <= 0) {
+                sleep(Duration.ofNanos(Math.max(0, pausedUntil - System.nanoTime())));
+                return;
+            }
+            sleep(Duration.ofNanos(reserve(tokens)));
+        }
+
+        synchronized void pause(Duration duration) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + duration.toNanos());
+        }
+
+        private synchronized long reserve(long tokens) {
+            long now = System.nanoTime();
+            available = Math.min(capacity, available + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            available -= tokens;
+
+            long wait = Math.max(0, pausedUntil - now);
+            if (available < 0) {
+                wait = Math.max(wait, (long) (-available / tokensPerNano));
+            }
+            return wait;
+        }
+
+        void sleep(Duration duration) {
+            if (duration.isZero() || duration.isNegative()) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for embedding rate limit", e);
+            }
+        }
+    }
+
+    /**
+     * 一次运行的统计
+     *
+     * @param documents 写入的文档数
+     * @param batches 批次数
+     * @param tokens 估算的 Token 数
+     * @param elapsed 耗时
+     * @param pricePerMillionTokens 每百万 Token 的价格（美元）
+     */
+    public record Stats(long documents, long batches, long tokens, Duration elapsed, double pricePerMillionTokens) {
+
+        public double documentsPerSecond() {
+            double seconds = elapsed.toNanos() / 1e9;
+            return seconds > 0 ? documents / seconds : 0;
+        }
+
+        public double estimatedCost() {
+            return tokens / 1e6 * pricePerMillionTokens;
+        }
+
+        /**
+         * 每 1000 条文档的估算费用
+         */
+        public double costPer1000Documents() {
+            return documents > 0 ? estimatedCost() / documents * 1000 : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("documents: %d, batches: %d, tokens: %d, elapsed: %dms, %.1f docs/s, cost: $%.4f ($%.4f per 1000)",
+                    documents, batches, tokens, elapsed.toMillis(), documentsPerSecond(), estimatedCost(),
+                    costPer1000Documents());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.desheng.service;
+
+/**
+ * 精确向量检索内核
+ * 对一组候选行逐一计算查询向量与矩阵行的点积，用定长的最小堆保留相似度最高的 k 行。
+ * 矩阵按行分段存放（SegmentedVectors），向量均已归一化，点积即余弦相似度
+ *
+ * 1. 候选行按块批量复制到一个 float[] 中（每块约 64KB，留在 L2 缓存里），点积在数组上计算，不逐个元素读取 ByteBuffer
+ * 2. 启动参数包含 --add-modules jdk.incubator.vector 时点积用 Vector API（VectorApiDot）按 SIMD 宽度累加；
+ *    否则退化为标量实现：8 路展开、4 个累加器交替累加，打断浮点加法的依赖链（C2 不会自动向量化 float 归约）
+ * 3. 堆用两个基本类型数组实现，只有进入 topK 的行才会移动，不为每个候选创建对象
+ *
+ * 候选集较小（元数据过滤之后只剩几千条）时，精确检索比图检索更快，而且召回率为 100%
+ */
+final class ExactVectorSearch {
+
+    /**
+     * 每块复制的 float 数（64KB）
+     */
+    private static final int BLOCK_FLOATS = 16 * 1024;
+
+    /**
+     * 运行时是否加载了 Vector API 模块；static final，JIT 编译时会折叠掉不用的分支
+     */
+    static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private ExactVectorSearch() {
+    }
+
+    /**
+     * 查询向量与 block 中从 offset 开始的一行的点积
+     */
+    static float dot(float[] query, float[] block, int offset) {
+        return VECTOR_API ? VectorApiDot.dot(query, block, offset) : scalarDot(query, block, offset);
+    }
+
+    /**
+     * 标量实现（没有 Vector API 时使用）
+     */
+    static float scalarDot(float[] query, float[] block, int offset) {
+        int dimensions = query.length;
+        int upper = dimensions & ~7;
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (; i < upper; i += 8) {
+            s0 += query[i] * block[offset + i];
+            s1 += query[i + 1] * block[offset + i + 1];
+            s2 += query[i + 2] * block[offset + i + 2];
+            s3 += query[i + 3] * block[offset + i + 3];
+            s0 += query[i + 4] * block[offset + i + 4];
+            s1 += query[i + 5] * block[offset + i + 5];
+            s2 += query[i + 6] * block[offset + i + 6];
+            s3 += query[i + 7] * block[offset + i + 7];
+        }
+        for (; i < dimensions; i++) {
+            s0 += query[i] * block[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * 在候选行中找出与查询最相似的 k 行
+     *
+     * @param query 归一化后的查询向量，长度即矩阵的列数
+     * @param matrix 按行分段存放的向量矩阵
+     * @param rows 候选行号
+     * @param count rows 中有效的候选数
+     * @param k 返回的行数
+     * @return 按相似度降序排列的行号和相似度
+     */
+    static TopK search(float[] query, SegmentedVectors matrix, int[] rows, int count, int k) {
+        int dimensions = query.length;
+        int capacity = Math.min(k, count);
+        int[] heapRows = new int[capacity];
+        float[] heapScores = new float[capacity];
+        int size = 0;
+        int blockRows = Math.max(1, Math.min(count, BLOCK_FLOATS / Math.max(1, dimensions)));
+        float[] block = new float[blockRows * dimensions];
+        for (int start = 0; start < count; start += blockRows) {
+            int n = Math.min(blockRows, count - start);
+            for (int j = 0; j < n; j++) {
+                matrix.get(rows[start + j], block, j * dimensions);
+            }
+            for (int j = 0; j < n; j++) {
+                int row = rows[start + j];
+                float score = dot(query, block, j * dimensions);
+                if (size < capacity) {
+                    siftUp(heapRows, heapScores, size++, row, score);
+                } else if (capacity > 0 && score > heapScores[0]) {
+                    siftDown(heapRows, heapScores, size, row, score);
+                }
+            }
+        }
+
+        // 依次取出堆顶（当前最小值）从后往前填，得到降序结果
+        int[] sortedRows = new int[size];
+        float[] sortedScores = new float[size];
+        for (int last = size - 1; last >= 0; last--) {
+            sortedRows[last] = heapRows[0];
+            sortedScores[last] = heapScores[0];
+            if (last > 0) {
+                siftDown(heapRows, heapScores, last, heapRows[last], heapScores[last]);
+            }
+        }
+        return new TopK(sortedRows, sortedScores);
+    }
+
+    /**
+     * 把新元素放在位置 index（堆尾）并上浮
+     */
+    private static void siftUp(int[] rows, float[] scores, int index, int row, float score) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            rows[index] = rows[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        rows[index] = row;
+        scores[index] = score;
+    }
+
+    /**
+     * 用新元素替换堆顶并下沉，size 为堆的大小
+     */
+    private static void siftDown(int[] rows, float[] scores, int size, int row, float score) {
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && scores[right] < scores[child]) {
+                child = right;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            rows[index] = rows[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        rows[index] = row;
+        scores[index] = score;
+    }
+
+    /**
+     * 检索结果：rows[i] 的相似度为 scores[i]，按相似度降序
+     */
+    record TopK(int[] rows, float[] scores) {
+    }
+}
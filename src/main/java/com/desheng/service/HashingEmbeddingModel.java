@@ -0,0 +1,93 @@
+package com.desheng.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 哈希 Embedding 模型
+ * 把文本的 1~3 字符 n-gram（与本地 Lucene 索引的分词一致，适合中文）按特征哈希映射到固定维度，再做 L2 归一化。
+ * 结果只反映字面重合度，不具备语义能力；完全确定、无需网络和模型文件，用于离线环境和测试
+ */
+public class HashingEmbeddingModel implements EmbeddingModel {
+
+    private static final int MIN_GRAM = 1;
+    private static final int MAX_GRAM = 3;
+
+    private final int dimensions;
+
+    public HashingEmbeddingModel(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<String> instructions = request.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            embeddings.add(new Embedding(hash(instructions.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return hash(text);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return hash(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    private float[] hash(String text) {
+        float[] vector = new float[dimensions];
+        String normalized = CachingEmbeddingModel.normalize(text).replace(" ", "");
+        int[] codePoints = normalized.codePoints().toArray();
+
+        for (int n = MIN_GRAM; n <= MAX_GRAM; n++) {
+            for (int start = 0; start + n <= codePoints.length; start++) {
+                int h = murmurMix(new String(codePoints, start, n).getBytes(StandardCharsets.UTF_8));
+                // 低位决定维度，最高位决定符号，减少哈希冲突带来的偏差
+                int index = Math.floorMod(h, dimensions);
+                vector[index] += h < 0 ? -1f : 1f;
+            }
+        }
+
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static int murmurMix(byte[] bytes) {
+        int h = 0x9747b28c;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x5bd1e995;
+            h ^= h >>> 15;
+        }
+        h ^= h >>> 13;
+        h *= 0x5bd1e995;
+        h ^= h >>> 15;
+        return h;
+    }
+}
@@ -0,0 +1,1263 @@
+package com.desheng.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.desheng.model.dto.VectorBenchmarkResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 进程内 HNSW 向量存储
+ * 实现 Spring AI 的 VectorStore 接口，可替代 RedisVectorStore（vector-store.type=hnsw），语义搜索不再需要访问 Redis
+ *
+ * 1. 向量归一化后按节点 ID 分段存放在堆外内存（SegmentedVectors，每段最多 2^16 个向量）中，总大小不受单个 ByteBuffer 2GB 的限制；
+ *    距离为 1 - 余弦相似度
+ * 2. 每个节点记录种子 ID（long）、文本和元数据；元数据过滤、相似度阈值在图搜索结果上执行，
+ *    过滤后不足 topK 时扩大 ef 重新搜索，ef 超过节点数时退化为精确的暴力扫描
+ * 3. 写入（新增、删除）串行执行；读取不加锁：写入方先写好节点和向量，再通过 volatile 的 size 发布，
+ *    邻居列表按写时复制整体替换，读取方只访问已发布的节点
+ * 4. 删除只打标记，被删除的节点仍参与图的遍历，但不会出现在结果中；同一文档 ID 重新写入时旧节点被标记删除。
+ *    已删除节点占比超过阈值时 compact() 用存活节点的向量重建一张新图（不需要重新向量化），再整体替换；
+ *    整体替换（compact / clear）期间读取方通过版本号（seqlock）重新读取，不会混用新旧两张图的状态
+ * 5. 快照经文件通道顺序写入（先写临时文件再原子替换），向量按段写入，其余部分经缓冲区写入；启动时从快照恢复，不需要重新向量化
+ * 6. 可选量化（int8 / binary）：图遍历和暴力扫描使用内存中的紧凑编码计算近似距离，
+ *    候选集（topK * rerank-factor）再用全精度向量重排；全精度向量可以放在内存映射文件中（vector-file），由操作系统按需换入
+ * 7. 过滤条件很严格时可以改用 exactSearch：只对满足条件的文档用全精度向量计算相似度（ExactVectorSearch）
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore, DisposableBean {
+
+    private static final int MAGIC = 0x484e5357;
+    private static final int VERSION = 1;
+    private static final long HEADER_BYTES = 6L * Integer.BYTES;
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 20;
+    private static final String DISTANCE = "distance";
+    private static final String SEED_ID = "seedId";
+
+    private final EmbeddingModel embeddingModel;
+    private final int dimensions;
+    private final int maxConnections;
+    private final int maxConnectionsLevel0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Path snapshotPath;
+    private final Path vectorFile;
+    private final String quantization;
+    private final int rerankFactor;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, Integer> nodeByDocumentId = new ConcurrentHashMap<>();
+
+    // 读取顺序：entry -> size -> nodes / vectors，与写入的发布顺序相反
+    private volatile Entry entry;
+    private volatile int size;
+    private volatile Node[] nodes = new Node[0];
+    private volatile SegmentedVectors vectors;
+    private volatile VectorQuantizer quantizer;
+    // 整体替换索引时加一（奇数表示替换中），读取方据此判断读到的状态是否一致
+    private volatile int version;
+    private volatile boolean dirty;
+
+    /**
+     * @param quantization 量化模式：none / int8 / binary
+     * @param rerankFactor 量化模式下用全精度向量重排的候选数 = topK * rerankFactor
+     * @param vectorFile 全精度向量的内存映射文件，null 表示放在堆外内存中
+     */
+    public HnswVectorStore(EmbeddingModel embeddingModel, int dimensions, int maxConnections,
+                           int efConstruction, int efSearch, Path snapshotPath,
+                           String quantization, int rerankFactor, Path vectorFile) {
+        this.embeddingModel = embeddingModel;
+        this.dimensions = dimensions;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsLevel0 = maxConnections * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(maxConnections);
+        this.snapshotPath = snapshotPath;
+        this.vectorFile = vectorFile;
+        this.quantization = quantization;
+        this.quantizer = VectorQuantizer.create(quantization, dimensions);
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.vectors = new SegmentedVectors(dimensions, vectorFile);
+        restore();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        // 向量化在锁外执行
+        List<float[]> embeddings = embeddingModel.embed(documents.stream().map(Document::getText).toList());
+
+        writeLock.lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                insert(documents.get(i), normalize(embeddings.get(i)));
+            }
+            dirty = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        writeLock.lock();
+        try {
+            for (String id : idList) {
+                Integer node = nodeByDocumentId.remove(id);
+                if (node != null) {
+                    nodes[node].deleted = true;
+                    dirty = true;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Node> filter = compile(filterExpression);
+        List<String> ids = new ArrayList<>();
+        View view = view();
+        Node[] current = view.nodes();
+        for (int i = 0, n = view.count(); i < n; i++) {
+            if (!current[i].deleted && filter.test(current[i])) {
+                ids.add(current[i].documentId);
+            }
+        }
+        delete(ids);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+
+        View snapshot = view();
+        Entry start = snapshot.entry();
+        if (start == null) {
+            return List.of();
+        }
+        int count = snapshot.count();
+        Node[] view = snapshot.nodes();
+        SegmentedVectors matrix = snapshot.vectors();
+        VectorQuantizer quantizer = snapshot.quantizer();
+
+        int topK = request.getTopK();
+        Predicate<Node> filter = request.getFilterExpression() != null
+                ? compile(request.getFilterExpression()) : node -> true;
+        double threshold = request.getSimilarityThreshold();
+
+        VectorQuantizer.Scorer exact = exactScorer(query, matrix);
+        VectorQuantizer.Scorer approximate = quantizer != null ? quantizer.scorer(query) : exact;
+        int shortlist = quantizer != null ? topK * rerankFactor : topK;
+
+        List<Candidate> matched;
+        int ef = Math.max(efSearch, shortlist);
+        while (true) {
+            if (ef >= count) {
+                matched = accept(rerank(scan(approximate, shortlist, filter, count, view), exact, approximate),
+                        topK, filter, threshold, view);
+                break;
+            }
+            List<Candidate> layer = rerank(searchGraph(approximate, start, ef, count, view), exact, approximate);
+            matched = accept(layer, topK, filter, threshold, view);
+            if (matched.size() >= topK || belowThreshold(layer.get(layer.size() - 1), threshold)) {
+                break;
+            }
+            // 过滤掉的结果太多，扩大候选集重新搜索
+            ef *= 4;
+        }
+
+        return toDocuments(matched, view);
+    }
+
+    /**
+     * 精确检索：满足过滤条件的有效文档不超过 maxCandidates 个时，用全精度向量逐一计算相似度，返回精确的 topK（召回率 100%）；
+     * 超过时返回空，由调用方改用图检索。先统计候选数再向量化查询，超过阈值时不产生 Embedding 调用
+     */
+    public Optional<List<Document>> exactSearch(SearchRequest request, int maxCandidates) {
+        View snapshot = view();
+        int count = snapshot.count();
+        Node[] view = snapshot.nodes();
+        Predicate<Node> filter = request.getFilterExpression() != null
+                ? compile(request.getFilterExpression()) : node -> true;
+
+        int[] rows = new int[Math.min(count, maxCandidates)];
+        int candidates = 0;
+        for (int i = 0; i < count; i++) {
+            Node node = view[i];
+            if (node.deleted || !filter.test(node)) {
+                continue;
+            }
+            if (candidates == rows.length) {
+                return Optional.empty();
+            }
+            rows[candidates++] = i;
+        }
+
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        ExactVectorSearch.TopK top = ExactVectorSearch.search(query, snapshot.vectors(), rows, candidates,
+                request.getTopK());
+        List<Candidate> matched = new ArrayList<>(top.rows().length);
+        for (int i = 0; i < top.rows().length; i++) {
+            Candidate candidate = new Candidate(top.rows()[i], 1 - top.scores()[i]);
+            if (belowThreshold(candidate, request.getSimilarityThreshold())) {
+                break;
+            }
+            matched.add(candidate);
+        }
+        return Optional.of(toDocuments(matched, view));
+    }
+
+    private List<Document> toDocuments(List<Candidate> matched, Node[] view) {
+        List<Document> documents = new ArrayList<>(matched.size());
+        for (Candidate candidate : matched) {
+            Node node = view[candidate.node()];
+            Map<String, Object> metadata = new HashMap<>(node.metadata);
+            if (node.seedId >= 0) {
+                metadata.put(SEED_ID, node.seedId);
+            }
+            metadata.put(DISTANCE, candidate.distance());
+            documents.add(Document.builder()
+                    .id(node.documentId)
+                    .text(node.content)
+                    .metadata(metadata)
+                    .score(1.0 - candidate.distance())
+                    .build());
+        }
+        return documents;
+    }
+
+    /**
+     * 文档是否已写入（未删除）
+     */
+    public boolean contains(String documentId) {
+        return nodeByDocumentId.containsKey(documentId);
+    }
+
+    /**
+     * 有效文档数（不含已删除的节点）
+     */
+    public int liveCount() {
+        return nodeByDocumentId.size();
+    }
+
+    /**
+     * 召回率和延迟基准测试
+     * 随机取 samples 个已有向量作为查询，以全精度暴力扫描的 topK 为标准答案，对比各种检索方式的 recall@K 和单次查询延迟：
+     * 全精度扫描、HNSW（全精度 / int8 / binary 遍历 + 重排）、int8 / binary 扫描 + 重排。
+     * 量化编码在测试时临时生成，不影响当前配置
+     */
+    public List<VectorBenchmarkResult> benchmark(int topK, int samples) {
+        View snapshot = view();
+        Entry start = snapshot.entry();
+        int count = snapshot.count();
+        Node[] view = snapshot.nodes();
+        SegmentedVectors matrix = snapshot.vectors();
+        if (start == null) {
+            return List.of();
+        }
+
+        Map<String, VectorQuantizer> quantizers = new LinkedHashMap<>();
+        for (String mode : List.of(VectorQuantizer.INT8, VectorQuantizer.BINARY)) {
+            VectorQuantizer q = VectorQuantizer.create(mode, dimensions);
+            q.ensureCapacity(count);
+            float[] vector = new float[dimensions];
+            for (int i = 0; i < count; i++) {
+                matrix.get(i, vector);
+                q.set(i, vector);
+            }
+            quantizers.put(mode, q);
+        }
+
+        List<float[]> queries = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempts = 0; queries.size() < samples && attempts < samples * 10; attempts++) {
+            int node = random.nextInt(count);
+            if (!view[node].deleted) {
+                float[] query = new float[dimensions];
+                matrix.get(node, query);
+                queries.add(query);
+            }
+        }
+
+        Predicate<Node> all = node -> true;
+        int shortlist = topK * rerankFactor;
+        int ef = Math.max(efSearch, shortlist);
+        int fullPrecision = dimensions * Float.BYTES;
+        Map<String, BenchmarkMethod> methods = new LinkedHashMap<>();
+        methods.put("exact-scan", new BenchmarkMethod(fullPrecision,
+                query -> scan(exactScorer(query, matrix), topK, all, count, view)));
+        int[] live = liveRows(count, view);
+        methods.put("exact-kernel", new BenchmarkMethod(fullPrecision, query -> {
+            ExactVectorSearch.TopK top = ExactVectorSearch.search(query, matrix, live, live.length, topK);
+            List<Candidate> found = new ArrayList<>(top.rows().length);
+            for (int i = 0; i < top.rows().length; i++) {
+                found.add(new Candidate(top.rows()[i], 1 - top.scores()[i]));
+            }
+            return found;
+        }));
+        methods.put("hnsw", new BenchmarkMethod(fullPrecision,
+                query -> accept(searchGraph(exactScorer(query, matrix), start, Math.max(efSearch, topK), count, view),
+                        topK, all, 0, view)));
+        quantizers.forEach((mode, q) -> {
+            methods.put("hnsw+" + mode, new BenchmarkMethod(q.bytesPerVector(), query -> {
+                VectorQuantizer.Scorer exact = exactScorer(query, matrix);
+                VectorQuantizer.Scorer approximate = q.scorer(query);
+                return accept(rerank(searchGraph(approximate, start, ef, count, view), exact, approximate), topK, all, 0, view);
+            }));
+            methods.put(mode + "-scan", new BenchmarkMethod(q.bytesPerVector(), query -> {
+                VectorQuantizer.Scorer exact = exactScorer(query, matrix);
+                VectorQuantizer.Scorer approximate = q.scorer(query);
+                return accept(rerank(scan(approximate, shortlist, all, count, view), exact, approximate), topK, all, 0, view);
+            }));
+        });
+
+        List<Set<Integer>> truth = new ArrayList<>();
+        for (float[] query : queries) {
+            Set<Integer> ids = new HashSet<>();
+            scan(exactScorer(query, matrix), topK, all, count, view).forEach(candidate -> ids.add(candidate.node()));
+            truth.add(ids);
+        }
+
+        List<VectorBenchmarkResult> results = new ArrayList<>();
+        methods.forEach((name, method) -> {
+            long[] latencies = new long[queries.size()];
+            double recall = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                long begin = System.nanoTime();
+                List<Candidate> found = method.search().apply(queries.get(i));
+                latencies[i] = System.nanoTime() - begin;
+                Set<Integer> expected = truth.get(i);
+                long hits = found.stream().filter(candidate -> expected.contains(candidate.node())).count();
+                recall += expected.isEmpty() ? 1 : (double) hits / expected.size();
+            }
+            Arrays.sort(latencies);
+            results.add(VectorBenchmarkResult.builder()
+                    .method(name)
+                    .topK(topK)
+                    .queries(queries.size())
+                    .recallAtK(queries.isEmpty() ? 0 : recall / queries.size())
+                    .p50Micros(percentile(latencies, 0.50))
+                    .p99Micros(percentile(latencies, 0.99))
+                    .bytesPerVector(method.bytesPerVector())
+                    .dimensions(dimensions)
+                    .build());
+        });
+        return results;
+    }
+
+    private static int[] liveRows(int count, Node[] view) {
+        int[] rows = new int[count];
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            if (!view[i].deleted) {
+                rows[live++] = i;
+            }
+        }
+        return Arrays.copyOf(rows, live);
+    }
+
+    /**
+     * 降维（Matryoshka 截断）基准测试
+     * 把已索引的全维向量截取前 d 维并重新归一化（text-embedding-3 系列缩短输出维度等价于这样截断），
+     * 随机取 samples 个向量作为查询，以全维暴力扫描的 topK 为标准答案，报告各维度暴力扫描的 recall@K、延迟和每个向量的内存。
+     * 只截取比当前索引维度小的维度；需要在全维索引上运行
+     */
+    public List<VectorBenchmarkResult> dimensionBenchmark(int topK, int samples, List<Integer> candidateDimensions) {
+        View snapshot = view();
+        int count = snapshot.count();
+        Node[] view = snapshot.nodes();
+        SegmentedVectors matrix = snapshot.vectors();
+        if (count == 0) {
+            return List.of();
+        }
+
+        List<Integer> queryNodes = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempts = 0; queryNodes.size() < samples && attempts < samples * 10; attempts++) {
+            int node = random.nextInt(count);
+            if (!view[node].deleted) {
+                queryNodes.add(node);
+            }
+        }
+
+        Predicate<Node> all = node -> true;
+        List<Set<Integer>> truth = new ArrayList<>();
+        float[] full = new float[dimensions];
+        for (int node : queryNodes) {
+            matrix.get(node, full);
+            Set<Integer> ids = new HashSet<>();
+            scan(exactScorer(full, matrix), topK, all, count, view).forEach(candidate -> ids.add(candidate.node()));
+            truth.add(ids);
+        }
+
+        List<Integer> sizes = new ArrayList<>(new TreeSet<>(candidateDimensions));
+        sizes.removeIf(d -> d <= 0 || d >= dimensions);
+        sizes.add(dimensions);
+
+        List<VectorBenchmarkResult> results = new ArrayList<>();
+        for (int d : sizes) {
+            float[] truncated = truncate(matrix, count, d);
+            long[] latencies = new long[queryNodes.size()];
+            double recall = 0;
+            for (int i = 0; i < queryNodes.size(); i++) {
+                float[] query = Arrays.copyOfRange(truncated, queryNodes.get(i) * d, (queryNodes.get(i) + 1) * d);
+                long begin = System.nanoTime();
+                List<Candidate> found = scan(truncatedScorer(query, truncated, d), topK, all, count, view);
+                latencies[i] = System.nanoTime() - begin;
+                Set<Integer> expected = truth.get(i);
+                long hits = found.stream().filter(candidate -> expected.contains(candidate.node())).count();
+                recall += expected.isEmpty() ? 1 : (double) hits / expected.size();
+            }
+            Arrays.sort(latencies);
+            results.add(VectorBenchmarkResult.builder()
+                    .method("exact-scan@" + d)
+                    .topK(topK)
+                    .queries(queryNodes.size())
+                    .recallAtK(queryNodes.isEmpty() ? 0 : recall / queryNodes.size())
+                    .p50Micros(percentile(latencies, 0.50))
+                    .p99Micros(percentile(latencies, 0.99))
+                    .bytesPerVector(d * Float.BYTES)
+                    .dimensions(d)
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * 所有向量截取前 d 维并重新归一化，按节点 ID 连续存放
+     */
+    private float[] truncate(SegmentedVectors matrix, int count, int d) {
+        float[] truncated = new float[Math.toIntExact((long) count * d)];
+        float[] vector = new float[d];
+        for (int i = 0; i < count; i++) {
+            matrix.get(i, vector);
+            System.arraycopy(normalize(vector), 0, truncated, i * d, d);
+        }
+        return truncated;
+    }
+
+    private static VectorQuantizer.Scorer truncatedScorer(float[] query, float[] truncated, int d) {
+        return node -> {
+            int base = node * d;
+            float dot = 0;
+            for (int i = 0; i < d; i++) {
+                dot += query[i] * truncated[base + i];
+            }
+            return 1 - dot;
+        };
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        writeLock.lock();
+        try {
+            version++;
+            nodeByDocumentId.clear();
+            entry = null;
+            size = 0;
+            nodes = new Node[0];
+            vectors = new SegmentedVectors(dimensions, vectorFile);
+            quantizer = VectorQuantizer.create(quantization, dimensions);
+            version++;
+            dirty = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 已删除节点数占总节点数的比例不低于 minDeletedRatio 时重建索引
+     * 用存活节点的全精度向量在一张新图中重新建图（不调用 Embedding 模型），完成后整体替换；
+     * 重建期间写入等待，读取继续使用旧图
+     *
+     * @return 是否执行了重建
+     */
+    public boolean compact(double minDeletedRatio) {
+        writeLock.lock();
+        try {
+            int count = size;
+            int live = nodeByDocumentId.size();
+            if (count == 0 || count - live < minDeletedRatio * count) {
+                return false;
+            }
+
+            long start = System.nanoTime();
+            Path compactFile = vectorFile != null ? vectorFile.resolveSibling(vectorFile.getFileName() + ".compact") : null;
+            HnswVectorStore rebuilt = new HnswVectorStore(embeddingModel, dimensions, maxConnections,
+                    efConstruction, efSearch, null, quantization, rerankFactor, compactFile);
+            Node[] view = nodes;
+            SegmentedVectors matrix = vectors;
+            for (int i = 0; i < count; i++) {
+                Node node = view[i];
+                if (!node.deleted) {
+                    float[] vector = new float[dimensions];
+                    matrix.get(i, vector);
+                    rebuilt.insert(new Document(node.documentId, node.content, node.metadata), vector);
+                }
+            }
+
+            version++;
+            nodes = rebuilt.nodes;
+            vectors = rebuilt.vectors;
+            quantizer = rebuilt.quantizer;
+            size = rebuilt.size;
+            entry = rebuilt.entry;
+            // 存活文档集合不变，只更新节点 ID
+            nodeByDocumentId.putAll(rebuilt.nodeByDocumentId);
+            version++;
+            dirty = true;
+
+            if (compactFile != null) {
+                // 旧映射仍指向被替换的文件，正在执行的查询不受影响
+                Files.move(compactFile, vectorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                vectors.moveTo(vectorFile);
+            }
+            log.info("HNSW index compacted - nodes: {} -> {}, took: {}ms",
+                    count, live, (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replace vector file " + vectorFile, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 所有有效文档的 ID
+     */
+    public Set<String> documentIds() {
+        return Set.copyOf(nodeByDocumentId.keySet());
+    }
+
+    /**
+     * 把索引写入快照文件（只在有变化时写入）
+     */
+    @Scheduled(fixedDelayString = "${vector-store.hnsw.snapshot-interval:5m}",
+            initialDelayString = "${vector-store.hnsw.snapshot-interval:5m}")
+    public void snapshot() {
+        if (snapshotPath == null || !dirty) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            long start = System.nanoTime();
+            writeSnapshot();
+            dirty = false;
+            log.info("HNSW snapshot written - nodes: {}, live: {}, took: {}ms",
+                    size, nodeByDocumentId.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write HNSW snapshot to {}: {}", snapshotPath, e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        snapshot();
+    }
+
+    // ---------------------------------------------------------------- 写入
+
+    private void insert(Document document, float[] vector) {
+        Integer previous = nodeByDocumentId.get(document.getId());
+        if (previous != null) {
+            nodes[previous].deleted = true;
+        }
+
+        int id = size;
+        ensureCapacity(id + 1);
+        SegmentedVectors matrix = vectors;
+        matrix.put(id, vector);
+        if (quantizer != null) {
+            quantizer.set(id, vector);
+        }
+
+        int level = randomLevel();
+        Node node = new Node(document.getId(), seedId(document), document.getText(),
+                Collections.unmodifiableMap(new HashMap<>(document.getMetadata())), level);
+        nodes[id] = node;
+
+        Entry start = entry;
+        if (start == null) {
+            size = id + 1;
+            entry = new Entry(id, level);
+            nodeByDocumentId.put(document.getId(), id);
+            return;
+        }
+
+        // 建图使用全精度距离
+        Node[] view = nodes;
+        VectorQuantizer.Scorer exact = exactScorer(vector, matrix);
+        int current = start.node();
+        for (int l = start.level(); l > level; l--) {
+            current = greedy(exact, current, l, id, view);
+        }
+        for (int l = Math.min(level, start.level()); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(exact, current, efConstruction, l, id, view);
+            int[] selected = selectNeighbors(candidates, maxConnections(l), view, matrix);
+            node.neighbors.set(l, selected);
+            for (int neighbor : selected) {
+                link(neighbor, id, l, view, matrix);
+            }
+            current = candidates.get(0).node();
+        }
+
+        // 发布：size 之后的读取方才能看到这个节点
+        size = id + 1;
+        if (level > start.level()) {
+            entry = new Entry(id, level);
+        }
+        nodeByDocumentId.put(document.getId(), id);
+    }
+
+    /**
+     * 给已有节点增加一条边，超过上限时按启发式重新选择（写时复制，读取方看到的是完整的旧列表或新列表）
+     */
+    private void link(int from, int to, int level, Node[] view, SegmentedVectors matrix) {
+        int[] current = view[from].neighbors.get(level);
+        int limit = maxConnections(level);
+        if (current.length < limit) {
+            int[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = to;
+            view[from].neighbors.set(level, updated);
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(current.length + 1);
+        for (int neighbor : current) {
+            candidates.add(new Candidate(neighbor, distance(matrix, from, neighbor)));
+        }
+        candidates.add(new Candidate(to, distance(matrix, from, to)));
+        candidates.sort(Comparator.comparingDouble(Candidate::distance));
+        view[from].neighbors.set(level, selectNeighbors(candidates, limit, view, matrix));
+    }
+
+    /**
+     * 启发式选择邻居：候选按距离从近到远，只保留比已选邻居更靠近查询点的候选，保证图在不同方向上的连通性；
+     * 不足上限时用被跳过的候选补齐
+     */
+    private int[] selectNeighbors(List<Candidate> candidates, int limit, Node[] view, SegmentedVectors matrix) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (distance(matrix, candidate.node(), chosen.node()) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected.stream().mapToInt(Candidate::node).toArray();
+    }
+
+    private void ensureCapacity(int required) {
+        Node[] current = nodes;
+        if (required <= current.length) {
+            return;
+        }
+        // 向量分段扩容，已写入的段不移动
+        vectors.ensureCapacity(required, size);
+        int capacity = vectors.capacity();
+        if (quantizer != null) {
+            quantizer.ensureCapacity(capacity);
+        }
+        nodes = Arrays.copyOf(current, capacity);
+    }
+
+    /**
+     * 读取一份一致的索引状态：读取顺序与发布顺序相反，整体替换期间（版本号为奇数或前后不一致）重新读取
+     */
+    private View view() {
+        while (true) {
+            int before = version;
+            Entry start = entry;
+            int count = size;
+            Node[] current = nodes;
+            SegmentedVectors matrix = vectors;
+            VectorQuantizer q = quantizer;
+            if ((before & 1) == 0 && before == version) {
+                return new View(start, count, current, matrix, q);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxConnectionsLevel0 : maxConnections;
+    }
+
+    // ---------------------------------------------------------------- 搜索
+
+    private List<Candidate> searchGraph(VectorQuantizer.Scorer scorer, Entry start, int ef, int count, Node[] view) {
+        int current = start.node();
+        for (int level = start.level(); level > 0; level--) {
+            current = greedy(scorer, current, level, count, view);
+        }
+        return searchLayer(scorer, current, ef, 0, count, view);
+    }
+
+    private int greedy(VectorQuantizer.Scorer scorer, int start, int level, int count, Node[] view) {
+        int current = start;
+        float currentDistance = scorer.distance(current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : view[current].neighbors.get(level)) {
+                if (neighbor >= count) {
+                    continue;
+                }
+                float d = scorer.distance(neighbor);
+                if (d < currentDistance) {
+                    current = neighbor;
+                    currentDistance = d;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在一层中做最佳优先搜索，返回最近的 ef 个节点（按距离升序）
+     *
+     * @param count 只访问 ID 小于 count 的节点（读取方看到的已发布节点数）
+     */
+    private List<Candidate> searchLayer(VectorQuantizer.Scorer scorer, int start, int ef, int level, int count,
+                                        Node[] view) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+
+        Candidate first = new Candidate(start, scorer.distance(start));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (closest.distance() > results.peek().distance() && results.size() >= ef) {
+                break;
+            }
+            for (int neighbor : view[closest.node()].neighbors.get(level)) {
+                if (neighbor >= count || visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = scorer.distance(neighbor);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        return sorted;
+    }
+
+    private List<Candidate> accept(List<Candidate> candidates, int topK, Predicate<Node> filter,
+                                   double threshold, Node[] view) {
+        List<Candidate> matched = new ArrayList<>(topK);
+        for (Candidate candidate : candidates) {
+            if (belowThreshold(candidate, threshold) || matched.size() >= topK) {
+                break;
+            }
+            Node node = view[candidate.node()];
+            if (!node.deleted && filter.test(node)) {
+                matched.add(candidate);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 顺序扫描所有有效节点，返回距离最近的 limit 个（按距离升序）
+     */
+    private List<Candidate> scan(VectorQuantizer.Scorer scorer, int limit, Predicate<Node> filter,
+                                 int count, Node[] view) {
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+        for (int i = 0; i < count; i++) {
+            Node node = view[i];
+            if (node.deleted || !filter.test(node)) {
+                continue;
+            }
+            float d = scorer.distance(i);
+            if (results.size() < limit) {
+                results.add(new Candidate(i, d));
+            } else if (d < results.peek().distance()) {
+                results.poll();
+                results.add(new Candidate(i, d));
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        return sorted;
+    }
+
+    /**
+     * 用全精度向量重新计算候选的距离并排序（近似距离和精确距离是同一个计算器时直接返回）
+     */
+    private List<Candidate> rerank(List<Candidate> candidates, VectorQuantizer.Scorer exact,
+                                   VectorQuantizer.Scorer approximate) {
+        if (exact == approximate) {
+            return candidates;
+        }
+        List<Candidate> reranked = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            reranked.add(new Candidate(candidate.node(), exact.distance(candidate.node())));
+        }
+        reranked.sort(Comparator.comparingDouble(Candidate::distance));
+        return reranked;
+    }
+
+    /**
+     * 阈值为 0 表示接受所有结果（余弦相似度可能为负）
+     */
+    private boolean belowThreshold(Candidate candidate, double threshold) {
+        return threshold > 0 && 1.0 - candidate.distance() < threshold;
+    }
+
+    /**
+     * 全精度距离：节点向量先批量复制到缓冲区，再用 ExactVectorSearch 的点积内核计算（每个查询一个计算器，单线程使用）
+     */
+    private static VectorQuantizer.Scorer exactScorer(float[] query, SegmentedVectors matrix) {
+        float[] row = new float[query.length];
+        return node -> {
+            matrix.get(node, row);
+            return 1 - ExactVectorSearch.dot(query, row, 0);
+        };
+    }
+
+    private static float distance(SegmentedVectors matrix, int a, int b) {
+        return 1 - matrix.dot(a, b);
+    }
+
+    // ---------------------------------------------------------------- 元数据过滤
+
+    private Predicate<Node> compile(Filter.Expression expression) {
+        return node -> matches(expression, node.metadata);
+    }
+
+    private boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        Filter.Expression expression = (Filter.Expression) operand;
+        switch (expression.type()) {
+            case AND:
+                return matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR:
+                return matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT:
+                return !matches(expression.left(), metadata);
+            default:
+                break;
+        }
+
+        Object actual = metadata.get(key(expression.left()));
+        Object expected = ((Filter.Value) expression.right()).value();
+        switch (expression.type()) {
+            case EQ:
+                return equal(actual, expected);
+            case NE:
+                return !equal(actual, expected);
+            case GT:
+                return actual != null && compare(actual, expected) > 0;
+            case GTE:
+                return actual != null && compare(actual, expected) >= 0;
+            case LT:
+                return actual != null && compare(actual, expected) < 0;
+            case LTE:
+                return actual != null && compare(actual, expected) <= 0;
+            case IN:
+                return expected instanceof Collection<?> values && values.stream().anyMatch(v -> equal(actual, v));
+            case NIN:
+                return !(expected instanceof Collection<?> values && values.stream().anyMatch(v -> equal(actual, v)));
+            default:
+                throw new IllegalArgumentException("Unsupported filter expression: " + expression.type());
+        }
+    }
+
+    private String key(Filter.Operand operand) {
+        String key = ((Filter.Key) operand).key();
+        return key.length() > 1 && (key.startsWith("'") || key.startsWith("\"")) ? key.substring(1, key.length() - 1) : key;
+    }
+
+    private boolean equal(Object actual, Object expected) {
+        if (actual instanceof Number && expected instanceof Number) {
+            return compare(actual, expected) == 0;
+        }
+        return Objects.equals(actual == null ? null : actual.toString(), expected == null ? null : expected.toString());
+    }
+
+    private int compare(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        return actual.toString().compareTo(String.valueOf(expected));
+    }
+
+    // ---------------------------------------------------------------- 快照
+
+    private void writeSnapshot() throws IOException {
+        int count = size;
+        Node[] view = nodes;
+        Entry start = entry;
+
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        if (snapshotPath.getParent() != null) {
+            Files.createDirectories(snapshotPath.getParent());
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotOutput output = new SnapshotOutput(channel);
+            output.putInt(MAGIC).putInt(VERSION).putInt(dimensions).putInt(count)
+                    .putInt(start != null ? start.node() : -1).putInt(start != null ? start.level() : -1);
+            output.flush();
+
+            // 向量按段直接写入文件通道
+            vectors.writeTo(channel, count);
+
+            for (int i = 0; i < count; i++) {
+                Node node = view[i];
+                output.putInt(node.level).putLong(node.seedId).put((byte) (node.deleted ? 1 : 0));
+                for (int level = 0; level <= node.level; level++) {
+                    int[] neighbors = node.neighbors.get(level);
+                    output.putInt(neighbors.length);
+                    for (int neighbor : neighbors) {
+                        output.putInt(neighbor);
+                    }
+                }
+                output.putString(node.documentId)
+                        .putString(node.content == null ? "" : node.content)
+                        .putString(JSON.toJSONString(node.metadata));
+            }
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void restore() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            SnapshotInput header = new SnapshotInput(channel, 0);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                log.warn("Ignoring HNSW snapshot {}: unknown format", snapshotPath);
+                return;
+            }
+            int snapshotDimensions = header.getInt();
+            if (snapshotDimensions != dimensions) {
+                log.warn("Ignoring HNSW snapshot {}: dimensions {} do not match the embedding model ({})",
+                        snapshotPath, snapshotDimensions, dimensions);
+                return;
+            }
+            int count = header.getInt();
+            int entryNode = header.getInt();
+            int entryLevel = header.getInt();
+
+            ensureCapacity(count);
+            long position = HEADER_BYTES + vectors.readFrom(channel, HEADER_BYTES, count);
+            // 量化编码不写入快照，由全精度向量重新计算
+            if (quantizer != null) {
+                SegmentedVectors matrix = vectors;
+                float[] vector = new float[dimensions];
+                for (int i = 0; i < count; i++) {
+                    matrix.get(i, vector);
+                    quantizer.set(i, vector);
+                }
+            }
+
+            SnapshotInput input = new SnapshotInput(channel, position);
+            Node[] view = nodes;
+            for (int i = 0; i < count; i++) {
+                int level = input.getInt();
+                long seedId = input.getLong();
+                boolean deleted = input.get() == 1;
+                int[][] neighbors = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    neighbors[l] = new int[input.getInt()];
+                    for (int j = 0; j < neighbors[l].length; j++) {
+                        neighbors[l][j] = input.getInt();
+                    }
+                }
+                String documentId = input.getString();
+                String content = input.getString();
+                Map<String, Object> metadata = JSON.parseObject(input.getString());
+
+                Node node = new Node(documentId, seedId, content, metadata, level);
+                for (int l = 0; l <= level; l++) {
+                    node.neighbors.set(l, neighbors[l]);
+                }
+                node.deleted = deleted;
+                view[i] = node;
+                if (!deleted) {
+                    nodeByDocumentId.put(documentId, i);
+                }
+            }
+
+            size = count;
+            entry = entryNode >= 0 ? new Entry(entryNode, entryLevel) : null;
+            log.info("HNSW index restored from {} - nodes: {}, live: {}, took: {}ms",
+                    snapshotPath, count, nodeByDocumentId.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to restore HNSW snapshot {}, starting with an empty index: {}", snapshotPath, e.getMessage());
+            nodeByDocumentId.clear();
+            entry = null;
+            size = 0;
+            nodes = new Node[0];
+            vectors = new SegmentedVectors(dimensions, vectorFile);
+            quantizer = VectorQuantizer.create(quantization, dimensions);
+        }
+    }
+
+    // ---------------------------------------------------------------- 工具
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] normalized = vector.clone();
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+
+    private static long seedId(Document document) {
+        Object seedId = document.getMetadata().get(SEED_ID);
+        return seedId instanceof Number number ? number.longValue() : -1L;
+    }
+
+    /**
+     * 快照的顺序写入：小端序，经缓冲区写入文件通道
+     */
+    private static final class SnapshotOutput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        SnapshotOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        SnapshotOutput putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            return this;
+        }
+
+        SnapshotOutput putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            return this;
+        }
+
+        SnapshotOutput put(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+            return this;
+        }
+
+        /**
+         * 字符串：int 长度 + UTF-8 字节，超过缓冲区时分多次写入
+         */
+        SnapshotOutput putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            return this;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * 快照的顺序读取：从文件通道的指定位置开始，经缓冲区按小端序读取
+     */
+    private static final class SnapshotInput {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        SnapshotInput(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+            buffer.limit(0);
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        byte get() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        String getString() throws IOException {
+            byte[] bytes = new byte[getInt()];
+            for (int offset = 0; offset < bytes.length; ) {
+                require(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of snapshot");
+                }
+                position += read;
+            }
+            buffer.flip();
+        }
+    }
+
+    private record Entry(int node, int level) {
+    }
+
+    private record View(Entry entry, int count, Node[] nodes, SegmentedVectors vectors, VectorQuantizer quantizer) {
+    }
+
+    private record Candidate(int node, float distance) {
+    }
+
+    private record BenchmarkMethod(int bytesPerVector, Function<float[], List<Candidate>> search) {
+    }
+
+    private static final class Node {
+
+        final String documentId;
+        final long seedId;
+        final String content;
+        final Map<String, Object> metadata;
+        final int level;
+        final AtomicReferenceArray<int[]> neighbors;
+        volatile boolean deleted;
+
+        Node(String documentId, long seedId, String content, Map<String, Object> metadata, int level) {
+            this.documentId = documentId;
+            this.seedId = seedId;
+            this.content = content;
+            this.metadata = metadata;
+            this.level = level;
+            this.neighbors = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                this.neighbors.set(l, new int[0]);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.desheng.service;
+
+import com.desheng.model.SeedDocument;
+import com.desheng.model.SeedVector;
+import com.desheng.model.dto.HybridSearchResponse;
+import com.desheng.model.dto.HybridSearchResultDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 混合搜索服务
+ * 并行执行关键词（BM25）召回和向量召回，使用倒数排名融合（RRF）合并两路排名，只取回融合后前 K 个文档
+ *
+ * RRF 得分：score(d) = Σ 1 / (k + rank(d))，rank 从 1 开始，k 为平滑常数（默认 60）。
+ * 只使用排名、不使用原始分数，因此不需要对 BM25 分数和向量距离做归一化
+ *
+ * 每路召回有独立的截止时间，超时或失败的一路不参与融合（响应中标记为降级），两路都失败时请求失败
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class HybridSearchService {
+
+    public static final String LEG_LEXICAL = "lexical";
+    public static final String LEG_SEMANTIC = "semantic";
+
+    private final SeedSearchService seedSearchService;
+    private final SemanticSearchService semanticSearchService;
+    private final SearchInstrumentation searchInstrumentation;
+
+    @Value("${search.hybrid.rank-constant:60}")
+    private int rankConstant;
+
+    @Value("${search.hybrid.candidates:50}")
+    private int candidates;
+
+    @Value("${search.hybrid.lexical-timeout:1s}")
+    private Duration lexicalTimeout;
+
+    @Value("${search.hybrid.semantic-timeout:2s}")
+    private Duration semanticTimeout;
+
+    /**
+     * 混合搜索
+     *
+     * @param query 查询文本（同时作为关键词和语义查询）
+     * @param topK 返回结果数量
+     * @return 融合后的结果（按 RRF 得分倒序）
+     */
+    public CompletableFuture<HybridSearchResponse> search(String query, int topK) {
+        log.info("Hybrid search - query: {}, topK: {}", query, topK);
+
+        SearchInstrumentation.Trace trace = searchInstrumentation.start("seeds.hybridSearch");
+        trace.query("hybrid query: " + query + ", topK: " + topK);
+        int depth = Math.max(candidates, topK);
+
+        CompletableFuture<Leg> lexical = leg(LEG_LEXICAL, trace,
+                () -> seedSearchService.searchSeedIdsAsync(query, depth, lexicalTimeout));
+        CompletableFuture<Leg> semantic = leg(LEG_SEMANTIC, trace,
+                () -> semanticSearchService.semanticSearchAsync(query, depth)
+                        .copy()
+                        .orTimeout(semanticTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .thenApply(vectors -> vectors.stream().map(SeedVector::getSeedId).collect(Collectors.toList())));
+
+        return lexical.thenCombine(semantic, (lexicalLeg, semanticLeg) -> {
+                    if (lexicalLeg.error() != null && semanticLeg.error() != null) {
+                        throw new CompletionException(lexicalLeg.error());
+                    }
+                    return trace.stage("fuse", () -> fuse(lexicalLeg, semanticLeg, topK));
+                })
+                .thenCompose(fused -> hydrate(query, fused, trace))
+                .whenComplete((response, error) -> trace.finish(error));
+    }
+
+    /**
+     * 执行一路召回：失败或超过截止时间时返回带错误的空结果，不影响另一路
+     */
+    private CompletableFuture<Leg> leg(String name, SearchInstrumentation.Trace trace,
+                                       Supplier<CompletableFuture<List<Long>>> call) {
+        long start = System.nanoTime();
+        CompletableFuture<List<Long>> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((ids, error) -> {
+            trace.record(name, System.nanoTime() - start);
+            if (error == null) {
+                return new Leg(name, ids, null);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            log.warn("Hybrid search {} leg degraded: {}", name, cause.toString());
+            return new Leg(name, List.of(), cause);
+        });
+    }
+
+    /**
+     * 倒数排名融合，得分相同时取两路中较好的排名
+     */
+    Fused fuse(Leg lexical, Leg semantic, int topK) {
+        Map<Long, Integer> lexicalRanks = ranks(lexical.ids());
+        Map<Long, Integer> semanticRanks = ranks(semantic.ids());
+
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        lexicalRanks.forEach((id, rank) -> scores.merge(id, 1.0 / (rankConstant + rank), Double::sum));
+        semanticRanks.forEach((id, rank) -> scores.merge(id, 1.0 / (rankConstant + rank), Double::sum));
+
+        Function<Long, Integer> bestRank = id -> Math.min(
+                lexicalRanks.getOrDefault(id, Integer.MAX_VALUE), semanticRanks.getOrDefault(id, Integer.MAX_VALUE));
+        List<HybridSearchResultDto> results = scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(entry -> bestRank.apply(entry.getKey())))
+                .limit(topK)
+                .map(entry -> HybridSearchResultDto.builder()
+                        .seedId(entry.getKey())
+                        .score(entry.getValue())
+                        .lexicalRank(lexicalRanks.get(entry.getKey()))
+                        .semanticRank(semanticRanks.get(entry.getKey()))
+                        .build())
+                .collect(Collectors.toList());
+
+        List<String> degradedLegs = new ArrayList<>();
+        if (lexical.error() != null) {
+            degradedLegs.add(lexical.name());
+        }
+        if (semantic.error() != null) {
+            degradedLegs.add(semantic.name());
+        }
+        return new Fused(results, degradedLegs);
+    }
+
+    /**
+     * 只取回融合后的前 K 个文档，已删除的文档跳过
+     */
+    private CompletableFuture<HybridSearchResponse> hydrate(String query, Fused fused, SearchInstrumentation.Trace trace) {
+        List<Long> ids = fused.results().stream().map(HybridSearchResultDto::getSeedId).collect(Collectors.toList());
+        long start = System.nanoTime();
+
+        return seedSearchService.findDocumentsAsync(ids).thenApply(documents -> {
+            trace.record("hydrate", System.nanoTime() - start);
+
+            Map<Long, SeedDocument> documentsById = new HashMap<>();
+            documents.forEach(document -> documentsById.put(document.getId(), document));
+
+            List<HybridSearchResultDto> results = fused.results().stream()
+                    .filter(result -> documentsById.containsKey(result.getSeedId()))
+                    .map(result -> {
+                        result.setSeed(documentsById.get(result.getSeedId()));
+                        return result;
+                    })
+                    .collect(Collectors.toList());
+            return HybridSearchResponse.builder()
+                    .query(query)
+                    .results(results)
+                    .degradedLegs(fused.degradedLegs())
+                    .build();
+        });
+    }
+
+    private Map<Long, Integer> ranks(List<Long> ids) {
+        Map<Long, Integer> ranks = new LinkedHashMap<>();
+        for (Long id : ids) {
+            ranks.putIfAbsent(id, ranks.size() + 1);
+        }
+        return ranks;
+    }
+
+    record Leg(String name, List<Long> ids, Throwable error) {
+    }
+
+    record Fused(List<HybridSearchResultDto> results, List<String> degradedLegs) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.desheng.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import com.desheng.model.SeedDocument;
+import com.desheng.model.dto.IndexSortBenchmarkResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 索引排序基准测试
+ * 生成同一批合成种子文档，分别写入带索引排序和不带索引排序的两个临时索引，
+ * 用相同的纯筛选浏览查询（作物类型过滤 + 审定年份倒序，总数只统计到上限）对比延迟，测试结束后删除临时索引
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class IndexSortBenchmarkService {
+
+    private static final String SORTED_INDEX = "benchmark-seeds-index-sort";
+    private static final String UNSORTED_INDEX = "benchmark-seeds-no-sort";
+    private static final String[] CROP_TYPES = {"玉米", "水稻", "小麦", "大豆", "棉花", "油菜", "高粱", "谷子"};
+    private static final int BULK_SIZE = 5000;
+    private static final int PAGE_SIZE = 20;
+
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final ElasticsearchIndexService elasticsearchIndexService;
+
+    @Value("${search.browse.track-total-hits-up-to:1000}")
+    private int browseTrackTotalHitsUpTo;
+
+    /**
+     * @param documents 合成文档数
+     * @param samples 每个索引执行的查询数
+     */
+    public List<IndexSortBenchmarkResult> benchmark(int documents, int samples) {
+        try {
+            createIndex(SORTED_INDEX, true);
+            createIndex(UNSORTED_INDEX, false);
+            load(documents);
+
+            List<IndexSortBenchmarkResult> results = new ArrayList<>();
+            results.add(run("index-sort", SORTED_INDEX, documents, samples));
+            results.add(run("no-sort", UNSORTED_INDEX, documents, samples));
+            return results;
+        } finally {
+            elasticsearchTemplate.indexOps(IndexCoordinates.of(SORTED_INDEX)).delete();
+            elasticsearchTemplate.indexOps(IndexCoordinates.of(UNSORTED_INDEX)).delete();
+        }
+    }
+
+    private void createIndex(String name, boolean sorted) {
+        IndexOperations indexOps = elasticsearchTemplate.indexOps(IndexCoordinates.of(name));
+        if (indexOps.exists()) {
+            indexOps.delete();
+        }
+        Document settings = Document.create()
+                .append("number_of_shards", 1)
+                .append("number_of_replicas", 0);
+        if (sorted) {
+            settings.append("sort", elasticsearchIndexService.createApprovalYearSortSettings());
+        }
+        Document mapping = Document.create().append("properties", Map.of(
+                "id", Map.of("type", "long"),
+                "approvalYear", Map.of("type", "integer"),
+                "cropType", Map.of("type", "keyword"),
+                "varietyName", Map.of("type", "keyword")
+        ));
+        indexOps.create(settings, mapping);
+    }
+
+    /**
+     * 两个索引写入完全相同的文档（固定随机种子），写完后强制合并为一个分段，排除分段数量的影响
+     */
+    private void load(int documents) {
+        Random random = new Random(42);
+        List<IndexQuery> batch = new ArrayList<>(BULK_SIZE);
+        for (int i = 0; i < documents; i++) {
+            SeedDocument document = new SeedDocument();
+            document.setId((long) i);
+            document.setApprovalYear(1990 + random.nextInt(35));
+            document.setCropType(CROP_TYPES[random.nextInt(CROP_TYPES.length)]);
+            document.setVarietyName("品种" + i);
+            batch.add(new IndexQueryBuilder().withId(String.valueOf(i)).withObject(document).build());
+            if (batch.size() == BULK_SIZE || i == documents - 1) {
+                elasticsearchTemplate.bulkIndex(batch, IndexCoordinates.of(SORTED_INDEX));
+                elasticsearchTemplate.bulkIndex(batch, IndexCoordinates.of(UNSORTED_INDEX));
+                batch.clear();
+            }
+        }
+        for (String index : List.of(SORTED_INDEX, UNSORTED_INDEX)) {
+            IndexOperations indexOps = elasticsearchTemplate.indexOps(IndexCoordinates.of(index));
+            indexOps.refresh();
+            elasticsearchTemplate.execute(client -> client.indices().forcemerge(f -> f.index(index).maxNumSegments(1L)));
+        }
+        log.info("Loaded {} synthetic seed documents into benchmark indexes", documents);
+    }
+
+    private IndexSortBenchmarkResult run(String method, String index, int documents, int samples) {
+        // 预热，并让两个索引使用相同的查询序列
+        Random random = new Random(7);
+        for (int i = 0; i < Math.min(samples, 50); i++) {
+            search(index, random);
+        }
+
+        random = new Random(7);
+        long[] latencies = new long[samples];
+        long[] took = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long begin = System.nanoTime();
+            SearchHits<SeedDocument> hits = search(index, random);
+            latencies[i] = System.nanoTime() - begin;
+            took[i] = hits.getExecutionDuration() != null ? hits.getExecutionDuration().toNanos() : 0;
+        }
+        Arrays.sort(latencies);
+        Arrays.sort(took);
+        return IndexSortBenchmarkResult.builder()
+                .method(method)
+                .documents(documents)
+                .queries(samples)
+                .p50Micros(percentile(latencies, 0.50) / 1000.0)
+                .p99Micros(percentile(latencies, 0.99) / 1000.0)
+                .tookP50Millis(percentile(took, 0.50) / 1_000_000.0)
+                .tookP99Millis(percentile(took, 0.99) / 1_000_000.0)
+                .build();
+    }
+
+    /**
+     * 纯筛选浏览：随机作物类型、前 5 页之一，与线上浏览查询使用相同的排序和总数统计上限
+     */
+    private SearchHits<SeedDocument> search(String index, Random random) {
+        String cropType = CROP_TYPES[random.nextInt(CROP_TYPES.length)];
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(QueryBuilders.bool(b -> b.filter(
+                        QueryBuilders.term(t -> t.field("cropType").value(cropType)))))
+                .build();
+        query.setPageable(PageRequest.of(random.nextInt(5), PAGE_SIZE, ElasticsearchIndexService.INDEX_SORT));
+        query.setTrackTotalHitsUpTo(browseTrackTotalHitsUpTo);
+        return elasticsearchTemplate.search(query, SeedDocument.class, IndexCoordinates.of(index));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)];
+    }
+}
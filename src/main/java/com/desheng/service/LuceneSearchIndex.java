@@ -0,0 +1,503 @@
+package com.desheng.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.desheng.model.SeedApprovalDocument;
+import com.desheng.model.SeedDocument;
+import com.desheng.model.dto.AdvancedSearchRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 本地 Lucene 索引
+ * 在进程内维护种子（seeds）和审定详情（seed_approval_details）的副本，Elasticsearch 不可用时由熔断器切换到这里提供搜索，
+ * 也可以作为小规模部署的免网络搜索引擎。文档与写入 ES 的文档相同（SeedSearchService#convertToDocument 的转换结果、
+ * 审定详情补全拼音后的文档），由同步路径增量更新
+ *
+ * 分析：文本字段去除空白、转小写后切分为 1~3 字的 ngram，查询时要求查询串的全部 3-gram 命中，近似 ES 中 *value* 的包含匹配；
+ * 汉字字段和拼音（全拼、简拼）字段使用同一套分析
+ *
+ * 默认使用内存目录；配置 search.lucene.path 时持久化到本地磁盘，重启后不依赖 ES 即可提供搜索
+ *
+ * 写入后通过近实时（NRT）刷新让新文档可见，不等待 fsync；提交（commit）按 search.lucene.commit-interval 定期执行，
+ * 关闭时再提交一次。进程崩溃时最多丢失一个提交周期的写入，重启后由同步路径重建
+ */
+@Component
+@Slf4j
+public class LuceneSearchIndex implements DisposableBean {
+
+    public static final String SEEDS = "seeds";
+    public static final String APPROVALS = "seed_approval_details";
+
+    private static final int MAX_GRAM = 3;
+    private static final String FIELD_CATALOG = "_catalog";
+    private static final String FIELD_KEY = "_key";
+    private static final String FIELD_SOURCE = "_source";
+    private static final String FIELD_YEAR = "approvalYear";
+    private static final String EXACT_SUFFIX = ".exact";
+
+    private static final String[] SEED_KEYWORD_FIELDS = {
+            "varietyName", "varietyNamePinyin", "varietyNamePinyinShort",
+            "approvalNumber", "company", "companyPinyin"};
+
+    private static final String[] APPROVAL_KEYWORD_FIELDS = {
+            "varietyName", "varietyNamePinyin", "varietyNamePinyinShort",
+            "approvalNumber", "applicant", "applicantPinyin"};
+
+    private static final String[] VARIETY_NAME_FIELDS = {"varietyName", "varietyNamePinyin", "varietyNamePinyinShort"};
+
+    private static final String[] APPLICANT_FIELDS = {"applicant", "applicantPinyin"};
+
+    private static final String[] BREEDER_FIELDS = {"breeder", "breederPinyin"};
+
+    /**
+     * 纯筛选浏览的排序，与 ES 索引排序一致：审定年份倒序（缺失排最后）、ID 正序
+     */
+    private static final Sort BROWSE_SORT;
+
+    static {
+        SortField year = new SortField(FIELD_YEAR, SortField.Type.INT, true);
+        year.setMissingValue(Integer.MIN_VALUE);
+        BROWSE_SORT = new Sort(year, new SortField(FIELD_KEY, SortField.Type.STRING));
+    }
+
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final Set<String> readyCatalogs = ConcurrentHashMap.newKeySet();
+
+    public LuceneSearchIndex(@Value("${search.lucene.path:}") String path) {
+        try {
+            this.directory = path == null || path.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Paths.get(path));
+            this.writer = new IndexWriter(directory, new IndexWriterConfig(ngramAnalyzer())
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+            this.searcherManager = new SearcherManager(writer, null);
+
+            // 持久化目录中已有的数据可以直接使用
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                for (String catalog : List.of(SEEDS, APPROVALS)) {
+                    if (searcher.count(catalogQuery(catalog)) > 0) {
+                        readyCatalogs.add(catalog);
+                    }
+                }
+            } finally {
+                searcherManager.release(searcher);
+            }
+            log.info("Local search index opened ({}), ready catalogs: {}",
+                    path == null || path.isBlank() ? "in-memory" : path, readyCatalogs);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open local search index", e);
+        }
+    }
+
+    /**
+     * 指定目录是否已完成全量构建，可以提供降级搜索
+     */
+    public boolean isReady(String catalog) {
+        return readyCatalogs.contains(catalog);
+    }
+
+    /**
+     * 全量替换种子索引
+     */
+    public void replaceSeeds(List<SeedDocument> documents) {
+        replace(SEEDS, documents.stream().map(this::toLuceneDocument).collect(Collectors.toList()));
+    }
+
+    /**
+     * 新增或更新单个种子
+     */
+    public void indexSeed(SeedDocument document) {
+        update(List.of(toLuceneDocument(document)));
+    }
+
+    /**
+     * 删除单个种子
+     */
+    public void deleteSeed(Long id) {
+        delete(key(SEEDS, String.valueOf(id)));
+    }
+
+    /**
+     * 全量替换审定详情索引
+     */
+    public void replaceApprovals(List<SeedApprovalDocument> documents) {
+        replace(APPROVALS, documents.stream().map(this::toLuceneDocument).collect(Collectors.toList()));
+    }
+
+    /**
+     * 新增或更新审定详情
+     */
+    public void indexApprovals(List<SeedApprovalDocument> documents) {
+        update(documents.stream().map(this::toLuceneDocument).collect(Collectors.toList()));
+    }
+
+    /**
+     * 删除单个审定详情
+     */
+    public void deleteApproval(String id) {
+        delete(key(APPROVALS, id));
+    }
+
+    /**
+     * 种子搜索，条件与 SearchQueryCompiler#compileSeedQuery 一致：有关键词时按相关度排序，否则按审定年份倒序
+     *
+     * @param page 页码（0-indexed）
+     */
+    public Hits<SeedDocument> searchSeeds(String keyword, String cropType, String approvalRegion,
+                                          Integer startYear, Integer endYear, String company,
+                                          int page, int pageSize) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder().add(catalogQuery(SEEDS), Occur.FILTER);
+
+        boolean relevance = hasText(keyword);
+        if (relevance) {
+            query.add(containsQuery(keyword, SEED_KEYWORD_FIELDS), Occur.MUST);
+        }
+        if (hasText(cropType)) {
+            query.add(exactQuery("cropType", cropType), Occur.FILTER);
+        }
+        if (hasText(approvalRegion)) {
+            query.add(containsQuery(approvalRegion, "approvalRegion"), Occur.FILTER);
+        }
+        Query yearFilter = yearQuery(null, startYear, endYear);
+        if (yearFilter != null) {
+            query.add(yearFilter, Occur.FILTER);
+        }
+        if (hasText(company)) {
+            query.add(containsQuery(company, "company"), Occur.FILTER);
+        }
+
+        return search(query.build(), relevance ? null : BROWSE_SORT, page * pageSize, pageSize, SeedDocument.class);
+    }
+
+    /**
+     * 审定详情高级搜索，条件与 SearchQueryCompiler#compileApprovalQuery 一致（不支持分面统计）
+     */
+    public Hits<SeedApprovalDocument> searchApprovals(AdvancedSearchRequest request) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder().add(catalogQuery(APPROVALS), Occur.FILTER);
+
+        boolean relevance = false;
+        if (hasText(request.getKeyword())) {
+            query.add(containsQuery(request.getKeyword(), APPROVAL_KEYWORD_FIELDS), Occur.MUST);
+            relevance = true;
+        }
+        if (hasText(request.getVarietyName())) {
+            query.add(containsQuery(request.getVarietyName(), VARIETY_NAME_FIELDS), Occur.MUST);
+            relevance = true;
+        }
+        if (hasText(request.getApplicant())) {
+            query.add(containsQuery(request.getApplicant(), APPLICANT_FIELDS), Occur.MUST);
+            relevance = true;
+        }
+        if (hasText(request.getBreeder())) {
+            query.add(containsQuery(request.getBreeder(), BREEDER_FIELDS), Occur.MUST);
+            relevance = true;
+        }
+
+        if (hasText(request.getApprovalNumber())) {
+            query.add(exactQuery("approvalNumber", request.getApprovalNumber()), Occur.FILTER);
+        }
+        if (hasText(request.getCropName())) {
+            query.add(exactQuery("cropName", request.getCropName()), Occur.FILTER);
+        }
+        Integer startYear = null;
+        Integer endYear = null;
+        if (request.getApprovalYearRange() != null && request.getApprovalYearRange().size() == 2) {
+            startYear = request.getApprovalYearRange().get(0);
+            endYear = request.getApprovalYearRange().get(1);
+        }
+        Query yearFilter = yearQuery(request.getApprovalYear(), startYear, endYear);
+        if (yearFilter != null) {
+            query.add(yearFilter, Occur.FILTER);
+        }
+        if (request.getIsGMO() != null) {
+            query.add(exactQuery("isGMO", String.valueOf(request.getIsGMO())), Occur.FILTER);
+        }
+        if (hasText(request.getApprovalAuthority())) {
+            query.add(containsQuery(request.getApprovalAuthority(), "approvalAuthority"), Occur.FILTER);
+        }
+        if (hasText(request.getSuitableRegion())) {
+            query.add(containsQuery(request.getSuitableRegion(), "suitableRegions"), Occur.FILTER);
+        }
+
+        int offset = (request.getPage() - 1) * request.getPageSize();
+        return search(query.build(), relevance ? null : BROWSE_SORT, offset, request.getPageSize(),
+                SeedApprovalDocument.class);
+    }
+
+    /**
+     * 定期提交：把上次提交之后的写入持久化，并刷新一次搜索器（单次写入时的非阻塞刷新可能因并发刷新而跳过）
+     */
+    @Scheduled(fixedDelayString = "${search.lucene.commit-interval:30s}",
+            initialDelayString = "${search.lucene.commit-interval:30s}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Failed to commit local search index: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private <T> Hits<T> search(Query query, Sort sort, int offset, int size, Class<T> clazz) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                int limit = Math.max(offset + size, 1);
+                TopDocs topDocs = sort == null ? searcher.search(query, limit) : searcher.search(query, limit, sort);
+
+                StoredFields storedFields = searcher.storedFields();
+                List<T> documents = new ArrayList<>();
+                for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+                    String source = storedFields.document(topDocs.scoreDocs[i].doc).get(FIELD_SOURCE);
+                    documents.add(JSON.parseObject(source, clazz));
+                }
+                return new Hits<>(documents, searcher.count(query));
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to search local index", e);
+        }
+    }
+
+    private void replace(String catalog, List<Document> documents) {
+        try {
+            writer.deleteDocuments(new Term(FIELD_CATALOG, catalog));
+            writer.addDocuments(documents);
+            // 全量重建较少发生，立即提交并等待刷新完成，标记就绪后降级搜索即可看到全部文档
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+            readyCatalogs.add(catalog);
+            log.info("Rebuilt local search index {} with {} documents", catalog, documents.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to rebuild local search index " + catalog, e);
+        }
+    }
+
+    private void update(List<Document> documents) {
+        try {
+            for (Document document : documents) {
+                writer.updateDocument(new Term(FIELD_KEY, document.get(FIELD_KEY)), document);
+            }
+            refresh();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to update local search index", e);
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            writer.deleteDocuments(new Term(FIELD_KEY, key));
+            refresh();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to delete from local search index", e);
+        }
+    }
+
+    /**
+     * 近实时刷新：从 IndexWriter 打开新的搜索器，不提交、不阻塞（已有刷新在进行时直接返回）
+     */
+    private void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    private Document toLuceneDocument(SeedDocument seed) {
+        Document document = baseDocument(SEEDS, String.valueOf(seed.getId()), seed.getApprovalYear(), JSON.toJSONString(seed));
+        addText(document, "varietyName", seed.getVarietyName());
+        addText(document, "varietyNamePinyin", seed.getVarietyNamePinyin());
+        addText(document, "varietyNamePinyinShort", seed.getVarietyNamePinyinShort());
+        addText(document, "approvalNumber", seed.getApprovalNumber());
+        addText(document, "company", seed.getCompany());
+        addText(document, "companyPinyin", seed.getCompanyPinyin());
+        addText(document, "approvalRegion", seed.getApprovalRegion());
+        addExact(document, "cropType", seed.getCropType());
+        return document;
+    }
+
+    private Document toLuceneDocument(SeedApprovalDocument approval) {
+        Document document = baseDocument(APPROVALS, approval.getId(), approval.getApprovalYear(), JSON.toJSONString(approval));
+        addText(document, "varietyName", approval.getVarietyName());
+        addText(document, "varietyNamePinyin", approval.getVarietyNamePinyin());
+        addText(document, "varietyNamePinyinShort", approval.getVarietyNamePinyinShort());
+        addText(document, "approvalNumber", approval.getApprovalNumber());
+        addText(document, "applicant", approval.getApplicant());
+        addText(document, "applicantPinyin", approval.getApplicantPinyin());
+        addText(document, "breeder", approval.getBreeder());
+        addText(document, "breederPinyin", approval.getBreederPinyin());
+        addText(document, "approvalAuthority", approval.getApprovalAuthority());
+        if (approval.getSuitableRegions() != null) {
+            approval.getSuitableRegions().forEach(region -> addText(document, "suitableRegions", region));
+        }
+        addExact(document, "approvalNumber", approval.getApprovalNumber());
+        addExact(document, "cropName", approval.getCropName());
+        if (approval.getIsGMO() != null) {
+            addExact(document, "isGMO", String.valueOf(approval.getIsGMO()));
+        }
+        return document;
+    }
+
+    private Document baseDocument(String catalog, String id, Integer approvalYear, String source) {
+        String key = key(catalog, id);
+        Document document = new Document();
+        document.add(new StringField(FIELD_CATALOG, catalog, Field.Store.NO));
+        document.add(new StringField(FIELD_KEY, key, Field.Store.YES));
+        document.add(new SortedDocValuesField(FIELD_KEY, new BytesRef(key)));
+        if (approvalYear != null) {
+            document.add(new IntPoint(FIELD_YEAR, approvalYear));
+            document.add(new NumericDocValuesField(FIELD_YEAR, approvalYear));
+        }
+        document.add(new StoredField(FIELD_SOURCE, source));
+        return document;
+    }
+
+    private void addText(Document document, String field, String value) {
+        if (hasText(value)) {
+            document.add(new TextField(field, normalize(value), Field.Store.NO));
+        }
+    }
+
+    private void addExact(Document document, String field, String value) {
+        if (hasText(value)) {
+            document.add(new StringField(field + EXACT_SUFFIX, value.trim(), Field.Store.NO));
+        }
+    }
+
+    /**
+     * 包含匹配：查询串不超过 3 个字时直接匹配对应的 ngram，否则要求全部 3-gram 命中；多个字段任一匹配即可
+     */
+    private Query containsQuery(String value, String... fields) {
+        String normalized = normalize(value);
+        Set<String> grams = new LinkedHashSet<>();
+        if (normalized.length() <= MAX_GRAM) {
+            grams.add(normalized);
+        } else {
+            for (int i = 0; i + MAX_GRAM <= normalized.length(); i++) {
+                grams.add(normalized.substring(i, i + MAX_GRAM));
+            }
+        }
+
+        BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+        for (String field : fields) {
+            BooleanQuery.Builder allGrams = new BooleanQuery.Builder();
+            grams.forEach(gram -> allGrams.add(new TermQuery(new Term(field, gram)), Occur.MUST));
+            anyField.add(allGrams.build(), Occur.SHOULD);
+        }
+        return anyField.build();
+    }
+
+    private Query exactQuery(String field, String value) {
+        return new TermQuery(new Term(field + EXACT_SUFFIX, value.trim()));
+    }
+
+    /**
+     * 年份条件：精确年份与范围取交集，颠倒的范围自动交换
+     */
+    private Query yearQuery(Integer exactYear, Integer startYear, Integer endYear) {
+        Integer lower = startYear;
+        Integer upper = endYear;
+        if (lower != null && upper != null && lower > upper) {
+            lower = endYear;
+            upper = startYear;
+        }
+        if (exactYear != null) {
+            lower = lower == null ? exactYear : Math.max(lower, exactYear);
+            upper = upper == null ? exactYear : Math.min(upper, exactYear);
+        }
+        if (lower == null && upper == null) {
+            return null;
+        }
+        if (lower != null && upper != null && upper < lower) {
+            return new MatchNoDocsQuery();
+        }
+        return IntPoint.newRangeQuery(FIELD_YEAR,
+                lower != null ? lower : Integer.MIN_VALUE, upper != null ? upper : Integer.MAX_VALUE);
+    }
+
+    private Query catalogQuery(String catalog) {
+        return new TermQuery(new Term(FIELD_CATALOG, catalog));
+    }
+
+    private String key(String catalog, String id) {
+        return catalog + ":" + id;
+    }
+
+    private String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", "");
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static Analyzer ngramAnalyzer() {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer tokenizer = new NGramTokenizer(1, MAX_GRAM);
+                return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+            }
+        };
+    }
+
+    /**
+     * 一页命中的文档和命中总数
+     */
+    public record Hits<T>(List<T> documents, long totalHits) {
+    }
+}
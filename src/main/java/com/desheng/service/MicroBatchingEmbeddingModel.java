@@ -0,0 +1,212 @@
+package com.desheng.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 查询向量微批处理
+ * 并发的单条查询 Embedding（embed(String)）先进入队列，由一个调度线程合并：
+ * 从第一条请求入队起最多等待 max-wait，或凑满 max-batch-size 条，合并为一次批量调用，再把结果分发给各调用方。
+ * 同时进行的批量调用数受 max-in-flight 限制；全部占满时请求继续在队列中累积，下一批自然更大
+ *
+ * 文档批量向量化（call(EmbeddingRequest)）本身已是批量调用，直接转发
+ *
+ * 调用方最多等待 result-timeout；关闭时中断并等待调度线程退出，队列中尚未提交的请求直接失败
+ *
+ * 指标：
+ * - embedding.micro_batch.size{reason=full|timeout} 每批条数（批次填充率）
+ * - embedding.micro_batch.wait 请求在队列中等待的时间
+ */
+@Slf4j
+public class MicroBatchingEmbeddingModel implements EmbeddingModel, DisposableBean {
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final EmbeddingModel delegate;
+    private final Executor batchExecutor;
+    private final long maxWaitNanos;
+    private final Duration resultTimeout;
+    private final int maxBatchSize;
+    private final Semaphore inFlight;
+    private final BlockingQueue<PendingEmbedding> queue = new LinkedBlockingQueue<>();
+    private final DistributionSummary fullBatches;
+    private final DistributionSummary timeoutBatches;
+    private final Timer waitTimer;
+    private final Thread dispatcher;
+    private volatile boolean stopped;
+
+    /**
+     * @param resultTimeout 调用方等待结果的最长时间（含排队和批量调用）
+     */
+    public MicroBatchingEmbeddingModel(EmbeddingModel delegate, Executor batchExecutor, Duration maxWait,
+                                       Duration resultTimeout, int maxBatchSize, int maxInFlight,
+                                       MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.batchExecutor = batchExecutor;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.resultTimeout = resultTimeout;
+        this.maxBatchSize = maxBatchSize;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.fullBatches = batchSize(meterRegistry, "full");
+        this.timeoutBatches = batchSize(meterRegistry, "timeout");
+        this.waitTimer = Timer.builder("embedding.micro_batch.wait")
+                .description("Time query embeddings wait in the micro-batch queue")
+                .register(meterRegistry);
+
+        this.dispatcher = new Thread(this::dispatch, "embedding-micro-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        if (stopped) {
+            throw shutDown();
+        }
+        PendingEmbedding pending = new PendingEmbedding(text, System.nanoTime(), new CompletableFuture<>());
+        queue.add(pending);
+        // 与 destroy 并发：入队晚于清空队列时由这里自己移除
+        if (stopped && queue.remove(pending)) {
+            throw shutDown();
+        }
+        try {
+            return pending.future().get(resultTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // 还没有进入批次的请求不再提交
+            queue.remove(pending);
+            log.warn("Timed out after {} waiting for micro-batched embedding", resultTimeout);
+            throw new RuntimeException("Timed out waiting for micro-batched embedding", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            queue.remove(pending);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for micro-batched embedding", e);
+        }
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 停止调度线程，队列中尚未提交的请求以异常结束；已提交的批次照常完成
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        stopped = true;
+        dispatcher.interrupt();
+        dispatcher.join(SHUTDOWN_TIMEOUT_MILLIS);
+        List<PendingEmbedding> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        fail(remaining, shutDown());
+        log.info("Embedding micro-batcher stopped, {} queued texts failed", remaining.size());
+    }
+
+    private void dispatch() {
+        List<PendingEmbedding> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!stopped) {
+                PendingEmbedding first = queue.take();
+                batch.add(first);
+                // 等待空闲的批次名额，期间到达的请求并入这一批
+                inFlight.acquire();
+                long deadline = first.enqueuedAt() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingEmbedding next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                submit(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        } catch (InterruptedException e) {
+            // 关闭时中断：已从队列取出、还没有提交的请求在这里失败
+            fail(batch, shutDown());
+        }
+    }
+
+    private void submit(List<PendingEmbedding> batch) {
+        (batch.size() >= maxBatchSize ? fullBatches : timeoutBatches).record(batch.size());
+        long now = System.nanoTime();
+        batch.forEach(pending -> waitTimer.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS));
+
+        try {
+            batchExecutor.execute(() -> {
+                try {
+                    List<float[]> embeddings = delegate.embed(batch.stream().map(PendingEmbedding::text).toList());
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).future().complete(embeddings.get(i));
+                    }
+                } catch (Throwable e) {
+                    log.warn("Micro-batched embedding call failed for {} texts: {}", batch.size(), e.getMessage());
+                    fail(batch, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            fail(batch, e);
+        }
+    }
+
+    private static void fail(List<PendingEmbedding> batch, Throwable error) {
+        batch.forEach(pending -> pending.future().completeExceptionally(error));
+    }
+
+    private static IllegalStateException shutDown() {
+        return new IllegalStateException("Embedding micro-batcher is shut down");
+    }
+
+    private static DistributionSummary batchSize(MeterRegistry meterRegistry, String reason) {
+        return DistributionSummary.builder("embedding.micro_batch.size")
+                .description("Number of query texts per micro-batched embedding call")
+                .tag("reason", reason)
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+    }
+
+    private record PendingEmbedding(String text, long enqueuedAt, CompletableFuture<float[]> future) {
+    }
+}
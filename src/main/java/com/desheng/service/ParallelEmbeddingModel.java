@@ -0,0 +1,68 @@
+package com.desheng.service;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * 本地模型批量推理
+ * 把一次请求中的文本切成固定大小的小批次，在按 CPU 核数配置的推理线程池中并行推理，再按原顺序合并结果。
+ * 单个小批次以内的请求（例如查询文本）直接在调用线程中推理
+ */
+public class ParallelEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final Executor inferenceExecutor;
+    private final int batchSize;
+
+    public ParallelEmbeddingModel(EmbeddingModel delegate, Executor inferenceExecutor, int batchSize) {
+        this.delegate = delegate;
+        this.inferenceExecutor = inferenceExecutor;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> instructions = request.getInstructions();
+        if (instructions.size() <= batchSize) {
+            return delegate.call(request);
+        }
+
+        List<CompletableFuture<EmbeddingResponse>> futures = new ArrayList<>();
+        for (int from = 0; from < instructions.size(); from += batchSize) {
+            EmbeddingRequest batch = new EmbeddingRequest(
+                    instructions.subList(from, Math.min(from + batchSize, instructions.size())), request.getOptions());
+            futures.add(CompletableFuture.supplyAsync(() -> delegate.call(batch), inferenceExecutor));
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(instructions.size());
+        try {
+            for (CompletableFuture<EmbeddingResponse> future : futures) {
+                for (Embedding embedding : future.join().getResults()) {
+                    embeddings.add(new Embedding(embedding.getOutput(), embeddings.size()));
+                }
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
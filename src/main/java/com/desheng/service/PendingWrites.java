@@ -0,0 +1,93 @@
+package com.desheng.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+
+/**
+ * 向量待写队列
+ * 源文档的保存、删除先进入队列（同一个键只保留最后一次操作，空值表示删除），由定时任务整批取出写入；
+ * 写入失败时整批放回，期间有新操作的键以新操作为准，下一轮重试
+ */
+@Slf4j
+final class PendingWrites<K, V> {
+
+    private final String name;
+    private final Map<K, Optional<V>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param name 日志中的队列名称
+     */
+    PendingWrites(String name) {
+        this.name = name;
+    }
+
+    void upsert(K key, V value) {
+        pending.put(key, Optional.of(value));
+    }
+
+    void delete(K key) {
+        pending.put(key, Optional.empty());
+    }
+
+    /**
+     * 丢弃键上排队的操作（调用方已直接写入）
+     */
+    void discard(K key) {
+        pending.remove(key);
+    }
+
+    /**
+     * 取出全部操作交给 writer，writer 抛出异常时放回队列。
+     * 队列为空或 lock 已被占用（同步、压缩正在执行）时跳过本轮
+     */
+    void flush(Lock lock, Consumer<Batch<K, V>> writer) {
+        if (pending.isEmpty() || !lock.tryLock()) {
+            return;
+        }
+        try {
+            Batch<K, V> batch = drain();
+            try {
+                writer.accept(batch);
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush {} pending {} writes, will retry: {}", batch.size(), name, e.getMessage());
+                batch.upserts().forEach((key, value) -> pending.putIfAbsent(key, Optional.of(value)));
+                batch.deletes().forEach(key -> pending.putIfAbsent(key, Optional.empty()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Batch<K, V> drain() {
+        Map<K, V> upserts = new HashMap<>();
+        List<K> deletes = new ArrayList<>();
+        for (K key : pending.keySet()) {
+            Optional<V> write = pending.remove(key);
+            if (write != null) {
+                write.ifPresentOrElse(value -> upserts.put(key, value), () -> deletes.add(key));
+            }
+        }
+        return new Batch<>(upserts, deletes);
+    }
+
+    /**
+     * 一次取出的操作
+     *
+     * @param upserts 待写入的文档
+     * @param deletes 待删除的键
+     */
+    record Batch<K, V>(Map<K, V> upserts, List<K> deletes) {
+
+        int size() {
+            return upserts.size() + deletes.size();
+        }
+    }
+}
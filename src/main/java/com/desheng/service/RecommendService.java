@@ -8,9 +8,12 @@ import com.desheng.model.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 /**
@@ -23,10 +26,19 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RecommendService extends ServiceImpl<SeedMapper, Seed> {
 
+    /**
+     * 基于内容推荐的基础分数，与其他来源的固定分数（0.75 ~ 0.90）在同一量级；
+     * 语义相似度只在 [0, CONTENT_BASED_SIMILARITY_WEIGHT] 内调整，用于该来源内部排序
+     */
+    private static final double CONTENT_BASED_SCORE = 0.85;
+    private static final double CONTENT_BASED_SIMILARITY_WEIGHT = 0.05;
+
     private final SeedMapper seedMapper;
     private final SearchHistoryMapper searchHistoryMapper;
     private final SemanticSearchService semanticSearchService;
     private final EmbeddingModel embeddingModel;
+    @Qualifier("searchExecutor")
+    private final Executor searchExecutor;
 
     /**
      * 获取个性化推荐
@@ -48,16 +60,20 @@ public class RecommendService extends ServiceImpl<SeedMapper, Seed> {
             // 1. 构建用户画像
             UserProfile userProfile = buildUserProfile(userId);
 
-            // 2. 获取多个推荐来源的结果
-            List<RecommendationDto> contentBasedRecs = getContentBasedRecommendations(userProfile, limit / 2);
-            List<RecommendationDto> userProfileRecs = getUserProfileBasedRecommendations(userProfile, limit / 2);
-            List<RecommendationDto> trendingRecs = getTrendingRecommendations(limit / 4);
+            // 2. 并行获取多个推荐来源的结果（各来源分别阻塞在向量检索和 MySQL 上）
+            int sourceLimit = limit;
+            CompletableFuture<List<RecommendationDto>> contentBasedRecs = CompletableFuture.supplyAsync(
+                    () -> getContentBasedRecommendations(userProfile, sourceLimit / 2), searchExecutor);
+            CompletableFuture<List<RecommendationDto>> userProfileRecs = CompletableFuture.supplyAsync(
+                    () -> getUserProfileBasedRecommendations(userProfile, sourceLimit / 2), searchExecutor);
+            CompletableFuture<List<RecommendationDto>> trendingRecs = CompletableFuture.supplyAsync(
+                    () -> getTrendingRecommendations(sourceLimit / 4), searchExecutor);
 
             // 3. 合并、去重、排序
             List<RecommendationDto> allRecommendations = new ArrayList<>();
-            allRecommendations.addAll(contentBasedRecs);
-            allRecommendations.addAll(userProfileRecs);
-            allRecommendations.addAll(trendingRecs);
+            allRecommendations.addAll(contentBasedRecs.join());
+            allRecommendations.addAll(userProfileRecs.join());
+            allRecommendations.addAll(trendingRecs.join());
 
             // 按相似度分数排序，去重
             return allRecommendations.stream()
@@ -158,14 +174,14 @@ public class RecommendService extends ServiceImpl<SeedMapper, Seed> {
             // 对每个关键词进行语义搜索
             for (String keyword : recentKeywords) {
                 try {
-                    // 使用 Spring AI 进行语义搜索
-                    List<Seed> semanticResults = semanticSearchService.searchByQuery(keyword, limit);
+                    // 使用 Spring AI 进行语义搜索（结果按相似度排序，种子详情来自种子缓存）
+                    List<SeedVector> semanticResults = semanticSearchService.searchHydrated(keyword, limit);
 
-                    for (Seed seed : semanticResults) {
-                        RecommendationDto rec = convertToRecommendationDto(seed);
+                    for (SeedVector result : semanticResults) {
+                        RecommendationDto rec = convertToRecommendationDto(result.getSeed());
                         rec.setReason("基于您搜索过的\"" + keyword + "\"推荐");
                         rec.setRecommendationType("content-based");
-                        rec.setScore(0.85); // 基于内容的推荐分数
+                        rec.setScore(contentBasedScore(result.getSimilarity()));
                         recommendations.add(rec);
                     }
                 } catch (Exception e) {
@@ -182,6 +198,14 @@ public class RecommendService extends ServiceImpl<SeedMapper, Seed> {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 基于内容推荐的分数：余弦相似度通常只有 0.2 ~ 0.6，直接作为分数会在合并时总是输给其他来源
+     */
+    private static double contentBasedScore(Double similarity) {
+        double weight = similarity != null ? Math.max(0, Math.min(1, similarity)) : 0;
+        return CONTENT_BASED_SCORE + CONTENT_BASED_SIMILARITY_WEIGHT * weight;
+    }
+
     /**
      * 基于用户画像的推荐
      * 根据用户的作物类型和地区偏好推荐
@@ -0,0 +1,163 @@
+package com.desheng.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Elasticsearch 搜索熔断器
+ * 连续失败达到阈值后打开，打开期间搜索直接走降级（本地 Lucene 索引），不再等待 ES 超时；
+ * 打开一段时间后进入半开状态，放行一个试探请求，成功则关闭，失败则重新打开
+ *
+ * 参数错误（IllegalArgumentException）不计入失败。没有可用的降级时直接调用 ES
+ */
+@Component
+@Slf4j
+public class SearchCircuitBreaker {
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Executor searchExecutor;
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Counter fallbackCounter;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private volatile long openedAt;
+
+    public SearchCircuitBreaker(MeterRegistry meterRegistry,
+                                @Qualifier("searchExecutor") Executor searchExecutor,
+                                @Value("${search.fallback.enabled:true}") boolean enabled,
+                                @Value("${search.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                                @Value("${search.circuit-breaker.open-duration:30s}") Duration openDuration) {
+        this.searchExecutor = searchExecutor;
+        this.enabled = enabled;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.fallbackCounter = Counter.builder("search.fallback.requests").register(meterRegistry);
+        Gauge.builder("search.circuit-breaker.state", state, s -> s.get().ordinal()).register(meterRegistry);
+    }
+
+    /**
+     * 同步执行：ES 失败或熔断打开时返回降级结果
+     *
+     * @param primary ES 搜索
+     * @param fallback 降级搜索（null 表示没有可用的降级）
+     */
+    public <T> T execute(Supplier<T> primary, Supplier<T> fallback) {
+        if (!enabled || fallback == null) {
+            return primary.get();
+        }
+        if (!allowRequest()) {
+            return fallback(fallback);
+        }
+
+        try {
+            T result = primary.get();
+            onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            if (!isFailure(e)) {
+                trialInFlight.set(false);
+                throw e;
+            }
+            onFailure(e);
+            return fallback(fallback);
+        }
+    }
+
+    /**
+     * 异步执行：ES 失败（包括超时）或熔断打开时，在搜索线程池中执行降级
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> primary, Supplier<T> fallback) {
+        if (!enabled || fallback == null) {
+            return primary.get();
+        }
+        if (!allowRequest()) {
+            return CompletableFuture.supplyAsync(() -> fallback(fallback), searchExecutor);
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = primary.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.handle((result, error) -> {
+            if (error == null) {
+                onSuccess();
+                return CompletableFuture.completedFuture(result);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (!isFailure(cause)) {
+                trialInFlight.set(false);
+                return CompletableFuture.<T>failedFuture(cause);
+            }
+            onFailure(cause);
+            return CompletableFuture.supplyAsync(() -> fallback(fallback), searchExecutor);
+        }).thenCompose(Function.identity());
+    }
+
+    private boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAt >= openDuration.toNanos()
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            log.info("Search circuit breaker half-open, sending a trial request to Elasticsearch");
+        }
+        // 半开状态只放行一个试探请求
+        return state.get() == State.HALF_OPEN && trialInFlight.compareAndSet(false, true);
+    }
+
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            log.info("Search circuit breaker closed, Elasticsearch recovered");
+        }
+        trialInFlight.set(false);
+    }
+
+    private void onFailure(Throwable error) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.get() == State.HALF_OPEN || failures >= failureThreshold) {
+            openedAt = System.nanoTime();
+            if (state.getAndSet(State.OPEN) != State.OPEN) {
+                log.warn("Search circuit breaker opened after {} consecutive failures: {}", failures, error.toString());
+            }
+        } else {
+            log.warn("Elasticsearch search failed ({} consecutive), serving fallback: {}", failures, error.toString());
+        }
+        trialInFlight.set(false);
+    }
+
+    private boolean isFailure(Throwable error) {
+        return !(error instanceof IllegalArgumentException);
+    }
+
+    private <T> T fallback(Supplier<T> fallback) {
+        fallbackCounter.increment();
+        return fallback.get();
+    }
+}
@@ -0,0 +1,235 @@
+package com.desheng.service;
+
+import com.alibaba.fastjson2.JSON;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 搜索链路埋点
+ * 按接口和阶段记录耗时直方图，超过阈值时输出结构化慢查询日志（包含生成的 ES DSL 和 took），
+ * 按采样率或请求头 X-Search-Profile 抓取 ES profile 输出
+ *
+ * 指标：
+ * - search.request.latency{endpoint} 整个请求耗时（包含缓存命中）
+ * - search.stage.latency{endpoint, stage} 各阶段耗时：build 构建查询、search 客户端往返（含反序列化）、
+ *   took ES 服务端耗时、map 转换 DTO、vector_search 向量检索（含 Embedding）
+ *
+ * 日志：search.slowlog（慢查询）、search.profile（profile 输出）
+ */
+@Component
+@Slf4j
+public class SearchInstrumentation {
+
+    public static final String PROFILE_HEADER = "X-Search-Profile";
+
+    private static final Logger SLOW_LOG = LoggerFactory.getLogger("search.slowlog");
+    private static final Logger PROFILE_LOG = LoggerFactory.getLogger("search.profile");
+
+    private final MeterRegistry meterRegistry;
+    private final ElasticsearchTemplate elasticsearchTemplate;
+    private final Executor searchExecutor;
+    private final Duration slowQueryThreshold;
+    private final double profileSampleRate;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public SearchInstrumentation(MeterRegistry meterRegistry,
+                                 ElasticsearchTemplate elasticsearchTemplate,
+                                 @Qualifier("searchExecutor") Executor searchExecutor,
+                                 @Value("${search.slow-query.threshold:500ms}") Duration slowQueryThreshold,
+                                 @Value("${search.profile.sample-rate:0}") double profileSampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.elasticsearchTemplate = elasticsearchTemplate;
+        this.searchExecutor = searchExecutor;
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.profileSampleRate = profileSampleRate;
+    }
+
+    /**
+     * 开始一次搜索的埋点
+     *
+     * @param endpoint 接口名称，例如 approvals.advancedSearch
+     */
+    public Trace start(String endpoint) {
+        return new Trace(endpoint, isProfileRequested());
+    }
+
+    private boolean isProfileRequested() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && "true".equalsIgnoreCase(attributes.getRequest().getHeader(PROFILE_HEADER))) {
+            return true;
+        }
+        return profileSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < profileSampleRate;
+    }
+
+    private Timer timer(String name, String endpoint, String stage) {
+        return timers.computeIfAbsent(name + "|" + endpoint + "|" + stage, key -> {
+            Timer.Builder builder = Timer.builder(name)
+                    .tag("endpoint", endpoint)
+                    .publishPercentileHistogram();
+            if (stage != null) {
+                builder.tag("stage", stage);
+            }
+            return builder.register(meterRegistry);
+        });
+    }
+
+    /**
+     * 生成查询的 DSL 描述（用于慢查询日志）
+     */
+    static String describe(Query query) {
+        if (query instanceof NativeQuery nativeQuery) {
+            Map<String, Object> dsl = new LinkedHashMap<>();
+            dsl.put("query", nativeQuery.getQuery() != null ? String.valueOf(nativeQuery.getQuery()) : null);
+            if (nativeQuery.getFilter() != null) {
+                dsl.put("post_filter", String.valueOf(nativeQuery.getFilter()));
+            }
+            if (!nativeQuery.getAggregations().isEmpty()) {
+                dsl.put("aggregations", String.valueOf(nativeQuery.getAggregations()));
+            }
+            if (nativeQuery.getSort() != null && nativeQuery.getSort().isSorted()) {
+                dsl.put("sort", String.valueOf(nativeQuery.getSort()));
+            }
+            dsl.put("from", nativeQuery.getPageable().isPaged() ? nativeQuery.getPageable().getOffset() : null);
+            dsl.put("size", nativeQuery.getPageable().isPaged() ? nativeQuery.getPageable().getPageSize() : null);
+            dsl.put("track_total_hits_up_to", nativeQuery.getTrackTotalHitsUpTo());
+            return JSON.toJSONString(dsl);
+        }
+        if (query instanceof CriteriaQuery criteriaQuery) {
+            return "criteria: " + criteriaQuery.getCriteria() + ", pageable: " + criteriaQuery.getPageable();
+        }
+        return String.valueOf(query);
+    }
+
+    /**
+     * 一次搜索的埋点上下文
+     */
+    public final class Trace {
+
+        private final String endpoint;
+        private final boolean profile;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+        private volatile Supplier<String> dsl;
+        private volatile Duration took;
+
+        private Trace(String endpoint, boolean profile) {
+            this.endpoint = endpoint;
+            this.profile = profile;
+        }
+
+        /**
+         * 执行并记录一个阶段
+         */
+        public <T> T stage(String stage, Supplier<T> call) {
+            long start = System.nanoTime();
+            try {
+                return call.get();
+            } finally {
+                record(stage, System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * 记录一个已测量的阶段
+         */
+        public void record(String stage, long nanos) {
+            timer("search.stage.latency", endpoint, stage).record(nanos, TimeUnit.NANOSECONDS);
+            synchronized (stageMillis) {
+                stageMillis.merge(stage, TimeUnit.NANOSECONDS.toMillis(nanos), Long::sum);
+            }
+        }
+
+        /**
+         * 记录 ES 返回的服务端耗时
+         */
+        public void took(Duration took) {
+            if (took != null) {
+                this.took = took;
+                record("took", took.toNanos());
+            }
+        }
+
+        /**
+         * 记录 ES 查询（慢查询日志中输出 DSL），按需抓取 profile
+         */
+        public void query(Query query, Class<?> clazz) {
+            this.dsl = () -> describe(query);
+            if (profile && query instanceof NativeQuery nativeQuery && nativeQuery.getQuery() != null) {
+                captureProfile(nativeQuery, clazz);
+            }
+        }
+
+        /**
+         * 记录非 ES 查询的描述（例如语义搜索的查询文本）
+         */
+        public void query(String description) {
+            this.dsl = () -> description;
+        }
+
+        /**
+         * 结束埋点：记录整体耗时，超过阈值时写慢查询日志
+         */
+        public void finish(Throwable error) {
+            long totalNanos = System.nanoTime() - startNanos;
+            timer("search.request.latency", endpoint, null).record(totalNanos, TimeUnit.NANOSECONDS);
+
+            if (totalNanos < slowQueryThreshold.toNanos() || !SLOW_LOG.isWarnEnabled()) {
+                return;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("endpoint", endpoint);
+            entry.put("totalMs", TimeUnit.NANOSECONDS.toMillis(totalNanos));
+            entry.put("tookMs", took != null ? took.toMillis() : null);
+            synchronized (stageMillis) {
+                entry.put("stagesMs", new LinkedHashMap<>(stageMillis));
+            }
+            entry.put("error", error != null ? error.toString() : null);
+            entry.put("dsl", dsl != null ? dsl.get() : null);
+            SLOW_LOG.warn(JSON.toJSONString(entry));
+        }
+
+        private void captureProfile(NativeQuery query, Class<?> clazz) {
+            String index = elasticsearchTemplate.getIndexCoordinatesFor(clazz).getIndexName();
+            // 在后台重放一次带 profile 的请求，不影响本次响应耗时
+            searchExecutor.execute(() -> {
+                try {
+                    var response = elasticsearchTemplate.execute(client -> client.search(s -> {
+                        s.index(index).query(query.getQuery()).profile(true).size(0);
+                        if (query.getFilter() != null) {
+                            s.postFilter(query.getFilter());
+                        }
+                        if (!query.getAggregations().isEmpty()) {
+                            s.aggregations(query.getAggregations());
+                        }
+                        return s;
+                    }, Void.class));
+                    PROFILE_LOG.info("{\"endpoint\":\"{}\",\"took\":{},\"profile\":{}}",
+                            endpoint, response.took(), response.profile());
+                } catch (Exception e) {
+                    log.warn("Failed to capture search profile for {}: {}", endpoint, e.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.desheng.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import co.elastic.clients.json.JsonData;
+import com.desheng.model.dto.AdvancedSearchRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 搜索查询编译器
+ * 将请求 DTO 编译为 bool 查询：只有影响相关度的全文条件放在 must 中，作物、年份、转基因、审定单位等结构化条件
+ * 全部放在 filter 中。filter 子句不参与评分，可以被 ES 的查询缓存（filter bitset）复用
+ */
+@Service
+public class SearchQueryCompiler {
+
+    private static final String[] SEED_KEYWORD_FIELDS = {
+            "varietyName", "varietyNamePinyin", "varietyNamePinyinShort",
+            "approvalNumber", "company", "companyPinyin"};
+
+    private static final String[] APPROVAL_KEYWORD_FIELDS = {
+            "varietyName", "varietyName.pinyin", "varietyNamePinyin", "varietyNamePinyinShort",
+            "approvalNumber", "applicant", "applicant.pinyin", "applicantPinyin"};
+
+    private static final String[] VARIETY_NAME_FIELDS = {
+            "varietyName", "varietyName.pinyin", "varietyNamePinyin", "varietyNamePinyinShort"};
+
+    private static final String[] APPLICANT_FIELDS = {"applicant", "applicant.pinyin", "applicantPinyin"};
+
+    private static final String[] BREEDER_FIELDS = {"breeder", "breeder.pinyin", "breederPinyin"};
+
+    /**
+     * 编译种子（seeds 索引）搜索条件
+     */
+    public Query compileSeedQuery(String keyword, String cropType, String approvalRegion,
+                                  Integer startYear, Integer endYear, String company) {
+        List<Query> must = new ArrayList<>();
+        List<Query> filter = new ArrayList<>();
+
+        if (hasText(keyword)) {
+            must.add(containsQuery(keyword, SEED_KEYWORD_FIELDS));
+        }
+        if (hasText(cropType)) {
+            filter.add(termQuery("cropType", cropType));
+        }
+        if (hasText(approvalRegion)) {
+            filter.add(containsQuery(approvalRegion, "approvalRegion"));
+        }
+        Query yearFilter = yearQuery(null, startYear, endYear);
+        if (yearFilter != null) {
+            filter.add(yearFilter);
+        }
+        if (hasText(company)) {
+            filter.add(containsQuery(company, "company"));
+        }
+
+        return boolQuery(must, filter);
+    }
+
+    /**
+     * 编译审定详情高级搜索条件（全部条件）
+     */
+    public Query compileApprovalQuery(AdvancedSearchRequest request) {
+        List<Query> filter = new ArrayList<>(compileApprovalFilters(request));
+        filter.addAll(compileApprovalFacetFilters(request).values());
+        return boolQuery(compileApprovalRelevance(request), filter);
+    }
+
+    /**
+     * 编译审定详情高级搜索条件，不包含分面筛选（分面筛选放在 post_filter 中）
+     */
+    public Query compileApprovalBaseQuery(AdvancedSearchRequest request) {
+        return boolQuery(compileApprovalRelevance(request), compileApprovalFilters(request));
+    }
+
+    /**
+     * 编译分面对应的筛选条件，按分面名称分组
+     */
+    public Map<String, Query> compileApprovalFacetFilters(AdvancedSearchRequest request) {
+        Map<String, Query> filters = new LinkedHashMap<>();
+
+        if (hasText(request.getCropName())) {
+            filters.put(SeedApprovalDetailsService.FACET_CROP_NAME, termQuery("cropName", request.getCropName()));
+        }
+
+        Integer startYear = null;
+        Integer endYear = null;
+        if (request.getApprovalYearRange() != null && request.getApprovalYearRange().size() == 2) {
+            startYear = request.getApprovalYearRange().get(0);
+            endYear = request.getApprovalYearRange().get(1);
+        }
+        Query yearFilter = yearQuery(request.getApprovalYear(), startYear, endYear);
+        if (yearFilter != null) {
+            filters.put(SeedApprovalDetailsService.FACET_APPROVAL_YEAR, yearFilter);
+        }
+
+        if (request.getIsGMO() != null) {
+            filters.put(SeedApprovalDetailsService.FACET_IS_GMO,
+                    QueryBuilders.term(t -> t.field("isGMO").value(request.getIsGMO())));
+        }
+        if (hasText(request.getApprovalAuthority())) {
+            filters.put(SeedApprovalDetailsService.FACET_APPROVAL_AUTHORITY,
+                    containsQuery(request.getApprovalAuthority(), "approvalAuthority"));
+        }
+        if (hasText(request.getSuitableRegion())) {
+            filters.put(SeedApprovalDetailsService.FACET_SUITABLE_REGION,
+                    containsQuery(request.getSuitableRegion(), "suitableRegions"));
+        }
+
+        return filters;
+    }
+
+    /**
+     * 是否包含影响相关度的全文条件；没有时为纯筛选浏览
+     */
+    public boolean hasApprovalRelevance(AdvancedSearchRequest request) {
+        return hasText(request.getKeyword()) || hasText(request.getVarietyName())
+                || hasText(request.getApplicant()) || hasText(request.getBreeder());
+    }
+
+    /**
+     * 多个条件的合取（全部放在 filter 中）
+     */
+    public Query and(Collection<Query> queries) {
+        if (queries.isEmpty()) {
+            return QueryBuilders.matchAll(m -> m);
+        }
+        return QueryBuilders.bool(b -> b.filter(new ArrayList<>(queries)));
+    }
+
+    /**
+     * 与 Criteria#contains 生成的查询一致：*value* 通配符 query_string，多个字段任一匹配即可
+     */
+    public Query containsQuery(String value, String... fields) {
+        String escaped = value.trim().replaceAll("([+\\-=&|><!(){}\\[\\]^\"~*?:\\\\/ ])", "\\\\$1");
+        return QueryBuilders.queryString(q -> q
+                .fields(List.of(fields))
+                .query("*" + escaped + "*")
+                .analyzeWildcard(true));
+    }
+
+    private List<Query> compileApprovalRelevance(AdvancedSearchRequest request) {
+        List<Query> must = new ArrayList<>();
+        if (hasText(request.getKeyword())) {
+            must.add(containsQuery(request.getKeyword(), APPROVAL_KEYWORD_FIELDS));
+        }
+        if (hasText(request.getVarietyName())) {
+            must.add(containsQuery(request.getVarietyName(), VARIETY_NAME_FIELDS));
+        }
+        if (hasText(request.getApplicant())) {
+            must.add(containsQuery(request.getApplicant(), APPLICANT_FIELDS));
+        }
+        if (hasText(request.getBreeder())) {
+            must.add(containsQuery(request.getBreeder(), BREEDER_FIELDS));
+        }
+        return must;
+    }
+
+    /**
+     * 不属于分面的结构化条件
+     */
+    private List<Query> compileApprovalFilters(AdvancedSearchRequest request) {
+        List<Query> filter = new ArrayList<>();
+        if (hasText(request.getApprovalNumber())) {
+            filter.add(termQuery("approvalNumber", request.getApprovalNumber()));
+        }
+        return filter;
+    }
+
+    /**
+     * 年份条件规范化：精确年份与范围取交集、颠倒的范围自动交换、覆盖到当年的上界去掉，
+     * 使语义相同的请求生成相同的子句，从而命中同一份缓存
+     */
+    private Query yearQuery(Integer exactYear, Integer startYear, Integer endYear) {
+        Integer lower = startYear;
+        Integer upper = endYear;
+        if (lower != null && upper != null && lower > upper) {
+            lower = endYear;
+            upper = startYear;
+        }
+        if (exactYear != null) {
+            lower = lower == null ? exactYear : Math.max(lower, exactYear);
+            upper = upper == null ? exactYear : Math.min(upper, exactYear);
+        }
+        if (lower != null && lower.equals(upper)) {
+            int year = lower;
+            return QueryBuilders.term(t -> t.field("approvalYear").value(year));
+        }
+        if (upper != null && lower != null && upper < lower) {
+            return QueryBuilders.matchNone(m -> m);
+        }
+        // 审定年份不会晚于当年，上界不小于当年时等价于不限上界
+        if (upper != null && upper >= Year.now().getValue()) {
+            upper = null;
+        }
+        if (lower == null && upper == null) {
+            return null;
+        }
+
+        Integer gte = lower;
+        Integer lte = upper;
+        return QueryBuilders.range(r -> {
+            r.field("approvalYear");
+            if (gte != null) {
+                r.gte(JsonData.of(gte));
+            }
+            if (lte != null) {
+                r.lte(JsonData.of(lte));
+            }
+            return r;
+        });
+    }
+
+    private Query termQuery(String field, String value) {
+        return QueryBuilders.term(t -> t.field(field).value(value.trim()));
+    }
+
+    private Query boolQuery(List<Query> must, List<Query> filter) {
+        if (must.isEmpty() && filter.isEmpty()) {
+            return QueryBuilders.matchAll(m -> m);
+        }
+        return QueryBuilders.bool(b -> b.must(must).filter(filter));
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,135 @@
+package com.desheng.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 搜索结果缓存
+ * 按索引维护代数（generation），写入时递增代数使旧结果失效；缓存按容量和 TTL 淘汰
+ * 未命中时通过 SingleFlight 合并相同 key 的并发加载
+ *
+ * 指标：
+ * - cache.gets{cache=search.results, result=hit|miss} 命中率
+ * - search.cache.saved.latency 命中时节省的后端耗时
+ */
+@Component
+@Slf4j
+public class SearchResultCache {
+
+    public static final String SEEDS = "seeds";
+    public static final String SEED_APPROVAL_DETAILS = "seed_approval_details";
+
+    private final boolean enabled;
+    private final Cache<String, CachedResult> cache;
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Timer savedLatency;
+    private final SingleFlight singleFlight;
+
+    public SearchResultCache(MeterRegistry meterRegistry,
+                             SingleFlight singleFlight,
+                             @Value("${search.cache.enabled:true}") boolean enabled,
+                             @Value("${search.cache.max-size:10000}") long maxSize,
+                             @Value("${search.cache.ttl:60s}") Duration ttl) {
+        this.enabled = enabled;
+        this.singleFlight = singleFlight;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search.results");
+        this.savedLatency = Timer.builder("search.cache.saved.latency")
+                .description("Backend latency avoided by search result cache hits")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 读取缓存，未命中时执行 loader 并写入缓存
+     *
+     * @param index 结果所依赖的索引
+     * @param signature 规范化后的查询签名
+     * @param loader 实际的搜索调用
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String index, String signature, Supplier<T> loader) {
+        String key = index + "#" + generation(index).get() + "|" + signature;
+        if (!enabled) {
+            return singleFlight.execute(key, loader);
+        }
+
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            savedLatency.record(cached.loadNanos(), TimeUnit.NANOSECONDS);
+            return (T) cached.value();
+        }
+
+        return singleFlight.execute(key, () -> {
+            long start = System.nanoTime();
+            T value = loader.get();
+            if (value != null) {
+                cache.put(key, new CachedResult(value, System.nanoTime() - start));
+            }
+            return value;
+        });
+    }
+
+    /**
+     * 异步读取缓存，未命中时执行 loader 并在完成后写入缓存
+     *
+     * @param index 结果所依赖的索引
+     * @param signature 规范化后的查询签名
+     * @param loader 返回 future 的异步搜索调用
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> getAsync(String index, String signature, Supplier<CompletableFuture<T>> loader) {
+        String key = index + "#" + generation(index).get() + "|" + signature;
+        if (!enabled) {
+            return singleFlight.executeAsync(key, loader);
+        }
+
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            savedLatency.record(cached.loadNanos(), TimeUnit.NANOSECONDS);
+            return CompletableFuture.completedFuture((T) cached.value());
+        }
+
+        return singleFlight.executeAsync(key, () -> {
+            long start = System.nanoTime();
+            return loader.get().thenApply(value -> {
+                if (value != null) {
+                    cache.put(key, new CachedResult(value, System.nanoTime() - start));
+                }
+                return value;
+            });
+        });
+    }
+
+    /**
+     * 索引有写入时调用，之前缓存的结果不再被读取，随后按容量/TTL 淘汰
+     */
+    public void bumpGeneration(String index) {
+        long generation = generation(index).incrementAndGet();
+        log.debug("Search result cache generation for {} bumped to {}", index, generation);
+    }
+
+    private AtomicLong generation(String index) {
+        return generations.computeIfAbsent(index, key -> new AtomicLong());
+    }
+
+    private record CachedResult(Object value, long loadNanos) {
+    }
+}
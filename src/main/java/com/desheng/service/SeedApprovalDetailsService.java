@@ -1,24 +1,44 @@
 package com.desheng.service;
 
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
 import com.desheng.model.SeedApprovalDocument;
 import com.desheng.model.dto.*;
 import com.desheng.repository.SeedApprovalElasticsearchRepository;
 import com.desheng.util.PinyinUtil;
+import com.desheng.util.SearchKeyUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.AggregationsContainer;
+import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,8 +46,48 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SeedApprovalDetailsService {
 
+    public static final String FACET_CROP_NAME = "cropName";
+    public static final String FACET_APPROVAL_YEAR = "approvalYear";
+    public static final String FACET_IS_GMO = "isGMO";
+    public static final String FACET_APPROVAL_AUTHORITY = "approvalAuthority";
+    public static final String FACET_SUITABLE_REGION = "suitableRegion";
+
+    /**
+     * 分面名称与聚合字段的对应关系
+     */
+    private static final Map<String, String> FACET_FIELDS = Map.of(
+            FACET_CROP_NAME, "cropName",
+            FACET_APPROVAL_YEAR, "approvalYear",
+            FACET_IS_GMO, "isGMO",
+            FACET_APPROVAL_AUTHORITY, "approvalAuthority.keyword",
+            FACET_SUITABLE_REGION, "suitableRegions.keyword");
+
+    /**
+     * 支持的分面名称
+     */
+    public static final Set<String> FACETS = FACET_FIELDS.keySet();
+    private static final String FACET_VALUES = "values";
+    private static final String DISTINCT_VALUES = "distinct_values";
+
     private final SeedApprovalElasticsearchRepository seedApprovalRepository;
     private final ElasticsearchTemplate elasticsearchTemplate;
+    private final SeedSuggestService seedSuggestService;
+    private final SearchResultCache searchResultCache;
+    private final SearchQueryCompiler searchQueryCompiler;
+    private final ReactiveElasticsearchTemplate reactiveElasticsearchTemplate;
+    private final SearchInstrumentation searchInstrumentation;
+    private final SearchCircuitBreaker searchCircuitBreaker;
+    private final LuceneSearchIndex luceneSearchIndex;
+    private final ApprovalVectorIndexService approvalVectorIndexService;
+
+    @Value("${search.browse.track-total-hits-up-to:1000}")
+    private int browseTrackTotalHitsUpTo;
+
+    @Value("${search.distinct-values.size:1000}")
+    private int distinctValuesSize;
+
+    @Value("${search.async.timeout:5s}")
+    private Duration asyncTimeout;
 
     /**
      * 获取种子审定详情
@@ -49,18 +109,97 @@ public class SeedApprovalDetailsService {
     public PagedResponse<SeedSearchResultDto> advancedSearch(AdvancedSearchRequest request) {
         log.info("Advanced search with request: {}", request);
         
-        Pageable pageable = PageRequest.of(request.getPage() - 1, request.getPageSize());
+        return cachedSearch("approvals.advancedSearch", advancedSearchSignature(request),
+                () -> buildAdvancedSearchQuery(request), request);
+    }
+
+    /**
+     * 高级搜索（异步，通过异步 ES 客户端发送请求，超时后取消下游请求）
+     */
+    public CompletableFuture<PagedResponse<SeedSearchResultDto>> advancedSearchAsync(AdvancedSearchRequest request) {
+        log.info("Async advanced search with request: {}", request);
+        
+        SearchInstrumentation.Trace trace = searchInstrumentation.start("approvals.advancedSearch");
+        
+        return searchCircuitBreaker.executeAsync(() -> searchResultCache.getAsync(
+                        SearchResultCache.SEED_APPROVAL_DETAILS, advancedSearchSignature(request), () -> {
+                            // 查询只在缓存未命中时构建
+                            Query query = trace.stage("build", () -> buildAdvancedSearchQuery(request));
+                            trace.query(query, SeedApprovalDocument.class);
+                            long start = System.nanoTime();
+                            return reactiveElasticsearchTemplate.searchForHits(query, SeedApprovalDocument.class)
+                                    .flatMap(hits -> hits.getSearchHits()
+                                            .map(SearchHit::getContent)
+                                            .collectList()
+                                            .map(documents -> {
+                                                trace.record("search", System.nanoTime() - start);
+                                                return trace.stage("map", () -> toPagedResponse(documents,
+                                                        hits.getTotalHits(),
+                                                        SeedSearchService.isTotalExact(hits.getTotalHitsRelation()),
+                                                        hits.getAggregations(),
+                                                        request.getPage(), request.getPageSize()));
+                                            }))
+                                    .timeout(asyncTimeout)
+                                    .toFuture();
+                        }), fallback(trace, request))
+                .whenComplete((result, error) -> trace.finish(error));
+    }
+
+    /**
+     * 构建高级搜索查询
+     * 全文条件放在 must 中，其余结构化条件放在 filter 中；请求了分面时，分面相关的筛选条件放到 post_filter 中，
+     * 每个分面聚合只应用其他分面的筛选条件
+     */
+    public Query buildAdvancedSearchQuery(AdvancedSearchRequest request) {
+        // 没有全文条件时是纯筛选浏览，按索引排序（审定年份倒序）返回
+        boolean browse = !searchQueryCompiler.hasApprovalRelevance(request);
+        Pageable pageable = browse
+                ? PageRequest.of(request.getPage() - 1, request.getPageSize(), ElasticsearchIndexService.INDEX_SORT)
+                : PageRequest.of(request.getPage() - 1, request.getPageSize());
+        
+        if (request.getFacets() == null || request.getFacets().isEmpty()) {
+            NativeQuery query = NativeQuery.builder()
+                    .withQuery(searchQueryCompiler.compileApprovalQuery(request))
+                    .build();
+            query.setPageable(pageable);
+            if (browse) {
+                // 分面聚合需要遍历全部匹配文档，只有不带分面时才能提前结束
+                query.setTrackTotalHitsUpTo(browseTrackTotalHitsUpTo);
+            }
+            return query;
+        }
         
-        Criteria criteria = buildSearchCriteria(request);
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
+        Map<String, co.elastic.clients.elasticsearch._types.query_dsl.Query> facetFilters =
+                searchQueryCompiler.compileApprovalFacetFilters(request);
         
-        SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(query, SeedApprovalDocument.class);
+        NativeQueryBuilder builder = NativeQuery.builder()
+                .withQuery(searchQueryCompiler.compileApprovalBaseQuery(request));
+        if (!facetFilters.isEmpty()) {
+            builder.withFilter(searchQueryCompiler.and(facetFilters.values()));
+        }
         
-        List<SeedSearchResultDto> items = searchHits.stream()
-                .map(hit -> convertToSearchResult(hit.getContent()))
-                .collect(Collectors.toList());
+        int facetSize = request.getFacetSize() != null ? Math.min(request.getFacetSize(), 100) : 20;
+        for (String facet : new LinkedHashSet<>(request.getFacets())) {
+            String field = FACET_FIELDS.get(facet);
+            if (field == null) {
+                throw new IllegalArgumentException("Unsupported facet: " + facet);
+            }
+            
+            // 分面自身的筛选条件不参与该分面的统计
+            List<co.elastic.clients.elasticsearch._types.query_dsl.Query> otherFilters = facetFilters.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(facet))
+                    .map(Map.Entry::getValue)
+                    .collect(Collectors.toList());
+            
+            Aggregation terms = Aggregation.of(a -> a.terms(t -> t.field(field).size(facetSize)));
+            builder.withAggregation(facet, Aggregation.of(a -> a
+                    .filter(searchQueryCompiler.and(otherFilters))
+                    .aggregations(FACET_VALUES, terms)));
+        }
         
-        return PagedResponse.of(items, searchHits.getTotalHits(), request.getPage(), request.getPageSize());
+        NativeQuery query = builder.build();
+        query.setPageable(pageable);
+        return query;
     }
 
     /**
@@ -69,21 +208,16 @@ public class SeedApprovalDetailsService {
     public PagedResponse<SeedSearchResultDto> searchByApplicant(String applicant, Integer page, Integer pageSize) {
         log.info("Searching by applicant: {}", applicant);
         
-        Pageable pageable = PageRequest.of(page - 1, pageSize);
-        
-        Criteria criteria = new Criteria("applicant").contains(applicant)
-                .or(new Criteria("applicant.pinyin").contains(applicant))
-                .or(new Criteria("applicantPinyin").contains(applicant));
-        
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(query, SeedApprovalDocument.class);
-        
-        List<SeedSearchResultDto> items = searchHits.stream()
-                .map(hit -> convertToSearchResult(hit.getContent()))
-                .collect(Collectors.toList());
-        
-        return PagedResponse.of(items, searchHits.getTotalHits(), page, pageSize);
+        return cachedSearch("approvals.searchByApplicant",
+                SearchKeyUtil.signature("searchByApplicant", applicant, page, pageSize), () -> {
+                    Pageable pageable = PageRequest.of(page - 1, pageSize);
+                    
+                    Criteria criteria = new Criteria("applicant").contains(applicant)
+                            .or(new Criteria("applicant.pinyin").contains(applicant))
+                            .or(new Criteria("applicantPinyin").contains(applicant));
+                    
+                    return new CriteriaQuery(criteria).setPageable(pageable);
+                }, AdvancedSearchRequest.builder().applicant(applicant).page(page).pageSize(pageSize).build());
     }
 
     /**
@@ -92,21 +226,16 @@ public class SeedApprovalDetailsService {
     public PagedResponse<SeedSearchResultDto> searchByBreeder(String breeder, Integer page, Integer pageSize) {
         log.info("Searching by breeder: {}", breeder);
         
-        Pageable pageable = PageRequest.of(page - 1, pageSize);
-        
-        Criteria criteria = new Criteria("breeder").contains(breeder)
-                .or(new Criteria("breeder.pinyin").contains(breeder))
-                .or(new Criteria("breederPinyin").contains(breeder));
-        
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(query, SeedApprovalDocument.class);
-        
-        List<SeedSearchResultDto> items = searchHits.stream()
-                .map(hit -> convertToSearchResult(hit.getContent()))
-                .collect(Collectors.toList());
-        
-        return PagedResponse.of(items, searchHits.getTotalHits(), page, pageSize);
+        return cachedSearch("approvals.searchByBreeder",
+                SearchKeyUtil.signature("searchByBreeder", breeder, page, pageSize), () -> {
+                    Pageable pageable = PageRequest.of(page - 1, pageSize);
+                    
+                    Criteria criteria = new Criteria("breeder").contains(breeder)
+                            .or(new Criteria("breeder.pinyin").contains(breeder))
+                            .or(new Criteria("breederPinyin").contains(breeder));
+                    
+                    return new CriteriaQuery(criteria).setPageable(pageable);
+                }, AdvancedSearchRequest.builder().breeder(breeder).page(page).pageSize(pageSize).build());
     }
 
     /**
@@ -125,18 +254,35 @@ public class SeedApprovalDetailsService {
     public PagedResponse<SeedSearchResultDto> searchByGMO(Boolean isGMO, Integer page, Integer pageSize) {
         log.info("Searching by GMO status: {}", isGMO);
         
-        Pageable pageable = PageRequest.of(page - 1, pageSize);
-        
-        Criteria criteria = new Criteria("isGMO").is(isGMO);
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(query, SeedApprovalDocument.class);
-        
-        List<SeedSearchResultDto> items = searchHits.stream()
-                .map(hit -> convertToSearchResult(hit.getContent()))
-                .collect(Collectors.toList());
-        
-        return PagedResponse.of(items, searchHits.getTotalHits(), page, pageSize);
+        return cachedSearch("approvals.searchByGMO",
+                SearchKeyUtil.signature("searchByGMO", isGMO, page, pageSize), () -> {
+                    Pageable pageable = PageRequest.of(page - 1, pageSize, ElasticsearchIndexService.INDEX_SORT);
+                    
+                    NativeQuery query = NativeQuery.builder()
+                            .withQuery(gmoFilter(isGMO))
+                            .build();
+                    query.setPageable(pageable);
+                    query.setTrackTotalHitsUpTo(browseTrackTotalHitsUpTo);
+                    return query;
+                }, AdvancedSearchRequest.builder().isGMO(isGMO).page(page).pageSize(pageSize).build());
+    }
+
+    /**
+     * 构建按转基因状态计数的查询（不返回文档，只统计总数）
+     */
+    public Query buildCountByGMOQuery(Boolean isGMO) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(gmoFilter(isGMO))
+                .withMaxResults(0)
+                .withTrackTotalHits(true)
+                .build();
+        // size=0 的请求可以使用分片请求缓存
+        query.setRequestCache(true);
+        return query;
+    }
+
+    private co.elastic.clients.elasticsearch._types.query_dsl.Query gmoFilter(Boolean isGMO) {
+        return QueryBuilders.bool(b -> b.filter(f -> f.term(t -> t.field("isGMO").value(isGMO))));
     }
 
     /**
@@ -145,18 +291,8 @@ public class SeedApprovalDetailsService {
     public List<String> getAllApplicants() {
         log.info("Fetching all applicants from ES");
         
-        // 使用聚合查询获取所有不重复的申请单位
-        Criteria criteria = new Criteria("applicant").exists();
-        Query query = new CriteriaQuery(criteria);
-        
-        SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(query, SeedApprovalDocument.class);
-        
-        return searchHits.stream()
-                .map(hit -> hit.getContent().getApplicant())
-                .filter(applicant -> applicant != null && !applicant.trim().isEmpty())
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        return searchResultCache.get(SearchResultCache.SEED_APPROVAL_DETAILS, "getAllApplicants",
+                () -> distinctValues("applicant.keyword"));
     }
 
     /**
@@ -165,17 +301,8 @@ public class SeedApprovalDetailsService {
     public List<String> getAllBreeders() {
         log.info("Fetching all breeders from ES");
         
-        Criteria criteria = new Criteria("breeder").exists();
-        Query query = new CriteriaQuery(criteria);
-        
-        SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(query, SeedApprovalDocument.class);
-        
-        return searchHits.stream()
-                .map(hit -> hit.getContent().getBreeder())
-                .filter(breeder -> breeder != null && !breeder.trim().isEmpty())
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        return searchResultCache.get(SearchResultCache.SEED_APPROVAL_DETAILS, "getAllBreeders",
+                () -> distinctValues("breeder.keyword"));
     }
 
     /**
@@ -184,15 +311,33 @@ public class SeedApprovalDetailsService {
     public List<String> getAllApprovalAuthorities() {
         log.info("Fetching all approval authorities from ES");
         
-        Criteria criteria = new Criteria("approvalAuthority").exists();
-        Query query = new CriteriaQuery(criteria);
+        return searchResultCache.get(SearchResultCache.SEED_APPROVAL_DETAILS, "getAllApprovalAuthorities",
+                () -> distinctValues("approvalAuthority.keyword"));
+    }
+
+    /**
+     * 使用 terms 聚合获取字段的全部不重复值（size=0，启用分片请求缓存）
+     */
+    private List<String> distinctValues(String field) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(QueryBuilders.matchAll(m -> m))
+                .withAggregation(DISTINCT_VALUES, Aggregation.of(a -> a
+                        .terms(t -> t.field(field).size(distinctValuesSize))))
+                .withMaxResults(0)
+                .build();
+        query.setRequestCache(true);
         
         SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(query, SeedApprovalDocument.class);
+        ElasticsearchAggregations aggregations = (ElasticsearchAggregations) searchHits.getAggregations();
+        ElasticsearchAggregation aggregation = aggregations != null
+                ? aggregations.aggregationsAsMap().get(DISTINCT_VALUES) : null;
+        if (aggregation == null) {
+            return new ArrayList<>();
+        }
         
-        return searchHits.stream()
-                .map(hit -> hit.getContent().getApprovalAuthority())
-                .filter(authority -> authority != null && !authority.trim().isEmpty())
-                .distinct()
+        return aggregation.aggregation().getAggregate().sterms().buckets().array().stream()
+                .map(bucket -> bucket.key().stringValue())
+                .filter(value -> !value.trim().isEmpty())
                 .sorted()
                 .collect(Collectors.toList());
     }
@@ -203,104 +348,128 @@ public class SeedApprovalDetailsService {
     public List<String> getApprovalNumberSuggestions(String query) {
         log.info("Getting approval number suggestions for: {}", query);
         
-        Pageable pageable = PageRequest.of(0, 10);
-        
-        Criteria criteria = new Criteria("approvalNumber").startsWith(query);
-        Query searchQuery = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedApprovalDocument> searchHits = elasticsearchTemplate.search(searchQuery, SeedApprovalDocument.class);
-        
-        return searchHits.stream()
-                .map(hit -> hit.getContent().getApprovalNumber())
+        return seedSuggestService.suggest(query, List.of(SeedSuggestService.TYPE_APPROVAL_NUMBER), 10).stream()
+                .map(SuggestionDto::getText)
                 .collect(Collectors.toList());
     }
 
     /**
-     * 构建搜索条件
+     * 执行搜索（结果按查询签名缓存，写入时失效），按阶段记录耗时
+     * ES 不可用时经熔断器切换到本地索引，降级请求用等价的高级搜索条件表示
      */
-    private Criteria buildSearchCriteria(AdvancedSearchRequest request) {
-        Criteria criteria = new Criteria();
-        
-        // 关键词搜索 - 多字段匹配（包括拼音）
-        if (request.getKeyword() != null && !request.getKeyword().trim().isEmpty()) {
-            String keyword = request.getKeyword().trim();
-            Criteria keywordCriteria = new Criteria("varietyName").contains(keyword)
-                    .or(new Criteria("varietyName.pinyin").contains(keyword))
-                    .or(new Criteria("varietyNamePinyin").contains(keyword))
-                    .or(new Criteria("varietyNamePinyinShort").contains(keyword))
-                    .or(new Criteria("approvalNumber").contains(keyword))
-                    .or(new Criteria("applicant").contains(keyword))
-                    .or(new Criteria("applicant.pinyin").contains(keyword))
-                    .or(new Criteria("applicantPinyin").contains(keyword));
-            criteria = criteria.and(keywordCriteria);
-        }
-        
-        // 审定编号精确匹配
-        if (request.getApprovalNumber() != null && !request.getApprovalNumber().trim().isEmpty()) {
-            criteria = criteria.and(new Criteria("approvalNumber").is(request.getApprovalNumber()));
-        }
-        
-        // 品种名称模糊匹配（包括拼音）
-        if (request.getVarietyName() != null && !request.getVarietyName().trim().isEmpty()) {
-            String varietyName = request.getVarietyName().trim();
-            Criteria varietyCriteria = new Criteria("varietyName").contains(varietyName)
-                    .or(new Criteria("varietyName.pinyin").contains(varietyName))
-                    .or(new Criteria("varietyNamePinyin").contains(varietyName))
-                    .or(new Criteria("varietyNamePinyinShort").contains(varietyName));
-            criteria = criteria.and(varietyCriteria);
-        }
-        
-        // 申请单位模糊匹配（包括拼音）
-        if (request.getApplicant() != null && !request.getApplicant().trim().isEmpty()) {
-            String applicant = request.getApplicant().trim();
-            Criteria applicantCriteria = new Criteria("applicant").contains(applicant)
-                    .or(new Criteria("applicant.pinyin").contains(applicant))
-                    .or(new Criteria("applicantPinyin").contains(applicant));
-            criteria = criteria.and(applicantCriteria);
-        }
-        
-        // 育种者模糊匹配（包括拼音）
-        if (request.getBreeder() != null && !request.getBreeder().trim().isEmpty()) {
-            String breeder = request.getBreeder().trim();
-            Criteria breederCriteria = new Criteria("breeder").contains(breeder)
-                    .or(new Criteria("breeder.pinyin").contains(breeder))
-                    .or(new Criteria("breederPinyin").contains(breeder));
-            criteria = criteria.and(breederCriteria);
+    private PagedResponse<SeedSearchResultDto> cachedSearch(String endpoint, String signature, Supplier<Query> builder,
+                                                            AdvancedSearchRequest fallbackRequest) {
+        SearchInstrumentation.Trace trace = searchInstrumentation.start(endpoint);
+        Throwable error = null;
+        try {
+            return searchCircuitBreaker.execute(() -> searchResultCache.get(SearchResultCache.SEED_APPROVAL_DETAILS,
+                    signature, () -> {
+                        // 查询只在缓存未命中时构建
+                        Query query = trace.stage("build", builder);
+                        trace.query(query, SeedApprovalDocument.class);
+                        SearchHits<SeedApprovalDocument> hits = trace.stage("search",
+                                () -> elasticsearchTemplate.search(query, SeedApprovalDocument.class));
+                        trace.took(hits.getExecutionDuration());
+                        return trace.stage("map", () -> toPagedResponse(hits,
+                                fallbackRequest.getPage(), fallbackRequest.getPageSize()));
+                    }), fallback(trace, fallbackRequest));
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            trace.finish(error);
         }
-        
-        // 作物名称精确匹配
-        if (request.getCropName() != null && !request.getCropName().trim().isEmpty()) {
-            criteria = criteria.and(new Criteria("cropName").is(request.getCropName()));
-        }
-        
-        // 审定年份精确匹配
-        if (request.getApprovalYear() != null) {
-            criteria = criteria.and(new Criteria("approvalYear").is(request.getApprovalYear()));
-        }
-        
-        // 审定年份范围
-        if (request.getApprovalYearRange() != null && request.getApprovalYearRange().size() == 2) {
-            Integer startYear = request.getApprovalYearRange().get(0);
-            Integer endYear = request.getApprovalYearRange().get(1);
-            criteria = criteria.and(new Criteria("approvalYear").between(startYear, endYear));
-        }
-        
-        // 转基因筛选
-        if (request.getIsGMO() != null) {
-            criteria = criteria.and(new Criteria("isGMO").is(request.getIsGMO()));
+    }
+
+    /**
+     * 本地索引已构建时才提供降级（不返回分面统计）
+     */
+    private Supplier<PagedResponse<SeedSearchResultDto>> fallback(SearchInstrumentation.Trace trace,
+                                                                  AdvancedSearchRequest request) {
+        if (!luceneSearchIndex.isReady(LuceneSearchIndex.APPROVALS)) {
+            return null;
         }
+        return () -> trace.stage("fallback", () -> {
+            LuceneSearchIndex.Hits<SeedApprovalDocument> hits = luceneSearchIndex.searchApprovals(request);
+            return toPagedResponse(hits.documents(), hits.totalHits(), true, null,
+                    request.getPage(), request.getPageSize());
+        });
+    }
+
+    /**
+     * 使用 ES 中的全部审定详情重建本地索引
+     */
+    public void rebuildLocalIndex() {
+        List<SeedApprovalDocument> documents = new ArrayList<>();
+        seedApprovalRepository.findAll().forEach(documents::add);
+        luceneSearchIndex.replaceApprovals(documents);
+    }
+
+    /**
+     * 将搜索结果转换为分页响应
+     */
+    public PagedResponse<SeedSearchResultDto> toPagedResponse(SearchHits<SeedApprovalDocument> searchHits,
+                                                              Integer page, Integer pageSize) {
+        List<SeedApprovalDocument> documents = searchHits.stream()
+                .map(SearchHit::getContent)
+                .collect(Collectors.toList());
         
-        // 审定单位包含匹配
-        if (request.getApprovalAuthority() != null && !request.getApprovalAuthority().trim().isEmpty()) {
-            criteria = criteria.and(new Criteria("approvalAuthority").contains(request.getApprovalAuthority()));
-        }
+        return toPagedResponse(documents, searchHits.getTotalHits(),
+                SeedSearchService.isTotalExact(searchHits.getTotalHitsRelation()), searchHits.getAggregations(),
+                page, pageSize);
+    }
+
+    private PagedResponse<SeedSearchResultDto> toPagedResponse(List<SeedApprovalDocument> documents, long totalHits,
+                                                               boolean totalExact,
+                                                               AggregationsContainer<?> aggregations,
+                                                               Integer page, Integer pageSize) {
+        List<SeedSearchResultDto> items = documents.stream()
+                .map(this::convertToSearchResult)
+                .collect(Collectors.toList());
         
-        // 适宜地区匹配
-        if (request.getSuitableRegion() != null && !request.getSuitableRegion().trim().isEmpty()) {
-            criteria = criteria.and(new Criteria("suitableRegions").contains(request.getSuitableRegion()));
+        PagedResponse<SeedSearchResultDto> response = PagedResponse.of(items, totalHits, totalExact, page, pageSize);
+        if (aggregations instanceof ElasticsearchAggregations elasticsearchAggregations) {
+            response.setFacets(extractFacets(elasticsearchAggregations));
         }
-        
-        return criteria;
+        return response;
+    }
+
+    /**
+     * 解析分面聚合结果
+     */
+    private Map<String, List<FacetBucket>> extractFacets(ElasticsearchAggregations aggregations) {
+        Map<String, List<FacetBucket>> facets = new LinkedHashMap<>();
+        aggregations.aggregationsAsMap().forEach((facet, aggregation) -> {
+            if (!FACET_FIELDS.containsKey(facet)) {
+                return;
+            }
+            Aggregate values = aggregation.aggregation().getAggregate().filter().aggregations().get(FACET_VALUES);
+            List<FacetBucket> buckets = new ArrayList<>();
+            if (values.isSterms()) {
+                values.sterms().buckets().array().forEach(bucket -> buckets.add(
+                        new FacetBucket(bucket.key().stringValue(), bucket.docCount())));
+            } else if (values.isLterms()) {
+                // 整数和布尔字段的 terms 聚合都返回 long 类型的 key，布尔字段以 keyAsString 表示
+                values.lterms().buckets().array().forEach(bucket -> buckets.add(new FacetBucket(
+                        bucket.keyAsString() != null ? bucket.keyAsString() : String.valueOf(bucket.key()),
+                        bucket.docCount())));
+            }
+            facets.put(facet, buckets);
+        });
+        return facets;
+    }
+
+    /**
+     * 高级搜索请求的规范化签名
+     */
+    private String advancedSearchSignature(AdvancedSearchRequest request) {
+        return SearchKeyUtil.signature("advancedSearch",
+                request.getKeyword(), request.getApprovalNumber(), request.getVarietyName(),
+                request.getApplicant(), request.getBreeder(), request.getCropName(),
+                request.getApprovalYear(), request.getApprovalYearRange(), request.getIsGMO(),
+                request.getApprovalAuthority(), request.getSuitableRegion(),
+                request.getFacets(), request.getFacetSize(),
+                request.getPage(), request.getPageSize());
     }
 
     /**
@@ -383,6 +552,7 @@ public class SeedApprovalDetailsService {
 
     /**
      * 保存文档到ES
+     * 分块向量按 version 增量更新：修改了长文本字段的文档需要同时递增 version
      */
     public void saveDocument(SeedApprovalDocument document) {
         log.info("Saving seed approval document to Elasticsearch: {}", document.getId());
@@ -401,7 +571,11 @@ public class SeedApprovalDetailsService {
             document.setBreederPinyin(PinyinUtil.getPinyinWithoutTone(document.getBreeder()));
         }
         
+        luceneSearchIndex.indexApprovals(List.of(document));
         seedApprovalRepository.save(document);
+        searchResultCache.bumpGeneration(SearchResultCache.SEED_APPROVAL_DETAILS);
+        seedSuggestService.saveApprovalSuggestions(List.of(document));
+        approvalVectorIndexService.enqueueUpsert(document);
     }
 
     /**
@@ -426,7 +600,11 @@ public class SeedApprovalDetailsService {
             }
         });
         
+        luceneSearchIndex.indexApprovals(documents);
         seedApprovalRepository.saveAll(documents);
+        searchResultCache.bumpGeneration(SearchResultCache.SEED_APPROVAL_DETAILS);
+        seedSuggestService.saveApprovalSuggestions(documents);
+        documents.forEach(approvalVectorIndexService::enqueueUpsert);
     }
 
     /**
@@ -434,6 +612,10 @@ public class SeedApprovalDetailsService {
      */
     public void deleteDocument(String id) {
         log.info("Deleting seed approval document from Elasticsearch: {}", id);
+        luceneSearchIndex.deleteApproval(id);
         seedApprovalRepository.deleteById(id);
+        searchResultCache.bumpGeneration(SearchResultCache.SEED_APPROVAL_DETAILS);
+        seedSuggestService.deleteApprovalSuggestions(id);
+        approvalVectorIndexService.enqueueDelete(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.desheng.service;
+
+import com.desheng.mapper.SeedMapper;
+import com.desheng.model.Seed;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 种子缓存（按 ID）
+ * 语义搜索结果补全完整种子信息时使用：一次请求中未命中的 ID 合并为一次 selectBatchIds 查询，
+ * 种子新增、修改、删除时由 SeedSyncService 失效对应条目
+ *
+ * 指标：cache.gets{cache=seeds.by-id, result=hit|miss}
+ */
+@Component
+public class SeedCache {
+
+    private final SeedMapper seedMapper;
+    private final Cache<Long, Seed> cache;
+
+    public SeedCache(SeedMapper seedMapper,
+                     MeterRegistry meterRegistry,
+                     @Value("${semantic-search.seed-cache.max-size:20000}") long maxSize,
+                     @Value("${semantic-search.seed-cache.ttl:10m}") Duration ttl) {
+        this.seedMapper = seedMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "seeds.by-id");
+    }
+
+    /**
+     * 批量读取种子，MySQL 中不存在的 ID 不出现在结果中
+     */
+    public Map<Long, Seed> getAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return cache.getAll(ids, missing -> seedMapper.selectBatchIds(missing).stream()
+                .collect(Collectors.toMap(Seed::getId, Function.identity())));
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -1,22 +1,31 @@
 package com.desheng.service;
 
 import com.desheng.model.SeedDocument;
+import com.desheng.model.dto.SearchPage;
 import com.desheng.repository.SeedElasticsearchRepository;
 import com.desheng.util.PinyinUtil;
+import com.desheng.util.SearchKeyUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.ReactiveElasticsearchTemplate;
+import org.springframework.data.elasticsearch.core.MultiGetItem;
+import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.data.elasticsearch.core.query.Criteria;
-import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
 import org.springframework.data.elasticsearch.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -30,6 +39,18 @@ public class SeedSearchService {
 
     private final SeedElasticsearchRepository seedElasticsearchRepository;
     private final ElasticsearchTemplate elasticsearchTemplate;
+    private final SearchResultCache searchResultCache;
+    private final SearchQueryCompiler searchQueryCompiler;
+    private final ReactiveElasticsearchTemplate reactiveElasticsearchTemplate;
+    private final SearchInstrumentation searchInstrumentation;
+    private final SearchCircuitBreaker searchCircuitBreaker;
+    private final LuceneSearchIndex luceneSearchIndex;
+
+    @Value("${search.browse.track-total-hits-up-to:1000}")
+    private int browseTrackTotalHitsUpTo;
+
+    @Value("${search.async.timeout:5s}")
+    private Duration asyncTimeout;
 
     /**
      * 搜索种子（支持品种名、拼音、审定号、企业名）
@@ -41,27 +62,30 @@ public class SeedSearchService {
      */
     public Page<SeedDocument> searchSeeds(String keyword, int page, int pageSize) {
         log.info("Searching seeds with keyword: {}", keyword);
-        
+        return execute("seeds.searchSeeds", () -> prepareSearchSeeds(keyword, page, pageSize),
+                () -> fallbackSearch(keyword, null, null, null, null, null, page, pageSize));
+    }
+
+    /**
+     * 搜索种子（异步，不占用调用线程等待 ES 响应）
+     */
+    public CompletableFuture<Page<SeedDocument>> searchSeedsAsync(String keyword, int page, int pageSize) {
+        log.info("Searching seeds asynchronously with keyword: {}", keyword);
+        return executeAsync("seeds.searchSeeds", () -> prepareSearchSeeds(keyword, page, pageSize),
+                () -> fallbackSearch(keyword, null, null, null, null, null, page, pageSize));
+    }
+
+    private PreparedSearch prepareSearchSeeds(String keyword, int page, int pageSize) {
         Pageable pageable = PageRequest.of(page, pageSize);
-        
-        // 构建搜索条件：支持品种名、拼音、审定号、企业名等多个字段
-        Criteria criteria = new Criteria()
-                .or(new Criteria("varietyName").contains(keyword))
-                .or(new Criteria("varietyNamePinyin").contains(keyword))
-                .or(new Criteria("varietyNamePinyinShort").contains(keyword))
-                .or(new Criteria("approvalNumber").contains(keyword))
-                .or(new Criteria("company").contains(keyword))
-                .or(new Criteria("companyPinyin").contains(keyword));
-        
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedDocument> searchHits = elasticsearchTemplate.search(query, SeedDocument.class);
-        
-        List<SeedDocument> documents = searchHits.stream()
-                .map(hit -> hit.getContent())
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(documents, pageable, searchHits.getTotalHits());
+        return new PreparedSearch(SearchKeyUtil.signature("searchSeeds", keyword, page, pageSize),
+                () -> buildSearchSeedsQuery(keyword, pageable), pageable);
+    }
+
+    /**
+     * 构建关键词搜索查询：支持品种名、拼音、审定号、企业名等多个字段
+     */
+    public Query buildSearchSeedsQuery(String keyword, Pageable pageable) {
+        return searchQuery(searchQueryCompiler.compileSeedQuery(keyword, null, null, null, null, null), pageable);
     }
 
     /**
@@ -69,18 +93,22 @@ public class SeedSearchService {
      */
     public Page<SeedDocument> searchByCropType(String cropType, int page, int pageSize) {
         log.info("Searching seeds by crop type: {}", cropType);
-        
-        Pageable pageable = PageRequest.of(page, pageSize);
-        Criteria criteria = new Criteria("cropType").is(cropType);
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedDocument> searchHits = elasticsearchTemplate.search(query, SeedDocument.class);
-        
-        List<SeedDocument> documents = searchHits.stream()
-                .map(hit -> hit.getContent())
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(documents, pageable, searchHits.getTotalHits());
+        return execute("seeds.searchByCropType", () -> prepareSearchByCropType(cropType, page, pageSize),
+                () -> fallbackSearch(null, cropType, null, null, null, null, page, pageSize));
+    }
+
+    public CompletableFuture<Page<SeedDocument>> searchByCropTypeAsync(String cropType, int page, int pageSize) {
+        log.info("Searching seeds asynchronously by crop type: {}", cropType);
+        return executeAsync("seeds.searchByCropType", () -> prepareSearchByCropType(cropType, page, pageSize),
+                () -> fallbackSearch(null, cropType, null, null, null, null, page, pageSize));
+    }
+
+    private PreparedSearch prepareSearchByCropType(String cropType, int page, int pageSize) {
+        Pageable pageable = PageRequest.of(page, pageSize, ElasticsearchIndexService.INDEX_SORT);
+        return new PreparedSearch(SearchKeyUtil.signature("searchByCropType", cropType, page, pageSize),
+                () -> browseQuery(searchQueryCompiler.compileSeedQuery(null, cropType, null, null, null, null),
+                        pageable),
+                pageable);
     }
 
     /**
@@ -88,77 +116,220 @@ public class SeedSearchService {
      */
     public Page<SeedDocument> searchByApprovalRegion(String approvalRegion, int page, int pageSize) {
         log.info("Searching seeds by approval region: {}", approvalRegion);
-        
-        Pageable pageable = PageRequest.of(page, pageSize);
-        Criteria criteria = new Criteria("approvalRegion").contains(approvalRegion);
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedDocument> searchHits = elasticsearchTemplate.search(query, SeedDocument.class);
-        
-        List<SeedDocument> documents = searchHits.stream()
-                .map(hit -> hit.getContent())
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(documents, pageable, searchHits.getTotalHits());
+        return execute("seeds.searchByApprovalRegion",
+                () -> prepareSearchByApprovalRegion(approvalRegion, page, pageSize),
+                () -> fallbackSearch(null, null, approvalRegion, null, null, null, page, pageSize));
+    }
+
+    public CompletableFuture<Page<SeedDocument>> searchByApprovalRegionAsync(String approvalRegion, int page, int pageSize) {
+        log.info("Searching seeds asynchronously by approval region: {}", approvalRegion);
+        return executeAsync("seeds.searchByApprovalRegion",
+                () -> prepareSearchByApprovalRegion(approvalRegion, page, pageSize),
+                () -> fallbackSearch(null, null, approvalRegion, null, null, null, page, pageSize));
+    }
+
+    private PreparedSearch prepareSearchByApprovalRegion(String approvalRegion, int page, int pageSize) {
+        Pageable pageable = PageRequest.of(page, pageSize, ElasticsearchIndexService.INDEX_SORT);
+        return new PreparedSearch(SearchKeyUtil.signature("searchByApprovalRegion", approvalRegion, page, pageSize),
+                () -> browseQuery(searchQueryCompiler.compileSeedQuery(null, null, approvalRegion, null, null, null),
+                        pageable),
+                pageable);
     }
 
     /**
      * 高级搜索（多条件组合）
+     * 关键词参与相关度评分，作物类型、审定地区、年份范围、企业名称都作为 filter 条件
      */
     public Page<SeedDocument> advancedSearch(String keyword, String cropType, String approvalRegion,
                                              Integer startYear, Integer endYear, String company,
                                              int page, int pageSize) {
         log.info("Advanced search - keyword: {}, cropType: {}, region: {}, years: {}-{}, company: {}",
                  keyword, cropType, approvalRegion, startYear, endYear, company);
+        return execute("seeds.advancedSearch", () -> prepareAdvancedSearch(keyword, cropType, approvalRegion,
+                startYear, endYear, company, page, pageSize),
+                () -> fallbackSearch(keyword, cropType, approvalRegion, startYear, endYear, company, page, pageSize));
+    }
+
+    public CompletableFuture<Page<SeedDocument>> advancedSearchAsync(String keyword, String cropType,
+                                                                     String approvalRegion, Integer startYear,
+                                                                     Integer endYear, String company,
+                                                                     int page, int pageSize) {
+        log.info("Async advanced search - keyword: {}, cropType: {}, region: {}, years: {}-{}, company: {}",
+                 keyword, cropType, approvalRegion, startYear, endYear, company);
+        return executeAsync("seeds.advancedSearch", () -> prepareAdvancedSearch(keyword, cropType, approvalRegion,
+                startYear, endYear, company, page, pageSize),
+                () -> fallbackSearch(keyword, cropType, approvalRegion, startYear, endYear, company, page, pageSize));
+    }
+
+    private PreparedSearch prepareAdvancedSearch(String keyword, String cropType, String approvalRegion,
+                                                 Integer startYear, Integer endYear, String company,
+                                                 int page, int pageSize) {
+        boolean hasKeyword = keyword != null && !keyword.trim().isEmpty();
+        // 没有关键词时是纯筛选浏览，按审定年份倒序
+        Pageable pageable = hasKeyword
+                ? PageRequest.of(page, pageSize)
+                : PageRequest.of(page, pageSize, ElasticsearchIndexService.INDEX_SORT);
         
-        Pageable pageable = PageRequest.of(page, pageSize);
-        
-        Criteria criteria = new Criteria();
-        
-        // 关键词搜索
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            Criteria keywordCriteria = new Criteria()
-                    .or(new Criteria("varietyName").contains(keyword))
-                    .or(new Criteria("varietyNamePinyin").contains(keyword))
-                    .or(new Criteria("varietyNamePinyinShort").contains(keyword))
-                    .or(new Criteria("approvalNumber").contains(keyword))
-                    .or(new Criteria("company").contains(keyword))
-                    .or(new Criteria("companyPinyin").contains(keyword));
-            criteria = criteria.and(keywordCriteria);
-        }
-        
-        // 作物类型
-        if (cropType != null && !cropType.trim().isEmpty()) {
-            criteria = criteria.and(new Criteria("cropType").is(cropType));
-        }
+        Supplier<Query> query = () -> {
+            co.elastic.clients.elasticsearch._types.query_dsl.Query compiled = searchQueryCompiler.compileSeedQuery(
+                    keyword, cropType, approvalRegion, startYear, endYear, company);
+            return hasKeyword ? searchQuery(compiled, pageable) : browseQuery(compiled, pageable);
+        };
         
-        // 审定地区
-        if (approvalRegion != null && !approvalRegion.trim().isEmpty()) {
-            criteria = criteria.and(new Criteria("approvalRegion").contains(approvalRegion));
-        }
+        return new PreparedSearch(SearchKeyUtil.signature("advancedSearch", keyword, cropType, approvalRegion,
+                startYear, endYear, company, page, pageSize), query, pageable);
+    }
+
+    /**
+     * 关键词搜索，只返回按相关度排序的种子 ID（混合搜索的词法召回通道，不取回文档内容）
+     * 超时后取消下游请求
+     */
+    public CompletableFuture<List<Long>> searchSeedIdsAsync(String keyword, int size, Duration timeout) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(searchQueryCompiler.compileSeedQuery(keyword, null, null, null, null, null))
+                .withSourceFilter(new FetchSourceFilterBuilder().withIncludes("id").build())
+                .withMaxResults(size)
+                .withTrackTotalHits(false)
+                .build();
         
-        // 审定年份范围
-        if (startYear != null) {
-            criteria = criteria.and(new Criteria("approvalYear").greaterThanEqual(startYear));
-        }
-        if (endYear != null) {
-            criteria = criteria.and(new Criteria("approvalYear").lessThanEqual(endYear));
+        return reactiveElasticsearchTemplate.search(query, SeedDocument.class)
+                .map(hit -> Long.valueOf(hit.getId()))
+                .collectList()
+                .timeout(timeout)
+                .toFuture();
+    }
+
+    /**
+     * 按 ID 批量取回文档（multi-get），按传入顺序返回，不存在的 ID 跳过
+     */
+    public CompletableFuture<List<SeedDocument>> findDocumentsAsync(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
         }
         
-        // 企业名称
-        if (company != null && !company.trim().isEmpty()) {
-            criteria = criteria.and(new Criteria("company").contains(company));
+        NativeQuery query = NativeQuery.builder()
+                .withIds(ids.stream().map(String::valueOf).collect(Collectors.toList()))
+                .build();
+        return reactiveElasticsearchTemplate.multiGet(query, SeedDocument.class)
+                .filter(MultiGetItem::hasItem)
+                .map(MultiGetItem::getItem)
+                .collectList()
+                .timeout(asyncTimeout)
+                .toFuture();
+    }
+
+    private Query searchQuery(co.elastic.clients.elasticsearch._types.query_dsl.Query compiled, Pageable pageable) {
+        NativeQuery query = NativeQuery.builder().withQuery(compiled).build();
+        query.setPageable(pageable);
+        return query;
+    }
+
+    /**
+     * 纯筛选浏览查询：排序与索引排序一致，总数只统计到上限，收集够结果后即可提前结束
+     * 超过上限时返回的总数为上限值，分页结果的 totalHitsRelation 为 gte
+     */
+    private Query browseQuery(co.elastic.clients.elasticsearch._types.query_dsl.Query compiled, Pageable pageable) {
+        Query query = searchQuery(compiled, pageable);
+        query.setTrackTotalHitsUpTo(browseTrackTotalHitsUpTo);
+        return query;
+    }
+
+    /**
+     * 执行搜索（结果按查询签名缓存，写入时失效），按阶段记录耗时
+     * ES 不可用时经熔断器切换到本地索引
+     */
+    private Page<SeedDocument> execute(String endpoint, Supplier<PreparedSearch> preparer,
+                                       Supplier<Page<SeedDocument>> fallback) {
+        SearchInstrumentation.Trace trace = searchInstrumentation.start(endpoint);
+        Throwable error = null;
+        try {
+            return searchCircuitBreaker.execute(() -> {
+                PreparedSearch search = preparer.get();
+                return searchResultCache.get(SearchResultCache.SEEDS, search.signature(), () -> {
+                    Query query = trace.stage("build", search.query());
+                    trace.query(query, SeedDocument.class);
+                    SearchHits<SeedDocument> hits = trace.stage("search",
+                            () -> elasticsearchTemplate.search(query, SeedDocument.class));
+                    trace.took(hits.getExecutionDuration());
+                    return trace.stage("map", () -> toPage(hits, search.pageable()));
+                });
+            }, fallback(trace, fallback));
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            trace.finish(error);
         }
-        
-        Query query = new CriteriaQuery(criteria).setPageable(pageable);
-        
-        SearchHits<SeedDocument> searchHits = elasticsearchTemplate.search(query, SeedDocument.class);
-        
+    }
+
+    /**
+     * 异步执行搜索：通过异步 ES 客户端发送请求，超时后取消下游请求
+     */
+    private CompletableFuture<Page<SeedDocument>> executeAsync(String endpoint, Supplier<PreparedSearch> preparer,
+                                                               Supplier<Page<SeedDocument>> fallback) {
+        SearchInstrumentation.Trace trace = searchInstrumentation.start(endpoint);
+        return searchCircuitBreaker.executeAsync(() -> {
+                    PreparedSearch search = preparer.get();
+                    return searchResultCache.getAsync(SearchResultCache.SEEDS, search.signature(), () -> {
+                        Query query = trace.stage("build", search.query());
+                        trace.query(query, SeedDocument.class);
+                        long start = System.nanoTime();
+                        return reactiveElasticsearchTemplate.searchForHits(query, SeedDocument.class)
+                                .flatMap(hits -> hits.getSearchHits()
+                                        .map(SearchHit::getContent)
+                                        .collectList()
+                                        .map(documents -> {
+                                            trace.record("search", System.nanoTime() - start);
+                                            return trace.stage("map", () -> toPage(documents, hits.getTotalHits(),
+                                                    isTotalExact(hits.getTotalHitsRelation()), search.pageable()));
+                                        }))
+                                .timeout(asyncTimeout)
+                                .toFuture();
+                    });
+                }, fallback(trace, fallback))
+                .whenComplete((result, error) -> trace.finish(error));
+    }
+
+    /**
+     * 本地索引已构建时才提供降级
+     */
+    private Supplier<Page<SeedDocument>> fallback(SearchInstrumentation.Trace trace,
+                                                  Supplier<Page<SeedDocument>> fallback) {
+        return luceneSearchIndex.isReady(LuceneSearchIndex.SEEDS) ? () -> trace.stage("fallback", fallback) : null;
+    }
+
+    /**
+     * 本地 Lucene 索引搜索（ES 不可用时的降级）
+     */
+    private Page<SeedDocument> fallbackSearch(String keyword, String cropType, String approvalRegion,
+                                              Integer startYear, Integer endYear, String company,
+                                              int page, int pageSize) {
+        LuceneSearchIndex.Hits<SeedDocument> hits = luceneSearchIndex.searchSeeds(keyword, cropType, approvalRegion,
+                startYear, endYear, company, page, pageSize);
+        return toPage(hits.documents(), hits.totalHits(), true, PageRequest.of(page, pageSize));
+    }
+
+    /**
+     * 将搜索结果转换为分页对象
+     */
+    public Page<SeedDocument> toPage(SearchHits<SeedDocument> searchHits, Pageable pageable) {
         List<SeedDocument> documents = searchHits.stream()
                 .map(hit -> hit.getContent())
                 .collect(Collectors.toList());
         
-        return new PageImpl<>(documents, pageable, searchHits.getTotalHits());
+        return toPage(documents, searchHits.getTotalHits(), isTotalExact(searchHits.getTotalHitsRelation()), pageable);
+    }
+
+    private Page<SeedDocument> toPage(List<SeedDocument> documents, long totalHits, boolean totalExact,
+                                      Pageable pageable) {
+        return new SearchPage<>(documents, pageable, totalHits, totalExact);
+    }
+
+    /**
+     * 总数是否为精确值（纯筛选浏览超过统计上限时只是下限）
+     */
+    static boolean isTotalExact(TotalHitsRelation relation) {
+        return relation == TotalHitsRelation.EQUAL_TO;
     }
 
     /**
@@ -196,6 +367,7 @@ public class SeedSearchService {
     public void saveDocument(SeedDocument document) {
         log.info("Saving seed document to Elasticsearch: {}", document.getId());
         seedElasticsearchRepository.save(document);
+        searchResultCache.bumpGeneration(SearchResultCache.SEEDS);
     }
 
     /**
@@ -204,6 +376,7 @@ public class SeedSearchService {
     public void saveDocuments(List<SeedDocument> documents) {
         log.info("Saving {} seed documents to Elasticsearch", documents.size());
         seedElasticsearchRepository.saveAll(documents);
+        searchResultCache.bumpGeneration(SearchResultCache.SEEDS);
     }
 
     /**
@@ -212,6 +385,7 @@ public class SeedSearchService {
     public void deleteDocument(Long id) {
         log.info("Deleting seed document from Elasticsearch: {}", id);
         seedElasticsearchRepository.deleteById(id);
+        searchResultCache.bumpGeneration(SearchResultCache.SEEDS);
     }
 
     /**
@@ -220,5 +394,12 @@ public class SeedSearchService {
     public void deleteAllDocuments() {
         log.warn("Deleting all seed documents from Elasticsearch");
         seedElasticsearchRepository.deleteAll();
+        searchResultCache.bumpGeneration(SearchResultCache.SEEDS);
+    }
+
+    /**
+     * 准备好的搜索：签名用于查缓存，查询只在缓存未命中时才构建
+     */
+    private record PreparedSearch(String signature, Supplier<Query> query, Pageable pageable) {
     }
 }
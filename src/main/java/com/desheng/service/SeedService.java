@@ -6,10 +6,17 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.desheng.mapper.SeedMapper;
 import com.desheng.model.Seed;
+import com.desheng.model.SeedDocument;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * Seed Service Layer
  * 使用 MyBatis-Plus 的 ServiceImpl 继承基本的 CRUD 操作
@@ -22,6 +29,7 @@ public class SeedService extends ServiceImpl<SeedMapper, Seed> {
 
     private final SeedMapper seedMapper;
     private final SeedSyncService seedSyncService;
+    private final LuceneSearchIndex luceneSearchIndex;
 
     /**
      * 获取所有种子（分页）
@@ -66,13 +74,29 @@ public class SeedService extends ServiceImpl<SeedMapper, Seed> {
 
     /**
      * 搜索种子（品种名、审定号、企业名）
+     * 本地索引已构建时在索引中匹配，再按主键取回当前页，避免 LIKE 全表扫描；否则回退到 MySQL 模糊查询
      */
     public IPage<Seed> searchSeeds(String keyword, int page, int pageSize, String sortBy, String sortOrder) {
         Page<Seed> pageRequest = new Page<>(page + 1, pageSize);
         
         log.info("Searching seeds with keyword: {}", keyword);
         
-        return seedMapper.searchByKeyword(pageRequest, keyword);
+        if (!luceneSearchIndex.isReady(LuceneSearchIndex.SEEDS)) {
+            return seedMapper.searchByKeyword(pageRequest, keyword);
+        }
+        
+        LuceneSearchIndex.Hits<SeedDocument> hits = luceneSearchIndex.searchSeeds(
+                keyword, null, null, null, null, null, page, pageSize);
+        List<Long> ids = hits.documents().stream().map(SeedDocument::getId).collect(Collectors.toList());
+        Map<Long, Seed> seedsById = ids.isEmpty() ? Map.of() : this.listByIds(ids).stream()
+                .collect(Collectors.toMap(Seed::getId, Function.identity()));
+        
+        pageRequest.setRecords(ids.stream()
+                .map(seedsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        pageRequest.setTotal(hits.totalHits());
+        return pageRequest;
     }
 
     /**
@@ -0,0 +1,285 @@
+package com.desheng.service;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
+import co.elastic.clients.elasticsearch.core.search.CompletionContext;
+import co.elastic.clients.elasticsearch.core.search.Suggester;
+import com.desheng.model.Seed;
+import com.desheng.model.SeedApprovalDocument;
+import com.desheng.model.SeedSuggestDocument;
+import com.desheng.model.dto.SuggestionDto;
+import com.desheng.repository.SeedSuggestElasticsearchRepository;
+import com.desheng.util.PinyinUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+import org.springframework.data.elasticsearch.core.suggest.response.CompletionSuggestion;
+import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 输入联想服务
+ * 基于 completion suggester（内存 FST）提供审定编号、品种名（汉字/全拼/简拼）、申请单位和企业名的前缀补全
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SeedSuggestService {
+
+    public static final String TYPE_APPROVAL_NUMBER = "approvalNumber";
+    public static final String TYPE_VARIETY_NAME = "varietyName";
+    public static final String TYPE_APPLICANT = "applicant";
+    public static final String TYPE_COMPANY = "company";
+    public static final List<String> ALL_TYPES = List.of(
+            TYPE_APPROVAL_NUMBER, TYPE_VARIETY_NAME, TYPE_APPLICANT, TYPE_COMPANY);
+
+    private static final String SOURCE_SEEDS = "seeds";
+    private static final String SOURCE_APPROVALS = "seed_approval_details";
+    private static final String SUGGESTER_NAME = "seed-suggest";
+
+    private final SeedSuggestElasticsearchRepository seedSuggestRepository;
+    private final ElasticsearchTemplate elasticsearchTemplate;
+
+    /**
+     * 前缀补全
+     *
+     * @param prefix 用户已输入的前缀
+     * @param types 建议类型（为空表示全部类型）
+     * @param size 返回数量
+     * @return 建议列表（按权重排序，已去重）
+     */
+    public List<SuggestionDto> suggest(String prefix, Collection<String> types, int size) {
+        log.debug("Suggesting for prefix: {}, types: {}", prefix, types);
+
+        SearchHits<SeedSuggestDocument> searchHits = elasticsearchTemplate.search(
+                buildSuggestQuery(prefix, types, size), SeedSuggestDocument.class);
+        return extractSuggestions(searchHits);
+    }
+
+    /**
+     * 构建补全查询（只返回 suggest 部分，不返回命中文档）
+     */
+    public NativeQuery buildSuggestQuery(String prefix, Collection<String> types, int size) {
+        Collection<String> contextTypes = types == null || types.isEmpty() ? ALL_TYPES : types;
+        List<CompletionContext> contexts = contextTypes.stream()
+                .map(type -> CompletionContext.of(c -> c.context(ctx -> ctx.category(type))))
+                .toList();
+
+        Suggester suggester = Suggester.of(s -> s.suggesters(SUGGESTER_NAME, fs -> fs
+                .prefix(normalizePrefix(prefix))
+                .completion(c -> c
+                        .field("suggest")
+                        .size(size)
+                        .skipDuplicates(true)
+                        .contexts(Map.of("type", contexts)))));
+
+        return NativeQuery.builder()
+                .withSuggester(suggester)
+                .withSourceFilter(new FetchSourceFilterBuilder().withIncludes("type", "text").build())
+                .withMaxResults(0)
+                .withTrackTotalHits(false)
+                .build();
+    }
+
+    /**
+     * 从搜索结果中提取补全建议
+     */
+    public List<SuggestionDto> extractSuggestions(SearchHits<?> searchHits) {
+        Suggest suggest = searchHits.getSuggest();
+        if (suggest == null) {
+            return new ArrayList<>();
+        }
+
+        Suggest.Suggestion<? extends Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option>> suggestion =
+                suggest.getSuggestion(SUGGESTER_NAME);
+        if (!(suggestion instanceof CompletionSuggestion<?> completion)) {
+            return new ArrayList<>();
+        }
+
+        Map<String, SuggestionDto> results = new LinkedHashMap<>();
+        for (CompletionSuggestion.Entry<?> entry : completion.getEntries()) {
+            for (CompletionSuggestion.Entry.Option<?> option : entry.getOptions()) {
+                SearchHit<?> hit = option.getSearchHit();
+                if (hit != null && hit.getContent() instanceof SeedSuggestDocument document) {
+                    results.putIfAbsent(document.getType() + ":" + document.getText(),
+                            SuggestionDto.builder().text(document.getText()).type(document.getType()).build());
+                }
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * 全量重建种子（seeds）来源的建议
+     * 文档 ID 是确定的：先覆盖写入，再删除这次没有生成的旧建议，重建期间补全结果不会变空
+     */
+    public void rebuildSeedSuggestions(List<Seed> seeds) {
+        log.info("Rebuilding suggestions for {} seeds", seeds.size());
+
+        List<SeedSuggestDocument> documents = new ArrayList<>();
+        seeds.forEach(seed -> documents.addAll(buildSeedSuggestions(seed)));
+        if (!documents.isEmpty()) {
+            seedSuggestRepository.saveAll(documents);
+        }
+
+        Set<String> currentIds = new HashSet<>();
+        documents.forEach(document -> currentIds.add(document.getId()));
+        List<String> staleIds = documentIds(SOURCE_SEEDS).stream()
+                .filter(id -> !currentIds.contains(id))
+                .toList();
+        if (!staleIds.isEmpty()) {
+            log.info("Removing {} stale seed suggestions", staleIds.size());
+            seedSuggestRepository.deleteAllById(staleIds);
+        }
+    }
+
+    /**
+     * 某个来源的全部建议文档 ID（滚动读取，不返回 _source）
+     */
+    private List<String> documentIds(String source) {
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(QueryBuilders.term(t -> t.field("source").value(source)))
+                .withSourceFilter(new FetchSourceFilterBuilder().withExcludes("*").build())
+                .withPageable(PageRequest.of(0, 1000))
+                .build();
+        List<String> ids = new ArrayList<>();
+        try (SearchHitsIterator<SeedSuggestDocument> hits =
+                     elasticsearchTemplate.searchForStream(query, SeedSuggestDocument.class)) {
+            hits.forEachRemaining(hit -> ids.add(hit.getId()));
+        }
+        return ids;
+    }
+
+    /**
+     * 保存单个种子的建议（新增或更新）
+     */
+    public void saveSeedSuggestions(Seed seed) {
+        saveSuggestions(SOURCE_SEEDS, List.of(String.valueOf(seed.getId())), buildSeedSuggestions(seed));
+    }
+
+    /**
+     * 删除单个种子的建议
+     */
+    public void deleteSeedSuggestions(Long seedId) {
+        seedSuggestRepository.deleteBySourceAndRefId(SOURCE_SEEDS, String.valueOf(seedId));
+    }
+
+    /**
+     * 保存审定详情的建议（新增或更新）
+     */
+    public void saveApprovalSuggestions(List<SeedApprovalDocument> approvals) {
+        List<String> refIds = new ArrayList<>();
+        List<SeedSuggestDocument> documents = new ArrayList<>();
+        approvals.forEach(approval -> {
+            refIds.add(approval.getId());
+            documents.addAll(buildApprovalSuggestions(approval));
+        });
+        saveSuggestions(SOURCE_APPROVALS, refIds, documents);
+    }
+
+    /**
+     * 删除审定详情的建议
+     */
+    public void deleteApprovalSuggestions(String approvalId) {
+        seedSuggestRepository.deleteBySourceAndRefId(SOURCE_APPROVALS, approvalId);
+    }
+
+    /**
+     * 文档 ID 是确定的，直接覆盖写入；字段被清空的类型删除对应旧建议
+     */
+    private void saveSuggestions(String source, List<String> refIds, List<SeedSuggestDocument> documents) {
+        Set<String> staleIds = new LinkedHashSet<>();
+        refIds.forEach(refId -> ALL_TYPES.forEach(type -> staleIds.add(source + ":" + refId + ":" + type)));
+        documents.forEach(document -> staleIds.remove(document.getId()));
+
+        if (!staleIds.isEmpty()) {
+            seedSuggestRepository.deleteAllById(staleIds);
+        }
+        if (!documents.isEmpty()) {
+            seedSuggestRepository.saveAll(documents);
+        }
+    }
+
+    private List<SeedSuggestDocument> buildSeedSuggestions(Seed seed) {
+        String refId = String.valueOf(seed.getId());
+        List<SeedSuggestDocument> documents = new ArrayList<>();
+        addSuggestion(documents, SOURCE_SEEDS, refId, TYPE_APPROVAL_NUMBER, seed.getApprovalNumber(), seed.getApprovalYear());
+        addSuggestion(documents, SOURCE_SEEDS, refId, TYPE_VARIETY_NAME, seed.getVarietyName(), seed.getApprovalYear());
+        addSuggestion(documents, SOURCE_SEEDS, refId, TYPE_COMPANY, seed.getCompany(), seed.getApprovalYear());
+        return documents;
+    }
+
+    private List<SeedSuggestDocument> buildApprovalSuggestions(SeedApprovalDocument approval) {
+        String refId = approval.getId();
+        List<SeedSuggestDocument> documents = new ArrayList<>();
+        addSuggestion(documents, SOURCE_APPROVALS, refId, TYPE_APPROVAL_NUMBER, approval.getApprovalNumber(), approval.getApprovalYear());
+        addSuggestion(documents, SOURCE_APPROVALS, refId, TYPE_VARIETY_NAME, approval.getVarietyName(), approval.getApprovalYear());
+        addSuggestion(documents, SOURCE_APPROVALS, refId, TYPE_APPLICANT, approval.getApplicant(), approval.getApprovalYear());
+        return documents;
+    }
+
+    private void addSuggestion(List<SeedSuggestDocument> documents, String source, String refId,
+                               String type, String text, Integer approvalYear) {
+        if (text == null || text.trim().isEmpty()) {
+            return;
+        }
+        String value = text.trim();
+
+        Completion completion = new Completion(buildInputs(type, value).toArray(new String[0]));
+        // 较新审定的品种排在前面
+        completion.setWeight(approvalYear != null ? approvalYear : 1);
+
+        documents.add(SeedSuggestDocument.builder()
+                .id(source + ":" + refId + ":" + type)
+                .type(type)
+                .source(source)
+                .refId(refId)
+                .text(value)
+                .suggest(completion)
+                .build());
+    }
+
+    /**
+     * 生成补全输入：审定编号额外支持只输入数字部分，名称类支持全拼和简拼
+     */
+    private Set<String> buildInputs(String type, String value) {
+        Set<String> inputs = new LinkedHashSet<>();
+        inputs.add(value);
+
+        if (TYPE_APPROVAL_NUMBER.equals(type)) {
+            String digits = value.replaceFirst("^\\D+", "");
+            if (!digits.isEmpty()) {
+                inputs.add(digits);
+            }
+        } else {
+            String pinyin = PinyinUtil.getPinyinForSearch(value);
+            if (pinyin != null && !pinyin.isEmpty()) {
+                inputs.add(pinyin.toLowerCase());
+            }
+            String pinyinShort = PinyinUtil.getPinyinShort(value);
+            if (pinyinShort != null && !pinyinShort.isEmpty()) {
+                inputs.add(pinyinShort.toLowerCase());
+            }
+        }
+        return inputs;
+    }
+
+    private String normalizePrefix(String prefix) {
+        return prefix == null ? "" : prefix.trim().toLowerCase().replaceAll("\\s+", "");
+    }
+}
@@ -21,6 +21,10 @@ public class SeedSyncService {
 
     private final SeedMapper seedMapper;
     private final SeedSearchService seedSearchService;
+    private final SeedSuggestService seedSuggestService;
+    private final LuceneSearchIndex luceneSearchIndex;
+    private final VectorIndexService vectorIndexService;
+    private final SeedCache seedCache;
 
     /**
      * 全量同步：将 MySQL 中的所有种子数据同步到 Elasticsearch
@@ -30,22 +34,27 @@ public class SeedSyncService {
         log.info("Starting full sync from MySQL to Elasticsearch...");
         
         try {
-            // 1. 清空 Elasticsearch 中的旧数据
-            seedSearchService.deleteAllDocuments();
-            log.info("Cleared all documents in Elasticsearch");
-            
-            // 2. 从 MySQL 查询所有种子
+            // 1. 从 MySQL 查询所有种子
             List<Seed> seeds = seedMapper.selectList(null);
             log.info("Retrieved {} seeds from MySQL", seeds.size());
+            seedCache.invalidateAll();
             
-            // 3. 转换为 SeedDocument 并保存到 Elasticsearch
+            // 2. 转换为 SeedDocument，先重建本地降级索引（不依赖 ES 是否可用）
             List<SeedDocument> documents = seeds.stream()
                     .map(seedSearchService::convertToDocument)
                     .collect(Collectors.toList());
+            luceneSearchIndex.replaceSeeds(documents);
+            
+            // 3. 清空 Elasticsearch 中的旧数据并保存
+            seedSearchService.deleteAllDocuments();
+            log.info("Cleared all documents in Elasticsearch");
             
             seedSearchService.saveDocuments(documents);
             log.info("Successfully synced {} seeds to Elasticsearch", documents.size());
             
+            // 4. 重建输入联想
+            seedSuggestService.rebuildSeedSuggestions(seeds);
+            
         } catch (Exception e) {
             log.error("Error during full sync", e);
             throw new RuntimeException("Failed to sync seeds to Elasticsearch", e);
@@ -59,9 +68,15 @@ public class SeedSyncService {
     public void syncSingleSeed(Seed seed) {
         log.info("Syncing single seed to Elasticsearch: {}", seed.getId());
         
+        // 向量写入排队批量执行，不阻塞请求，也不受 Elasticsearch 是否可用影响
+        seedCache.invalidate(seed.getId());
+        vectorIndexService.enqueueUpsert(seed);
+        
         try {
             SeedDocument document = seedSearchService.convertToDocument(seed);
+            luceneSearchIndex.indexSeed(document);
             seedSearchService.saveDocument(document);
+            seedSuggestService.saveSeedSuggestions(seed);
             log.info("Successfully synced seed {} to Elasticsearch", seed.getId());
         } catch (Exception e) {
             log.error("Error syncing single seed to Elasticsearch", e);
@@ -75,9 +90,13 @@ public class SeedSyncService {
      */
     public void deleteSyncedSeed(Long seedId) {
         log.info("Deleting seed from Elasticsearch: {}", seedId);
+        seedCache.invalidate(seedId);
+        vectorIndexService.enqueueDelete(seedId);
         
         try {
+            luceneSearchIndex.deleteSeed(seedId);
             seedSearchService.deleteDocument(seedId);
+            seedSuggestService.deleteSeedSuggestions(seedId);
             log.info("Successfully deleted seed {} from Elasticsearch", seedId);
         } catch (Exception e) {
             log.error("Error deleting seed from Elasticsearch", e);
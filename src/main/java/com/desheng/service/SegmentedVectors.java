@@ -0,0 +1,229 @@
+package com.desheng.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 分段存放的向量矩阵
+ * 向量按行（节点 ID）存放在固定行数的段中，每段是一个 direct ByteBuffer，或向量文件中一段区域的内存映射：
+ * 单个 ByteBuffer 最大 2GB，整个矩阵不受此限制。段内偏移用 int 计算，段在文件中的位置和总大小用 long 计算
+ *
+ * 扩容：最后一段未满时按倍数增长（只复制这一段），满了之后追加新段，已有的段不移动；
+ * 文件映射时新旧映射是同一个文件区域，不需要复制。写入方先扩容、写好向量，再发布节点，
+ * 读取方通过 volatile 的段数组看到已发布的行
+ */
+final class SegmentedVectors {
+
+    /**
+     * 每段最多 2^16 行，且不超过 1GB
+     */
+    private static final int MAX_SEGMENT_SHIFT = 16;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int INITIAL_ROWS = 1024;
+
+    private final int dimensions;
+    private Path file;
+    private final int shift;
+    private final int mask;
+    private final long segmentBytes;
+    private volatile Segment[] segments = new Segment[0];
+
+    /**
+     * @param file 向量文件，null 表示放在堆外内存中
+     */
+    SegmentedVectors(int dimensions, Path file) {
+        this.dimensions = dimensions;
+        this.file = file;
+        this.shift = segmentShift((long) dimensions * Float.BYTES);
+        this.mask = (1 << shift) - 1;
+        this.segmentBytes = ((long) dimensions * Float.BYTES) << shift;
+    }
+
+    /**
+     * 每段行数的位数：行大小为 bytesPerRow 时，每段 2^shift 行不超过 1GB（最多 2^16 行）
+     */
+    static int segmentShift(long bytesPerRow) {
+        int shift = MAX_SEGMENT_SHIFT;
+        while (shift > 0 && (bytesPerRow << shift) > MAX_SEGMENT_BYTES) {
+            shift--;
+        }
+        return shift;
+    }
+
+    /**
+     * 扩容后的行数：不足一段时按倍数增长，之后每次增加一段
+     */
+    static int grow(int capacity, int required, int shift) {
+        int full = 1 << shift;
+        long grown = capacity < full ? Math.max(INITIAL_ROWS, (long) capacity * 2) : (long) capacity + full;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(required, grown));
+    }
+
+    /**
+     * 容纳 capacity 行时第 segment 段的行数
+     */
+    static int segmentRows(int segment, int capacity, int shift) {
+        return (int) Math.min(1L << shift, (long) capacity - ((long) segment << shift));
+    }
+
+    int capacity() {
+        Segment[] current = segments;
+        return current.length == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE,
+                ((long) (current.length - 1) << shift) + current[current.length - 1].rows());
+    }
+
+    /**
+     * 保证至少可以存放 required 行（只由写入方调用）
+     *
+     * @param used 已写入的行数，重新分配最后一段时复制这些行
+     */
+    void ensureCapacity(int required, int used) {
+        int capacity = capacity();
+        if (required <= capacity) {
+            return;
+        }
+        int grown = grow(capacity, required, shift);
+        Segment[] current = segments;
+        int count = (int) (((long) grown + mask) >>> shift);
+        Segment[] updated = Arrays.copyOf(current, count);
+        for (int i = Math.max(0, current.length - 1); i < count; i++) {
+            int rows = segmentRows(i, grown, shift);
+            if (i < current.length && current[i].rows() == rows) {
+                continue;
+            }
+            Segment segment = allocate(i, rows);
+            if (i < current.length && file == null) {
+                int copied = (int) Math.max(0, Math.min(current[i].rows(), (long) used - ((long) i << shift)));
+                ByteBuffer source = current[i].bytes().duplicate();
+                source.position(0).limit(copied * dimensions * Float.BYTES);
+                segment.bytes().duplicate().put(source);
+            }
+            updated[i] = segment;
+        }
+        segments = updated;
+    }
+
+    /**
+     * 向量文件被移动（重命名）后，之后扩容映射新路径；已有的映射不受影响（只由写入方调用）
+     */
+    void moveTo(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 第 row 行所在段的向量
+     */
+    FloatBuffer segment(int row) {
+        return segments[row >>> shift].floats();
+    }
+
+    /**
+     * 第 row 行在所在段中的起始下标
+     */
+    int offset(int row) {
+        return (row & mask) * dimensions;
+    }
+
+    void get(int row, float[] target) {
+        segment(row).get(offset(row), target);
+    }
+
+    /**
+     * 把第 row 行批量复制到 target 的 offset 处
+     */
+    void get(int row, float[] target, int offset) {
+        segment(row).get(offset(row), target, offset, dimensions);
+    }
+
+    void put(int row, float[] vector) {
+        segment(row).put(offset(row), vector);
+    }
+
+    /**
+     * 第 a 行与第 b 行的点积
+     */
+    float dot(int a, int b) {
+        FloatBuffer segmentA = segment(a);
+        FloatBuffer segmentB = segment(b);
+        int baseA = offset(a);
+        int baseB = offset(b);
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += segmentA.get(baseA + i) * segmentB.get(baseB + i);
+        }
+        return dot;
+    }
+
+    /**
+     * 把前 count 行按顺序写入文件通道的当前位置
+     */
+    void writeTo(FileChannel channel, int count) throws IOException {
+        Segment[] current = segments;
+        long remaining = (long) count * dimensions * Float.BYTES;
+        for (int i = 0; i < current.length && remaining > 0; i++) {
+            ByteBuffer source = current[i].bytes().duplicate();
+            int length = (int) Math.min(source.capacity(), remaining);
+            source.position(0).limit(length);
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            remaining -= length;
+        }
+    }
+
+    /**
+     * 从文件通道的 position 处读取 count 行（只由写入方调用）
+     *
+     * @return 读取的字节数
+     */
+    long readFrom(FileChannel channel, long position, int count) throws IOException {
+        ensureCapacity(count, 0);
+        Segment[] current = segments;
+        long total = (long) count * dimensions * Float.BYTES;
+        long read = 0;
+        for (int i = 0; i < current.length && read < total; i++) {
+            ByteBuffer target = current[i].bytes().duplicate();
+            target.position(0).limit((int) Math.min(target.capacity(), total - read));
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + read + target.position()) < 0) {
+                    throw new IOException("Unexpected end of snapshot while reading vectors");
+                }
+            }
+            read += target.limit();
+        }
+        return total;
+    }
+
+    private Segment allocate(int segment, int rows) {
+        int bytes = rows * dimensions * Float.BYTES;
+        ByteBuffer buffer;
+        if (file == null) {
+            buffer = ByteBuffer.allocateDirect(bytes);
+        } else {
+            try {
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, segment * segmentBytes, bytes);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map vector file " + file, e);
+            }
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return new Segment(buffer, buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer(), rows);
+    }
+
+    private record Segment(ByteBuffer bytes, FloatBuffer floats, int rows) {
+    }
+}
@@ -2,17 +2,32 @@ package com.desheng.service;
 
 import com.desheng.model.Seed;
 import com.desheng.model.SeedVector;
+import com.desheng.model.dto.ApprovalSemanticSearchResult;
+import com.desheng.model.dto.SemanticSearchRequest;
+import com.desheng.model.dto.VectorBenchmarkResult;
+import com.desheng.util.SearchKeyUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -24,37 +39,102 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SemanticSearchService {
 
+    public static final String META_SEED_ID = "seedId";
+    public static final String META_VARIETY_NAME = "varietyName";
+    public static final String META_APPROVAL_NUMBER = "approvalNumber";
+    public static final String META_COMPANY = "company";
+    public static final String META_CROP_TYPE = "cropType";
+    public static final String META_APPROVAL_YEAR = "approvalYear";
+    public static final String META_APPROVAL_REGION = "approvalRegion";
+
     private final VectorStore vectorStore;
+    private final VectorIndexService vectorIndexService;
     private final EmbeddingModel embeddingModel;
-    private final SeedService seedService;
+    private final SeedCache seedCache;
+    private final SingleFlight singleFlight;
+    private final SearchInstrumentation searchInstrumentation;
+    private final ApprovalVectorIndexService approvalVectorIndexService;
+    @Qualifier("approvalVectorStore")
+    private final VectorStore approvalVectorStore;
+    @Qualifier("searchExecutor")
+    private final Executor searchExecutor;
+
+    @Value("${semantic-search.single-flight.timeout:10s}")
+    private Duration singleFlightTimeout;
+
+    @Value("${semantic-search.async.timeout:10s}")
+    private Duration asyncTimeout;
+
+    @Value("${semantic-search.max-top-k:100}")
+    private int maxTopK;
+
+    @Value("${semantic-search.exact-search.max-candidates:5000}")
+    private int exactSearchMaxCandidates;
+
+    @Value("${semantic-search.approval.chunk-factor:4}")
+    private int approvalChunkFactor;
 
     /**
-     * 将所有种子数据向量化并存储到 Redis 向量存储
-     * 这是一个初始化操作，应在应用启动时执行
+     * 增量同步种子向量索引：只向量化新增或内容变化的种子，删除已不存在的种子的向量
+     *
+     * @param rebuild true 时清空后全量重新向量化
      */
-    public void indexAllSeeds() {
-        log.info("Starting to index all seeds for semantic search...");
+    public VectorIndexService.SyncResult indexAllSeeds(boolean rebuild) {
+        log.info("Starting to index seeds for semantic search (rebuild: {})...", rebuild);
         
         try {
-            // 1. 从 MySQL 查询所有种子
-            List<Seed> seeds = seedService.list();
-            log.info("Retrieved {} seeds from MySQL", seeds.size());
-            
-            // 2. 转换为 Document 对象（Spring AI 的标准格式）
-            List<Document> documents = seeds.stream()
-                    .map(this::seedToDocument)
-                    .collect(Collectors.toList());
-            
-            // 3. 添加到向量存储
-            vectorStore.add(documents);
-            log.info("Successfully indexed {} seeds to vector store", documents.size());
-            
+            return vectorIndexService.syncAllSeeds(rebuild);
         } catch (Exception e) {
             log.error("Error indexing seeds", e);
             throw new RuntimeException("Failed to index seeds", e);
         }
     }
 
+    /**
+     * 增量同步审定详情的分块向量索引：只向量化新增或版本号变化的审定详情
+     *
+     * @param rebuild true 时清空后全量重新向量化
+     */
+    public ApprovalVectorIndexService.SyncResult indexAllApprovals(boolean rebuild) {
+        log.info("Starting to index seed approval details for semantic search (rebuild: {})...", rebuild);
+        
+        try {
+            return approvalVectorIndexService.syncAllApprovals(rebuild);
+        } catch (Exception e) {
+            log.error("Error indexing seed approval details", e);
+            throw new RuntimeException("Failed to index seed approval details", e);
+        }
+    }
+
+    /**
+     * 向量检索基准测试（只支持进程内 HNSW 向量存储）
+     * 对比全精度和量化检索方式的 recall@K 与延迟，用于为部署选择量化模式
+     */
+    public List<VectorBenchmarkResult> benchmarkVectorIndex(int topK, int samples) {
+        if (!(vectorStore instanceof HnswVectorStore hnsw)) {
+            throw new IllegalStateException("Vector benchmark requires vector-store.type=hnsw");
+        }
+        return hnsw.benchmark(topK, samples);
+    }
+
+    /**
+     * 降维基准测试（只支持进程内 HNSW 向量存储，需要全维索引）
+     * 对比截断到各维度后的 recall@K、延迟和内存，用于选择 semantic-search.embedding.dimensions
+     */
+    public List<VectorBenchmarkResult> benchmarkDimensions(int topK, int samples, List<Integer> dimensions) {
+        if (!(vectorStore instanceof HnswVectorStore hnsw)) {
+            throw new IllegalStateException("Vector benchmark requires vector-store.type=hnsw");
+        }
+        return hnsw.dimensionBenchmark(topK, samples, dimensions);
+    }
+
+    /**
+     * 当前向量索引的元数据（模型 ID、维度、文档数）
+     */
+    public Map<String, String> vectorIndexInfo() {
+        return vectorIndexService.info();
+    }
+
     /**
      * 语义搜索 - 根据查询文本找到最相似的种子
      * 
@@ -63,30 +143,206 @@ public class SemanticSearchService {
      * @return 相似度最高的种子列表
      */
     public List<SeedVector> semanticSearch(String query, int topK) {
-        log.info("Performing semantic search with query: {} (topK: {})", query, topK);
+        return semanticSearch(SemanticSearchRequest.builder().query(query).topK(topK).build());
+    }
+
+    /**
+     * 语义搜索 - topK、相似度阈值和元数据过滤（作物类型、审定地区、审定年份）都在 Redis 中执行
+     */
+    public List<SeedVector> semanticSearch(SemanticSearchRequest request) {
+        log.info("Performing semantic search with request: {}", request);
         
+        // 相同查询的并发请求共享一次 Embedding + 向量检索
+        String key = SearchKeyUtil.signature("semanticSearch", request.getQuery(), request.getTopK(),
+                request.getSimilarityThreshold(), request.getCropType(), request.getApprovalRegion(),
+                request.getStartYear(), request.getEndYear(), Boolean.TRUE.equals(request.getHydrate()));
+        SearchInstrumentation.Trace trace = searchInstrumentation.start("semantic.search");
+        trace.query("semantic request: " + request);
+        Throwable error = null;
         try {
-            // 1. 使用向量存储进行相似度搜索
-            // Spring AI 1.0.0 中，直接使用字符串查询，然后限制结果数量
-            List<Document> allResults = vectorStore.similaritySearch(query);
-            List<Document> results = allResults.stream()
-                    .limit(topK)
-                    .collect(Collectors.toList());
+            return singleFlight.execute(key, singleFlightTimeout, () -> doSemanticSearch(trace, request));
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            trace.finish(error);
+        }
+    }
+
+    /**
+     * 语义搜索（异步）
+     * Redis 向量存储基于同步的 Jedis 客户端，调用在有界的搜索线程池中执行，不占用 Web 请求线程；
+     * 超时后调用方立即得到失败结果，后台调用受 Redis 连接超时约束
+     */
+    public CompletableFuture<List<SeedVector>> semanticSearchAsync(String query, int topK) {
+        return semanticSearchAsync(SemanticSearchRequest.builder().query(query).topK(topK).build());
+    }
+
+    public CompletableFuture<List<SeedVector>> semanticSearchAsync(SemanticSearchRequest request) {
+        return CompletableFuture.supplyAsync(() -> semanticSearch(request), searchExecutor)
+                .orTimeout(asyncTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 构建向量检索请求：topK 和相似度阈值下推到 Redis，元数据条件编译为 TAG / NUMERIC 过滤
+     */
+    private SearchRequest buildSearchRequest(SemanticSearchRequest request) {
+        int topK = Math.min(request.getTopK() != null ? request.getTopK() : 10, maxTopK);
+        SearchRequest.Builder builder = SearchRequest.builder()
+                .query(request.getQuery())
+                .topK(topK);
+        if (request.getSimilarityThreshold() != null) {
+            builder.similarityThreshold(request.getSimilarityThreshold());
+        } else {
+            builder.similarityThresholdAll();
+        }
+        
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        List<FilterExpressionBuilder.Op> conditions = new ArrayList<>();
+        if (hasText(request.getCropType())) {
+            conditions.add(b.eq(META_CROP_TYPE, request.getCropType().trim()));
+        }
+        if (hasText(request.getApprovalRegion())) {
+            conditions.add(b.eq(META_APPROVAL_REGION, request.getApprovalRegion().trim()));
+        }
+        if (request.getStartYear() != null) {
+            conditions.add(b.gte(META_APPROVAL_YEAR, request.getStartYear()));
+        }
+        if (request.getEndYear() != null) {
+            conditions.add(b.lte(META_APPROVAL_YEAR, request.getEndYear()));
+        }
+        conditions.stream()
+                .reduce(b::and)
+                .ifPresent(condition -> builder.filterExpression(condition.build()));
+        
+        return builder.build();
+    }
+
+    private List<SeedVector> doSemanticSearch(SearchInstrumentation.Trace trace, SemanticSearchRequest request) {
+        try {
+            // 1. 使用向量存储进行相似度搜索（包含查询文本的 Embedding）
+            SearchRequest searchRequest = trace.stage("build", () -> buildSearchRequest(request));
+            List<Document> results = trace.stage("vector_search", () -> search(searchRequest));
             
-            // 2. 将结果转换为 SeedVector 对象
-            List<SeedVector> vectors = results.stream()
+            // 2. 将结果转换为 SeedVector 对象（按相似度排序，列表字段来自向量元数据）
+            List<SeedVector> mapped = trace.stage("map", () -> results.stream()
                     .map(doc -> documentToSeedVector(doc))
-                    .collect(Collectors.toList());
+                    .collect(Collectors.toList()));
+            
+            // 3. 需要完整信息时补全种子
+            List<SeedVector> vectors = Boolean.TRUE.equals(request.getHydrate())
+                    ? trace.stage("hydrate", () -> hydrate(mapped))
+                    : mapped;
             
             log.info("Found {} similar seeds", vectors.size());
             return vectors;
             
+        } catch (IllegalArgumentException e) {
+            // 参数不合法（如 topK、相似度阈值超出范围）原样抛出，由控制器返回 400
+            throw e;
         } catch (Exception e) {
             log.error("Error performing semantic search", e);
             throw new RuntimeException("Failed to perform semantic search", e);
         }
     }
 
+    /**
+     * 审定详情语义搜索 - 检索 topK * chunk-factor 个最相似的分块，按审定详情聚合：
+     * 文档的相似度取其分块中的最高值（max-sim），并返回最相似分块的字段和文本作为命中片段
+     *
+     * @param query 查询文本（例如："抗稻瘟病、适合机插的品种"）
+     * @param topK 返回的审定详情数
+     * @param threshold 最低相似度（0~1，可选）
+     * @param cropName 作物名称（可选，精确匹配）
+     */
+    public List<ApprovalSemanticSearchResult> searchApprovals(String query, int topK, Double threshold, String cropName) {
+        int limit = Math.min(topK, maxTopK);
+        SearchInstrumentation.Trace trace = searchInstrumentation.start("semantic.approvals");
+        trace.query("semantic approvals: " + query);
+        Throwable error = null;
+        try {
+            SearchRequest.Builder builder = SearchRequest.builder()
+                    .query(query)
+                    .topK(limit * Math.max(approvalChunkFactor, 1));
+            if (threshold != null) {
+                builder.similarityThreshold(threshold);
+            } else {
+                builder.similarityThresholdAll();
+            }
+            if (hasText(cropName)) {
+                builder.filterExpression(new FilterExpressionBuilder()
+                        .eq(ApprovalVectorIndexService.META_CROP_NAME, cropName.trim()).build());
+            }
+            SearchRequest searchRequest = builder.build();
+            List<Document> chunks = trace.stage("vector_search", () -> approvalVectorStore.similaritySearch(searchRequest));
+            List<ApprovalSemanticSearchResult> results = trace.stage("aggregate", () -> aggregateChunks(chunks, limit));
+            log.info("Found {} similar seed approval details from {} chunks", results.size(), chunks.size());
+            return results;
+        } catch (IllegalArgumentException e) {
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = e;
+            log.error("Error performing approval semantic search", e);
+            throw new RuntimeException("Failed to perform approval semantic search", e);
+        } finally {
+            trace.finish(error);
+        }
+    }
+
+    /**
+     * 按审定详情 ID 聚合分块：保留每个文档相似度最高的分块，按该相似度排序后取前 limit 个
+     */
+    private List<ApprovalSemanticSearchResult> aggregateChunks(List<Document> chunks, int limit) {
+        Map<String, ApprovalSemanticSearchResult> byApproval = new HashMap<>();
+        for (Document chunk : chunks) {
+            Map<String, Object> metadata = chunk.getMetadata();
+            String approvalId = toText(metadata.get(ApprovalVectorIndexService.META_APPROVAL_ID));
+            if (approvalId == null) {
+                continue;
+            }
+            double similarity = Objects.requireNonNullElse(similarity(chunk), 0.0);
+            ApprovalSemanticSearchResult result = byApproval.get(approvalId);
+            if (result == null) {
+                result = ApprovalSemanticSearchResult.builder()
+                        .approvalId(approvalId)
+                        .varietyName(toText(metadata.get(META_VARIETY_NAME)))
+                        .approvalNumber(toText(metadata.get(META_APPROVAL_NUMBER)))
+                        .cropName(toText(metadata.get(ApprovalVectorIndexService.META_CROP_NAME)))
+                        .matchedChunks(0)
+                        .build();
+                byApproval.put(approvalId, result);
+            }
+            result.setMatchedChunks(result.getMatchedChunks() + 1);
+            if (result.getSimilarity() == null || similarity > result.getSimilarity()) {
+                result.setSimilarity(similarity);
+                result.setMatchedField(toText(metadata.get(ApprovalVectorIndexService.META_FIELD)));
+                result.setSnippet(chunk.getText());
+            }
+        }
+        return byApproval.values().stream()
+                .sorted(Comparator.comparing(ApprovalSemanticSearchResult::getSimilarity).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 向量检索：有元数据过滤时，进程内 HNSW 存储中满足条件的种子不超过 exact-search.max-candidates 个则改用精确检索
+     * （召回率 100%，也不会因为过滤掉的结果太多而反复扩大 ef 重新搜索图），否则走图检索。
+     * Redis 向量存储的过滤在 RediSearch 中执行，由它按过滤条件的选择性在 KNN 和暴力扫描之间切换
+     */
+    private List<Document> search(SearchRequest searchRequest) {
+        if (exactSearchMaxCandidates > 0 && searchRequest.getFilterExpression() != null
+                && vectorStore instanceof HnswVectorStore hnsw) {
+            Optional<List<Document>> exact = hnsw.exactSearch(searchRequest, exactSearchMaxCandidates);
+            if (exact.isPresent()) {
+                log.debug("Filtered candidates within {}, used exact vector search", exactSearchMaxCandidates);
+                return exact.get();
+            }
+        }
+        return vectorStore.similaritySearch(searchRequest);
+    }
+
     /**
      * 添加单个种子到向量存储
      */
@@ -94,8 +350,7 @@ public class SemanticSearchService {
         log.info("Adding seed {} to vector store", seed.getId());
         
         try {
-            Document document = seedToDocument(seed);
-            vectorStore.add(List.of(document));
+            vectorIndexService.upsertSeed(seed);
             log.info("Successfully added seed {} to vector store", seed.getId());
         } catch (Exception e) {
             log.error("Error adding seed to vector store", e);
@@ -109,8 +364,7 @@ public class SemanticSearchService {
         log.info("Removing seed {} from vector store", seedId);
         
         try {
-            // Spring AI 的 VectorStore 不直接支持删除，需要重新索引
-            log.warn("Direct deletion not supported, consider re-indexing all seeds");
+            vectorIndexService.deleteSeed(seedId);
         } catch (Exception e) {
             log.error("Error removing seed from vector store", e);
         }
@@ -120,26 +374,22 @@ public class SemanticSearchService {
      * 根据查询文本搜索种子
      * @param query 查询文本
      * @param limit 返回结果数量
-     * @return 种子列表
+     * @return 种子列表（按相似度排序）
      */
     public List<Seed> searchByQuery(String query, int limit) {
+        return searchHydrated(query, limit).stream()
+                .map(SeedVector::getSeed)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 根据查询文本搜索种子，结果按相似度排序并附带相似度分数和完整种子信息
+     */
+    public List<SeedVector> searchHydrated(String query, int limit) {
         log.info("Searching seeds by query: {} (limit: {})", query, limit);
         
         try {
-            // 使用语义搜索获取相似度最高的结果
-            List<SeedVector> vectors = semanticSearch(query, limit);
-            
-            // 根据 seedId 从数据库获取完整的 Seed 对象
-            List<Long> seedIds = vectors.stream()
-                    .map(SeedVector::getSeedId)
-                    .collect(Collectors.toList());
-            
-            if (seedIds.isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            return seedService.listByIds(seedIds);
-            
+            return semanticSearch(SemanticSearchRequest.builder().query(query).topK(limit).hydrate(true).build());
         } catch (Exception e) {
             log.error("Error searching seeds by query", e);
             return new ArrayList<>();
@@ -147,39 +397,72 @@ public class SemanticSearchService {
     }
 
     /**
-     * 将 Seed 转换为 Spring AI Document
+     * 补全完整种子信息：保持相似度排序，从种子缓存批量读取，只有未命中的种子查询 MySQL；
+     * 向量还在、种子已删除（删除尚未同步到向量索引）的结果被丢弃
      */
-    private Document seedToDocument(Seed seed) {
-        String content = SeedVector.generateContent(seed);
-        
-        // 创建元数据
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("seedId", seed.getId());
-        metadata.put("varietyName", seed.getVarietyName());
-        metadata.put("approvalNumber", seed.getApprovalNumber());
-        metadata.put("cropType", seed.getCropType());
-        metadata.put("company", seed.getCompany());
-        metadata.put("approvalYear", seed.getApprovalYear());
-        metadata.put("approvalRegion", seed.getApprovalRegion());
-        
-        return new Document(content, metadata);
+    private List<SeedVector> hydrate(List<SeedVector> vectors) {
+        Map<Long, Seed> seeds = seedCache.getAll(vectors.stream()
+                .map(SeedVector::getSeedId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        List<SeedVector> hydrated = new ArrayList<>(vectors.size());
+        for (SeedVector vector : vectors) {
+            Seed seed = seeds.get(vector.getSeedId());
+            if (seed != null) {
+                vector.setSeed(seed);
+                hydrated.add(vector);
+            }
+        }
+        return hydrated;
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
     }
 
     /**
      * 将 Spring AI Document 转换为 SeedVector
+     * Redis 向量存储只返回 schema 中声明的元数据字段，且值均为字符串；进程内 HNSW 存储返回原始类型
      */
     private SeedVector documentToSeedVector(Document document) {
         Map<String, Object> metadata = document.getMetadata();
         
         return SeedVector.builder()
-                .seedId(((Number) metadata.get("seedId")).longValue())
-                .varietyName((String) metadata.get("varietyName"))
-                .approvalNumber((String) metadata.get("approvalNumber"))
-                .cropType((String) metadata.get("cropType"))
-                .company((String) metadata.get("company"))
+                .seedId(toLong(metadata.get(META_SEED_ID)))
+                .varietyName(toText(metadata.get(META_VARIETY_NAME)))
+                .approvalNumber(toText(metadata.get(META_APPROVAL_NUMBER)))
+                .cropType(toText(metadata.get(META_CROP_TYPE)))
+                .company(toText(metadata.get(META_COMPANY)))
+                .approvalYear(toInteger(metadata.get(META_APPROVAL_YEAR)))
+                .approvalRegion(toText(metadata.get(META_APPROVAL_REGION)))
                 .content(document.getText())
-                .similarity(document.getMetadata().get("distance") != null ? 
-                    ((Number) document.getMetadata().get("distance")).doubleValue() : 0.0)
+                .similarity(similarity(document))
                 .build();
     }
+
+    /**
+     * 相似度：优先使用文档分数，没有时由距离换算
+     */
+    private static Double similarity(Document document) {
+        Object distance = document.getMetadata().get("distance");
+        return document.getScore() != null ? document.getScore()
+                : distance != null ? 1 - Double.parseDouble(String.valueOf(distance)) : null;
+    }
+
+    private static String toText(Object value) {
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    private static Long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        // 数值字段在 Redis 中可能以 "2021" 或 "2021.0" 的形式返回
+        return value != null && !String.valueOf(value).isEmpty() ? (long) Double.parseDouble(String.valueOf(value)) : null;
+    }
+
+    private static Integer toInteger(Object value) {
+        Long number = toLong(value);
+        return number != null ? number.intValue() : null;
+    }
 }
@@ -0,0 +1,144 @@
+package com.desheng.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * 相同 key 的并发请求只有第一个真正调用后端，其余请求等待并共享同一结果或异常，
+ * 峰值时后端负载取决于不同查询的数量，而不是请求数量
+ *
+ * 指标：search.singleflight.calls{result=leader|shared}
+ */
+@Component
+@Slf4j
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Duration defaultTimeout;
+    private final Counter leaderCalls;
+    private final Counter sharedCalls;
+
+    public SingleFlight(MeterRegistry meterRegistry,
+                        @Value("${search.single-flight.timeout:5s}") Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+        this.leaderCalls = Counter.builder("search.singleflight.calls")
+                .tag("result", "leader")
+                .register(meterRegistry);
+        this.sharedCalls = Counter.builder("search.singleflight.calls")
+                .tag("result", "shared")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 使用默认等待超时执行
+     */
+    public <T> T execute(String key, Supplier<T> call) {
+        return execute(key, defaultTimeout, call);
+    }
+
+    /**
+     * 执行调用；已有相同 key 的调用在进行时，最多等待 timeout 并共享其结果
+     *
+     * @param key 规范化后的请求 key
+     * @param timeout 跟随者的等待超时
+     * @param call 实际的后端调用
+     */
+    public <T> T execute(String key, Duration timeout, Supplier<T> call) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, created);
+
+        if (existing != null) {
+            sharedCalls.increment();
+            return await(key, existing, timeout);
+        }
+
+        leaderCalls.increment();
+        try {
+            T value = call.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * 异步执行调用；已有相同 key 的调用在进行时共享其结果，不阻塞调用线程
+     * 共享的 future 由后端 future 完成，领导者和跟随者拿到的都是它的副本（copy），
+     * 任何一个调用方取消自己的 future（如控制器超时、客户端断开）都不会影响其他请求
+     *
+     * @param key 规范化后的请求 key
+     * @param call 返回 future 的后端调用
+     */
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, created);
+
+        if (existing != null) {
+            sharedCalls.increment();
+            return copy(existing);
+        }
+
+        leaderCalls.increment();
+        CompletableFuture<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+
+        result.whenComplete((value, error) -> {
+            inFlight.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(value);
+            }
+        });
+        return copy(created);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<T> copy(CompletableFuture<Object> shared) {
+        return (CompletableFuture<T>) (CompletableFuture<?>) shared.copy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T await(String key, CompletableFuture<Object> future, Duration timeout) {
+        try {
+            return (T) future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Timed out after {} waiting for in-flight request: {}", timeout, key);
+            throw new RuntimeException("Timed out waiting for in-flight request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for in-flight request", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.desheng.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 Vector API（jdk.incubator.vector）的点积
+ * 按 CPU 支持的最宽向量（AVX2 为 8 路、AVX-512 为 16 路）逐段 fma 累加，最后做一次横向归约，余下不足一段的分量逐个累加。
+ * 只在启动参数包含 --add-modules jdk.incubator.vector 时由 ExactVectorSearch 调用，否则不会加载这个类
+ */
+final class VectorApiDot {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorApiDot() {
+    }
+
+    /**
+     * 查询向量与 block 中从 offset 开始的一行的点积
+     */
+    static float dot(float[] query, float[] block, int offset) {
+        int dimensions = query.length;
+        int upper = SPECIES.loopBound(dimensions);
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector v = FloatVector.fromArray(SPECIES, block, offset + i);
+            sum = q.fma(v, sum);
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < dimensions; i++) {
+            dot += query[i] * block[offset + i];
+        }
+        return dot;
+    }
+}
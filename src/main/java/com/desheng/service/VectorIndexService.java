@@ -0,0 +1,457 @@
+package com.desheng.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.desheng.mapper.SeedMapper;
+import com.desheng.model.Seed;
+import com.desheng.model.SeedVector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 向量索引服务
+ * 增量维护种子的 Redis 向量索引：
+ * 1. 每个种子的文档 ID 由种子 ID 确定（name-based UUID），重复写入会覆盖而不是新增
+ * 2. Redis Hash（清单）记录每个种子已写入向量的 模型 ID + 内容 SHA-256，内容和模型都没变的种子不再调用 Embedding 接口
+ * 3. 清单中存在、MySQL 中已删除的种子，删除其向量
+ * 4. 种子的新增、修改、删除先进入待写队列（同一种子只保留最后一次操作），定时合并成批次写入向量存储
+ * 5. 定时压缩：删除 MySQL 中已不存在的种子的向量、不在清单中的孤立向量，进程内 HNSW 索引重建掉已删除的节点
+ *
+ * 清单不存在时（首次运行，或旧版本用随机 ID 写入的索引）先清空向量前缀下的所有文档，再全量写入
+ *
+ * 配置了 semantic-search.embedding.dimensions 时向量前缀和清单都带维度后缀，与其它维度的索引互不影响：
+ * 先用新维度启动一个实例完成同步（旧实例继续用原索引提供服务），再切换线上配置，即可并行重建索引。
+ * 每次同步后在 {清单}:info 中记录索引的模型 ID、维度和文档数
+ */
+@Service
+@Slf4j
+public class VectorIndexService {
+
+    /**
+     * 旧版本遗留的向量索引 -> 是否连同文档一起删除
+     * seed-vector-index 与当前索引共用 seed-vector: 前缀，只删除索引、保留文档
+     */
+    private static final Map<String, Boolean> LEGACY_INDEXES = Map.of(
+            "spring-ai-index", true,
+            "seed-vector-index", false);
+
+    private final VectorStore vectorStore;
+    private final SeedMapper seedMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final String modelId;
+    private final int dimensions;
+    private final String manifestKey;
+    private final String vectorPrefix;
+    private final String indexName;
+    private final int pageSize;
+    private final int batchSize;
+    private final double compactionThreshold;
+    private final boolean dropLegacyIndexes;
+    private final VectorManifest manifestStore;
+
+    // 同步、批量写入和压缩互斥执行，避免压缩把刚写入、尚未记入清单的向量当作孤立向量删除
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final PendingWrites<Long, Seed> pending = new PendingWrites<>("seed vector");
+
+    public VectorIndexService(VectorStore vectorStore,
+                              SeedMapper seedMapper,
+                              StringRedisTemplate redisTemplate,
+                              EmbeddingPipeline embeddingPipeline,
+                              CachingEmbeddingModel embeddingModel,
+                              @Value("${vector-store.manifest-key:vector-manifest:seeds}") String manifestKey,
+                              @Value("${vector-store.redis.prefix:seed-vector:}") String vectorPrefix,
+                              @Value("${vector-store.redis.index-name:seed-vector-index-v2}") String indexName,
+                              @Value("${vector-store.index.page-size:500}") int pageSize,
+                              @Value("${vector-store.index.max-batch-size:256}") int batchSize,
+                              @Value("${vector-store.hnsw.compaction-threshold:0.2}") double compactionThreshold,
+                              @Value("${semantic-search.embedding.dimensions:0}") int configuredDimensions,
+                              @Value("${vector-store.redis.drop-legacy-indexes:true}") boolean dropLegacyIndexes) {
+        this.vectorStore = vectorStore;
+        this.seedMapper = seedMapper;
+        this.redisTemplate = redisTemplate;
+        this.embeddingPipeline = embeddingPipeline;
+        this.modelId = embeddingModel.getModelId();
+        this.dimensions = embeddingModel.dimensions();
+        this.manifestKey = scoped(manifestKey, configuredDimensions);
+        this.vectorPrefix = scoped(vectorPrefix, configuredDimensions);
+        this.indexName = scoped(indexName, configuredDimensions);
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.compactionThreshold = compactionThreshold;
+        this.dropLegacyIndexes = dropLegacyIndexes;
+        this.manifestStore = new VectorManifest(redisTemplate, vectorStore, this.manifestKey, this.vectorPrefix);
+    }
+
+    /**
+     * 增量同步所有种子
+     * 按 ID 分页流式读取 MySQL（keyset 分页），变化的种子交给向量化流水线按 Token 预算分批并行写入，
+     * 每个批次写入成功后立即更新清单，中途失败时下次同步从未完成的种子继续
+     *
+     * @param rebuild true 时忽略清单，清空后全量重新向量化
+     */
+    public SyncResult syncAllSeeds(boolean rebuild) {
+        writeLock.lock();
+        try {
+            return sync(rebuild);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private SyncResult sync(boolean rebuild) {
+        Map<Object, Object> manifest = rebuild ? Map.of() : manifestStore.entries();
+
+        if (manifest.isEmpty()) {
+            purge();
+        } else if (vectorStore instanceof HnswVectorStore hnsw) {
+            // 进程内索引可能比清单旧（快照之后写入的向量在重启后丢失），以索引中实际存在的文档为准
+            manifest = new HashMap<>(manifest);
+            manifest.replaceAll((field, fingerprint) ->
+                    hnsw.contains(documentId(Long.valueOf(String.valueOf(field)))) ? fingerprint : "");
+        }
+
+        EmbeddingPipeline.Run<Seed> run = embeddingPipeline.start("seeds", this::seedToDocument, this::recordIndexed);
+        Set<String> current = new HashSet<>();
+        int changed = 0;
+        Long lastId = null;
+        List<Seed> page;
+        do {
+            page = nextPage(lastId);
+            for (Seed seed : page) {
+                String field = String.valueOf(seed.getId());
+                current.add(field);
+                if (!fingerprint(seed).equals(manifest.get(field))) {
+                    run.add(seed);
+                    changed++;
+                }
+            }
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == pageSize);
+        EmbeddingPipeline.Stats stats = run.finish();
+
+        List<String> removed = manifest.keySet().stream()
+                .map(String::valueOf)
+                .filter(field -> !current.contains(field))
+                .collect(Collectors.toList());
+        if (!removed.isEmpty()) {
+            delete(removed);
+        }
+
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            hnsw.snapshot();
+        }
+        redisTemplate.opsForHash().putAll(infoKey(), Map.of(
+                "model", modelId,
+                "dimensions", String.valueOf(dimensions),
+                "documents", String.valueOf(current.size()),
+                "syncedAt", String.valueOf(System.currentTimeMillis())));
+
+        SyncResult result = new SyncResult(current.size(), changed, current.size() - changed, removed.size(), stats);
+        log.info("Vector index synced - total: {}, embedded: {}, unchanged: {}, deleted: {}",
+                result.total(), result.embedded(), result.unchanged(), result.deleted());
+        return result;
+    }
+
+    /**
+     * 删除旧版本遗留的 Redis 向量索引
+     * 早期版本使用 Spring AI 默认的 spring-ai-index（文档前缀 embedding:、随机文档 ID），当前版本不再读写，
+     * 连同其文档一起删除（FT.DROPINDEX ... DD）。purge 只清理 seed-vector: 前缀，不会覆盖这部分文档。
+     * v2 之前的 seed-vector-index 与当前索引共用 seed-vector: 前缀下的文档，只删除索引本身，否则 RediSearch 会为同一批文档维护两份索引。
+     * 当前配置的索引不会被删除；索引不存在（已删除过）或 Redis 未加载 RediSearch 时忽略
+     */
+    public void dropLegacyIndexes() {
+        if (!dropLegacyIndexes) {
+            return;
+        }
+        LEGACY_INDEXES.forEach((index, deleteDocuments) -> {
+            if (index.equals(indexName)) {
+                return;
+            }
+            try {
+                byte[][] args = deleteDocuments
+                        ? new byte[][]{index.getBytes(StandardCharsets.UTF_8), "DD".getBytes(StandardCharsets.UTF_8)}
+                        : new byte[][]{index.getBytes(StandardCharsets.UTF_8)};
+                redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("FT.DROPINDEX", args));
+                log.info("Dropped legacy vector index {}{}", index, deleteDocuments ? " and its documents" : "");
+            } catch (Exception e) {
+                log.debug("Legacy vector index {} not dropped: {}", index, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 当前索引的元数据：模型 ID、向量维度、文档数和最近一次同步时间（毫秒时间戳），尚未同步过时只有配置值
+     */
+    public Map<String, String> info() {
+        Map<String, String> info = new HashMap<>();
+        redisTemplate.opsForHash().entries(infoKey()).forEach((field, value) ->
+                info.put(String.valueOf(field), String.valueOf(value)));
+        info.putIfAbsent("model", modelId);
+        info.putIfAbsent("dimensions", String.valueOf(dimensions));
+        info.put("manifestKey", manifestKey);
+        info.put("prefix", vectorPrefix);
+        return info;
+    }
+
+    private String infoKey() {
+        return manifestKey + ":info";
+    }
+
+    private List<Seed> nextPage(Long lastId) {
+        return seedMapper.selectList(new LambdaQueryWrapper<Seed>()
+                .gt(lastId != null, Seed::getId, lastId)
+                .orderByAsc(Seed::getId)
+                .last("LIMIT " + pageSize));
+    }
+
+    /**
+     * 写入单个种子的向量，内容没变时跳过
+     */
+    public void upsertSeed(Seed seed) {
+        writeLock.lock();
+        try {
+            pending.discard(seed.getId());
+            Object indexed = manifestStore.get(String.valueOf(seed.getId()));
+            if (!fingerprint(seed).equals(indexed)) {
+                upsert(List.of(seed));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 删除单个种子的向量
+     */
+    public void deleteSeed(Long seedId) {
+        writeLock.lock();
+        try {
+            pending.discard(seedId);
+            delete(List.of(String.valueOf(seedId)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 种子新增或修改后排队写入向量（不阻塞调用方），由 flushPending 批量写入
+     */
+    public void enqueueUpsert(Seed seed) {
+        pending.upsert(seed.getId(), seed);
+    }
+
+    /**
+     * 种子删除后排队删除向量
+     */
+    public void enqueueDelete(Long seedId) {
+        pending.delete(seedId);
+    }
+
+    /**
+     * 批量写入待写队列：删除合并为一次 delete，内容有变化的种子按 max-batch-size 分批向量化写入（每批一次 Embedding 调用）。
+     * 同步或压缩正在执行时跳过本轮；写入失败的种子放回队列（期间有更新的以更新为准），下一轮重试
+     */
+    @Scheduled(fixedDelayString = "${vector-store.write.flush-interval:2s}")
+    public void flushPending() {
+        pending.flush(writeLock, this::write);
+    }
+
+    private void write(PendingWrites.Batch<Long, Seed> batch) {
+        List<String> deletes = batch.deletes().stream().map(String::valueOf).collect(Collectors.toList());
+        List<Seed> upserts = new ArrayList<>(batch.upserts().values());
+        if (!deletes.isEmpty()) {
+            delete(deletes);
+        }
+        List<Seed> changed = changed(upserts);
+        for (int from = 0; from < changed.size(); from += batchSize) {
+            upsert(changed.subList(from, Math.min(from + batchSize, changed.size())));
+        }
+        log.info("Flushed pending vector writes - upserted: {}, unchanged: {}, deleted: {}",
+                changed.size(), upserts.size() - changed.size(), deletes.size());
+    }
+
+    /**
+     * 压缩向量索引，使索引大小与在库种子数一致：
+     * 1. 清单中有、MySQL 中已删除的种子，删除向量和清单记录（漏掉的删除事件）
+     * 2. 向量存储中有、清单中没有的文档（写入向量后未记入清单，或旧版本随机 ID 写入的重复文档），直接删除
+     * 3. 进程内 HNSW 索引中已删除节点的比例超过 compaction-threshold 时重建图
+     * 只比较 ID，不调用 Embedding 模型；清单不存在（尚未同步）时跳过
+     */
+    @Scheduled(fixedDelayString = "${vector-store.compaction.interval:1h}",
+            initialDelayString = "${vector-store.compaction.interval:1h}")
+    public void compact() {
+        if (!writeLock.tryLock()) {
+            log.info("Vector index compaction skipped, index is being written");
+            return;
+        }
+        try {
+            Map<Object, Object> manifest = manifestStore.entries();
+            if (manifest.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+
+            Set<String> seedIds = seedMapper.selectObjs(new LambdaQueryWrapper<Seed>().select(Seed::getId)).stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.toSet());
+            List<String> orphanedSeeds = manifest.keySet().stream()
+                    .map(String::valueOf)
+                    .filter(field -> !seedIds.contains(field))
+                    .collect(Collectors.toList());
+            if (!orphanedSeeds.isEmpty()) {
+                delete(orphanedSeeds);
+            }
+
+            Set<String> expected = manifest.keySet().stream()
+                    .map(String::valueOf)
+                    .filter(seedIds::contains)
+                    .map(field -> documentId(Long.valueOf(field)))
+                    .collect(Collectors.toSet());
+            long orphanedVectors;
+            boolean rebuilt = false;
+            if (vectorStore instanceof HnswVectorStore hnsw) {
+                List<String> orphans = hnsw.documentIds().stream()
+                        .filter(id -> !expected.contains(id))
+                        .collect(Collectors.toList());
+                hnsw.delete(orphans);
+                orphanedVectors = orphans.size();
+                rebuilt = hnsw.compact(compactionThreshold);
+                hnsw.snapshot();
+            } else {
+                orphanedVectors = manifestStore.deleteKeys(
+                        key -> !expected.contains(key.substring(vectorPrefix.length())));
+            }
+
+            log.info("Vector index compacted - deleted seeds: {}, orphaned vectors: {}, graph rebuilt: {}, took: {}ms",
+                    orphanedSeeds.size(), orphanedVectors, rebuilt, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Vector index compaction failed: {}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 与清单比较，返回内容或模型有变化、需要重新向量化的种子
+     */
+    private List<Seed> changed(List<Seed> seeds) {
+        if (seeds.isEmpty()) {
+            return seeds;
+        }
+        Map<Object, Object> indexed = manifestStore.entries(
+                seeds.stream().map(seed -> String.valueOf(seed.getId())).collect(Collectors.toList()));
+        return seeds.stream()
+                .filter(seed -> !fingerprint(seed).equals(indexed.get(String.valueOf(seed.getId()))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 删除一批种子的向量和清单记录
+     */
+    private void delete(List<String> seedIds) {
+        vectorStore.delete(seedIds.stream().map(field -> documentId(Long.valueOf(field))).collect(Collectors.toList()));
+        manifestStore.remove(seedIds);
+    }
+
+    /**
+     * 先写向量再更新清单：中途失败时未写入的种子下次同步会重试
+     */
+    private void upsert(List<Seed> seeds) {
+        vectorStore.add(seeds.stream().map(this::seedToDocument).collect(Collectors.toList()));
+        recordIndexed(seeds);
+    }
+
+    private void recordIndexed(List<Seed> seeds) {
+        Map<String, String> fingerprints = new HashMap<>();
+        seeds.forEach(seed -> fingerprints.put(String.valueOf(seed.getId()), fingerprint(seed)));
+        manifestStore.putAll(fingerprints);
+    }
+
+    /**
+     * 删除向量前缀下的所有文档和清单
+     */
+    private void purge() {
+        long deleted = manifestStore.purge(infoKey());
+        log.info("Vector index manifest missing, purged {} existing vector documents", deleted);
+    }
+
+    /**
+     * 按向量维度区分的索引名 / 键前缀：dimensions 不大于 0（模型默认维度）时保持原名，
+     * 否则加上维度后缀，如 seed-vector-index -> seed-vector-index-256，seed-vector: -> seed-vector-256:
+     */
+    public static String scoped(String name, int dimensions) {
+        if (dimensions <= 0) {
+            return name;
+        }
+        return name.endsWith(":")
+                ? name.substring(0, name.length() - 1) + "-" + dimensions + ":"
+                : name + "-" + dimensions;
+    }
+
+    /**
+     * 向量文档 ID：由种子 ID 确定
+     */
+    public static String documentId(Long seedId) {
+        return UUID.nameUUIDFromBytes(("seed:" + seedId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * 模型 ID + 内容哈希，任一变化都需要重新向量化
+     */
+    private String fingerprint(Seed seed) {
+        return modelId + ":" + VectorManifest.sha256(List.of(SeedVector.generateContent(seed)));
+    }
+
+    /**
+     * 将 Seed 转换为 Spring AI Document
+     */
+    private Document seedToDocument(Seed seed) {
+        String content = SeedVector.generateContent(seed);
+
+        // 创建元数据（cropType、approvalYear、approvalRegion 在 Redis 中建了 TAG / NUMERIC 索引，可用于过滤）
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(SemanticSearchService.META_SEED_ID, seed.getId());
+        metadata.put(SemanticSearchService.META_VARIETY_NAME, seed.getVarietyName());
+        metadata.put(SemanticSearchService.META_APPROVAL_NUMBER, seed.getApprovalNumber());
+        metadata.put(SemanticSearchService.META_CROP_TYPE, seed.getCropType());
+        metadata.put(SemanticSearchService.META_COMPANY, seed.getCompany());
+        metadata.put(SemanticSearchService.META_APPROVAL_YEAR, seed.getApprovalYear());
+        metadata.put(SemanticSearchService.META_APPROVAL_REGION, seed.getApprovalRegion());
+        // 元数据不允许为 null，缺失的字段不写入
+        metadata.values().removeIf(Objects::isNull);
+
+        return new Document(documentId(seed.getId()), content, metadata);
+    }
+
+    /**
+     * 同步结果
+     *
+     * @param total MySQL 中的种子数
+     * @param embedded 新增或内容变化、重新向量化的种子数
+     * @param unchanged 跳过的种子数
+     * @param deleted 删除向量的种子数
+     * @param stats 向量化流水线统计（吞吐量、Token 数和估算费用）
+     */
+    public record SyncResult(int total, int embedded, int unchanged, int deleted, EmbeddingPipeline.Stats stats) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.desheng.service;
+
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * 向量索引清单
+ * Redis Hash 记录每个源文档已写入向量的指纹（模型 ID + 内容哈希等），向量文档的键都在同一个前缀下。
+ * 种子索引（VectorIndexService）和审定详情分块索引（ApprovalVectorIndexService）共用：
+ * 读写清单、SCAN 前缀分批删除向量文档、清单缺失时清空整个索引
+ */
+final class VectorManifest {
+
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final VectorStore vectorStore;
+    private final String manifestKey;
+    private final String vectorPrefix;
+
+    VectorManifest(StringRedisTemplate redisTemplate, VectorStore vectorStore, String manifestKey, String vectorPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.vectorStore = vectorStore;
+        this.manifestKey = manifestKey;
+        this.vectorPrefix = vectorPrefix;
+    }
+
+    /**
+     * 全部清单记录
+     */
+    Map<Object, Object> entries() {
+        return redisTemplate.opsForHash().entries(manifestKey);
+    }
+
+    /**
+     * 一批文档的清单记录，没有记录的文档不在结果中
+     */
+    Map<Object, Object> entries(Collection<String> ids) {
+        List<Object> fields = new ArrayList<>(ids);
+        List<Object> values = redisTemplate.opsForHash().multiGet(manifestKey, fields);
+        Map<Object, Object> entries = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            if (values.get(i) != null) {
+                entries.put(fields.get(i), values.get(i));
+            }
+        }
+        return entries;
+    }
+
+    Object get(String id) {
+        return redisTemplate.opsForHash().get(manifestKey, id);
+    }
+
+    void put(String id, String entry) {
+        redisTemplate.opsForHash().put(manifestKey, id, entry);
+    }
+
+    void putAll(Map<String, String> entries) {
+        redisTemplate.opsForHash().putAll(manifestKey, entries);
+    }
+
+    void remove(Collection<String> ids) {
+        redisTemplate.opsForHash().delete(manifestKey, ids.toArray());
+    }
+
+    /**
+     * 删除前缀下的所有向量文档、清单以及 extraKeys；进程内 HNSW 索引直接清空
+     *
+     * @return 删除的向量文档数
+     */
+    long purge(String... extraKeys) {
+        long deleted = deleteKeys(key -> true);
+        List<String> keys = new ArrayList<>(Arrays.asList(extraKeys));
+        keys.add(manifestKey);
+        redisTemplate.delete(keys);
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            hnsw.clear();
+        }
+        return deleted;
+    }
+
+    /**
+     * SCAN 向量前缀下的键，按批删除满足条件的键
+     *
+     * @return 删除的键数
+     */
+    long deleteKeys(Predicate<String> condition) {
+        List<String> keys = new ArrayList<>();
+        long deleted = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(vectorPrefix + "*").count(SCAN_BATCH_SIZE).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (condition.test(key)) {
+                    keys.add(key);
+                }
+                if (keys.size() >= SCAN_BATCH_SIZE) {
+                    deleted += Objects.requireNonNullElse(redisTemplate.delete(keys), 0L);
+                    keys.clear();
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            deleted += Objects.requireNonNullElse(redisTemplate.delete(keys), 0L);
+        }
+        return deleted;
+    }
+
+    /**
+     * 按顺序拼接的内容的 SHA-256（十六进制），用作清单指纹中的内容哈希
+     */
+    static String sha256(Collection<String> contents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            contents.forEach(content -> digest.update(content.getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
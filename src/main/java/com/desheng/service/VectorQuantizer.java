@@ -0,0 +1,238 @@
+package com.desheng.service;
+
+import java.util.Arrays;
+
+/**
+ * 向量量化编码
+ * 为归一化后的向量生成紧凑编码，用于在内存中快速计算近似距离，最终结果再用全精度向量重排：
+ * - int8：每个分量按该向量的最大绝对值缩放到 [-127, 127]，近似点积 = Σ(a_i * b_i) * scaleA * scaleB，每个向量 dim + 4 字节
+ * - binary：每个分量只保留符号位，按 64 位打包，距离为汉明距离 / dim，每个向量 dim / 8 字节
+ *
+ * 编码与全精度向量一样按节点 ID 分段存放（每段最多 2^16 个节点，见 SegmentedVectors），节点数不受单个数组长度的限制；
+ * 写入方在发布节点之前写好编码，扩容时只复制最后一段，再替换段数组的引用
+ */
+public abstract class VectorQuantizer {
+
+    public static final String NONE = "none";
+    public static final String INT8 = "int8";
+    public static final String BINARY = "binary";
+
+    protected final int dimensions;
+    protected final int shift;
+    protected final int mask;
+    protected int capacity;
+
+    protected VectorQuantizer(int dimensions, long bytesPerVector) {
+        this.dimensions = dimensions;
+        this.shift = SegmentedVectors.segmentShift(bytesPerVector);
+        this.mask = (1 << shift) - 1;
+    }
+
+    /**
+     * 容纳 capacity 个节点需要的段数
+     */
+    protected int segments(int capacity) {
+        return (int) (((long) capacity + mask) >>> shift);
+    }
+
+    /**
+     * 容纳 capacity 个节点时第 segment 段的节点数
+     */
+    protected int segmentRows(int segment, int capacity) {
+        return SegmentedVectors.segmentRows(segment, capacity, shift);
+    }
+
+    /**
+     * @return 对应模式的量化器，none 返回 null
+     */
+    public static VectorQuantizer create(String mode, int dimensions) {
+        return switch (mode) {
+            case NONE -> null;
+            case INT8 -> new Int8(dimensions);
+            case BINARY -> new Binary(dimensions);
+            default -> throw new IllegalArgumentException("Unknown vector quantization: " + mode);
+        };
+    }
+
+    public abstract String mode();
+
+    /**
+     * 每个向量编码占用的字节数
+     */
+    public abstract int bytesPerVector();
+
+    public abstract void ensureCapacity(int capacity);
+
+    /**
+     * 写入节点的编码（只由写入方调用）
+     */
+    public abstract void set(int node, float[] vector);
+
+    /**
+     * 为一个查询向量创建近似距离计算器
+     */
+    public abstract Scorer scorer(float[] query);
+
+    /**
+     * 查询向量到节点的距离（越小越相似）
+     */
+    @FunctionalInterface
+    public interface Scorer {
+        float distance(int node);
+    }
+
+    /**
+     * int8 标量量化
+     */
+    static final class Int8 extends VectorQuantizer {
+
+        private volatile byte[][] codes = new byte[0][];
+        private volatile float[][] scales = new float[0][];
+
+        Int8(int dimensions) {
+            super(dimensions, dimensions);
+        }
+
+        @Override
+        public String mode() {
+            return INT8;
+        }
+
+        @Override
+        public int bytesPerVector() {
+            return dimensions + Float.BYTES;
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (capacity <= this.capacity) {
+                return;
+            }
+            byte[][] current = codes;
+            float[][] currentScales = scales;
+            int count = segments(capacity);
+            byte[][] grown = Arrays.copyOf(current, count);
+            float[][] grownScales = Arrays.copyOf(currentScales, count);
+            for (int i = Math.max(0, current.length - 1); i < count; i++) {
+                int rows = segmentRows(i, capacity);
+                grown[i] = i < current.length ? Arrays.copyOf(current[i], rows * dimensions) : new byte[rows * dimensions];
+                grownScales[i] = i < current.length ? Arrays.copyOf(currentScales[i], rows) : new float[rows];
+            }
+            scales = grownScales;
+            codes = grown;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void set(int node, float[] vector) {
+            int segment = node >>> shift;
+            scales[segment][node & mask] = encode(vector, codes[segment], (node & mask) * dimensions);
+        }
+
+        @Override
+        public Scorer scorer(float[] query) {
+            byte[] encoded = new byte[dimensions];
+            float queryScale = encode(query, encoded, 0);
+            byte[][] view = codes;
+            float[][] scaleView = scales;
+            return node -> {
+                int segment = node >>> shift;
+                int row = node & mask;
+                byte[] segmentCodes = view[segment];
+                int base = row * dimensions;
+                int dot = 0;
+                // 简单的 int 累加循环，C2 会自动向量化
+                for (int i = 0; i < dimensions; i++) {
+                    dot += encoded[i] * segmentCodes[base + i];
+                }
+                return 1 - dot * queryScale * scaleView[segment][row];
+            };
+        }
+
+        private float encode(float[] vector, byte[] target, int offset) {
+            float maxAbs = 0;
+            for (float v : vector) {
+                maxAbs = Math.max(maxAbs, Math.abs(v));
+            }
+            if (maxAbs == 0) {
+                return 0;
+            }
+            float scale = maxAbs / 127;
+            for (int i = 0; i < dimensions; i++) {
+                target[offset + i] = (byte) Math.round(vector[i] / scale);
+            }
+            return scale;
+        }
+    }
+
+    /**
+     * 1 位二值量化
+     */
+    static final class Binary extends VectorQuantizer {
+
+        private final int words;
+        private volatile long[][] codes = new long[0][];
+
+        Binary(int dimensions) {
+            super(dimensions, (long) ((dimensions + 63) / 64) * Long.BYTES);
+            this.words = (dimensions + 63) / 64;
+        }
+
+        @Override
+        public String mode() {
+            return BINARY;
+        }
+
+        @Override
+        public int bytesPerVector() {
+            return words * Long.BYTES;
+        }
+
+        @Override
+        public void ensureCapacity(int capacity) {
+            if (capacity <= this.capacity) {
+                return;
+            }
+            long[][] current = codes;
+            int count = segments(capacity);
+            long[][] grown = Arrays.copyOf(current, count);
+            for (int i = Math.max(0, current.length - 1); i < count; i++) {
+                int rows = segmentRows(i, capacity);
+                grown[i] = i < current.length ? Arrays.copyOf(current[i], rows * words) : new long[rows * words];
+            }
+            codes = grown;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void set(int node, float[] vector) {
+            encode(vector, codes[node >>> shift], (node & mask) * words);
+        }
+
+        @Override
+        public Scorer scorer(float[] query) {
+            long[] encoded = new long[words];
+            encode(query, encoded, 0);
+            long[][] view = codes;
+            return node -> {
+                long[] segment = view[node >>> shift];
+                int base = (node & mask) * words;
+                int hamming = 0;
+                // Long.bitCount 编译为 POPCNT 指令
+                for (int i = 0; i < words; i++) {
+                    hamming += Long.bitCount(encoded[i] ^ segment[base + i]);
+                }
+                return (float) hamming / dimensions;
+            };
+        }
+
+        private void encode(float[] vector, long[] target, int offset) {
+            Arrays.fill(target, offset, offset + words, 0L);
+            for (int i = 0; i < dimensions; i++) {
+                if (vector[i] > 0) {
+                    target[offset + (i >>> 6)] |= 1L << (i & 63);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.desheng.util;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * 搜索请求签名工具类
+ * 将查询条件规范化为稳定的字符串，用于结果缓存和请求合并的 key
+ */
+public class SearchKeyUtil {
+
+    private static final char SEPARATOR = '\u001F';
+
+    /**
+     * 生成签名
+     * 例如：signature("searchSeeds", " 华优 1号 ", 0, 10) -> searchSeeds␟华优 1号␟0␟10
+     */
+    public static String signature(String operation, Object... parts) {
+        StringBuilder sb = new StringBuilder(operation);
+        for (Object part : parts) {
+            sb.append(SEPARATOR).append(normalize(part));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 规范化单个条件：去除首尾空白、合并连续空白，空串视为未设置
+     */
+    public static String normalize(Object part) {
+        if (part == null) {
+            return "";
+        }
+        if (part instanceof Collection<?> collection) {
+            return collection.stream()
+                    .map(SearchKeyUtil::normalize)
+                    .collect(Collectors.joining(","));
+        }
+        return part.toString().trim().replaceAll("\\s+", " ");
+    }
+}
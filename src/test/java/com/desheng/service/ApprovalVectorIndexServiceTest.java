@@ -0,0 +1,59 @@
+package com.desheng.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class ApprovalVectorIndexServiceTest {
+
+    @Test
+    void textShorterThanMaxCharsIsOneChunk() {
+        assertThat(ApprovalVectorIndexService.split("抗稻瘟病", 10, 3)).containsExactly("抗稻瘟病");
+        assertThat(ApprovalVectorIndexService.split("一二三四五六七八九十", 10, 3)).containsExactly("一二三四五六七八九十");
+    }
+
+    @Test
+    void cutsAtTheLastSentenceBoundaryInTheSecondHalfOfTheWindow() {
+        List<String> parts = ApprovalVectorIndexService.split("一二三四五六七。八九十一二三四五", 10, 2);
+
+        // 第一块在句号后切开，第二块从前一块末尾往回 overlap 个字符开始
+        assertThat(parts).containsExactly("一二三四五六七。", "七。八九十一二三四五");
+    }
+
+    @Test
+    void ignoresSentenceBoundariesInTheFirstHalfOfTheWindow() {
+        List<String> parts = ApprovalVectorIndexService.split("一二三。四五六七八九十一二三四五", 10, 2);
+
+        assertThat(parts).containsExactly("一二三。四五六七八九", "八九十一二三四五");
+    }
+
+    @Test
+    void hardCutsWithOverlapWhenThereIsNoBoundary() {
+        List<String> parts = ApprovalVectorIndexService.split("abcdefghijklmnopqrstuvwxy", 10, 3);
+
+        assertThat(parts).containsExactly("abcdefghij", "hijklmnopq", "opqrstuvwx", "vwxy");
+    }
+
+    @Test
+    void alwaysMakesForwardProgressWithALargeOverlap() {
+        // 边界刚好落在窗口中点之后、overlap 为 maxChars / 2：有的分块只前进两个字符，但始终前进
+        String text = "一二三四五六。".repeat(20);
+
+        List<String> parts = assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> ApprovalVectorIndexService.split(text, 10, 5));
+
+        assertThat(parts).hasSizeLessThan(text.length())
+                .allSatisfy(part -> assertThat(part).hasSizeLessThanOrEqualTo(10));
+        assertThat(text).endsWith(parts.get(parts.size() - 1));
+
+        // overlap 超过 maxChars / 2 时（构造方法会截断，这里直接调用）每块至少前进一个字符
+        List<String> dense = assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> ApprovalVectorIndexService.split("abcdefghijklmnopqrstuvwxy", 10, 9));
+
+        assertThat(dense).hasSize(16).startsWith("abcdefghij", "bcdefghijk").endsWith("pqrstuvwxy");
+    }
+}
@@ -0,0 +1,121 @@
+package com.desheng.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ExactVectorSearchTest {
+
+    private static final float TOLERANCE = 1e-4f;
+
+    /**
+     * 覆盖 SIMD 宽度（4 / 8 / 16 路）的整数倍、余数循环，以及标量实现 8 路展开的余数循环
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3, 7, 8, 9, 15, 17, 31, 33, 256, 1536})
+    void vectorApiDotMatchesTheScalarLoop(int dimensions) {
+        assumeTrue(ExactVectorSearch.VECTOR_API, "run with --add-modules jdk.incubator.vector");
+        Random random = new Random(dimensions);
+
+        for (int trial = 0; trial < 100; trial++) {
+            float[] query = gaussian(random, dimensions);
+            // 行从非零偏移开始，验证 offset 在主循环和余数循环中都生效
+            int offset = 1 + random.nextInt(dimensions + 1);
+            float[] block = new float[offset + dimensions + 5];
+            System.arraycopy(gaussian(random, dimensions), 0, block, offset, dimensions);
+
+            float expected = reference(query, block, offset);
+            assertThat(VectorApiDot.dot(query, block, offset)).isCloseTo(expected, within(TOLERANCE));
+            assertThat(ExactVectorSearch.scalarDot(query, block, offset)).isCloseTo(expected, within(TOLERANCE));
+            assertThat(ExactVectorSearch.dot(query, block, offset)).isCloseTo(expected, within(TOLERANCE));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 256, 1536})
+    void searchMatchesAScalarBruteForce(int dimensions) {
+        Random random = new Random(31L * dimensions);
+        int rows = 3000;
+        SegmentedVectors matrix = new SegmentedVectors(dimensions, null);
+        matrix.ensureCapacity(rows, 0);
+        for (int i = 0; i < rows; i++) {
+            matrix.put(i, gaussian(random, dimensions));
+        }
+        // 候选行不连续，且跨越多个复制块（1536 维时每块 10 行）
+        int[] candidates = IntStream.range(0, rows).filter(i -> i % 3 != 1).toArray();
+        int[] padded = Arrays.copyOf(candidates, candidates.length + 7);
+
+        for (int trial = 0; trial < 5; trial++) {
+            float[] query = gaussian(random, dimensions);
+            int k = 10;
+
+            ExactVectorSearch.TopK top = ExactVectorSearch.search(query, matrix, padded, candidates.length, k);
+
+            float[] row = new float[dimensions];
+            Integer[] expected = IntStream.of(candidates).boxed()
+                    .sorted(Comparator.comparingDouble((Integer i) -> scalarScore(query, matrix, i, row)).reversed())
+                    .limit(k)
+                    .toArray(Integer[]::new);
+            assertThat(top.rows()).hasSize(k).doesNotHaveDuplicates();
+            for (int i = 0; i < k; i++) {
+                // 相似度几乎相同的行可能换位，按名次比较相似度，再核对每一行自身的相似度
+                assertThat(top.scores()[i]).isCloseTo(scalarScore(query, matrix, expected[i], row), within(TOLERANCE));
+                assertThat(top.scores()[i]).isCloseTo(scalarScore(query, matrix, top.rows()[i], row), within(TOLERANCE));
+                assertThat(top.rows()[i] % 3).isNotEqualTo(1);
+            }
+            for (int i = 1; i < k; i++) {
+                assertThat(top.scores()[i]).isLessThanOrEqualTo(top.scores()[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    void returnsAllCandidatesWhenKExceedsTheirCount() {
+        SegmentedVectors matrix = new SegmentedVectors(2, null);
+        matrix.ensureCapacity(4, 0);
+        matrix.put(0, new float[]{1, 0});
+        matrix.put(1, new float[]{0, 1});
+        matrix.put(2, new float[]{-1, 0});
+        matrix.put(3, new float[]{0.6f, 0.8f});
+
+        ExactVectorSearch.TopK top = ExactVectorSearch.search(new float[]{1, 0}, matrix, new int[]{0, 1, 2, 3}, 4, 10);
+
+        assertThat(top.rows()).containsExactly(0, 3, 1, 2);
+        assertThat(top.scores()).containsExactly(1f, 0.6f, 0f, -1f);
+        assertThat(ExactVectorSearch.search(new float[]{1, 0}, matrix, new int[]{0, 1}, 0, 10).rows()).isEmpty();
+    }
+
+    private static float scalarScore(float[] query, SegmentedVectors matrix, int node, float[] row) {
+        matrix.get(node, row);
+        return ExactVectorSearch.scalarDot(query, row, 0);
+    }
+
+    private static float reference(float[] query, float[] block, int offset) {
+        double dot = 0;
+        for (int i = 0; i < query.length; i++) {
+            dot += (double) query[i] * block[offset + i];
+        }
+        return (float) dot;
+    }
+
+    /**
+     * 范数约为 1 的随机向量；不做归一化，1 维时相似度也各不相同
+     */
+    private static float[] gaussian(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        float scale = (float) (1 / Math.sqrt(dimensions));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian() * scale;
+        }
+        return vector;
+    }
+}
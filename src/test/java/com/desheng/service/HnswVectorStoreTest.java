@@ -0,0 +1,356 @@
+package com.desheng.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 8;
+
+    private final FixedEmbeddingModel embeddingModel = new FixedEmbeddingModel(DIMENSIONS, 42);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void searchReturnsTheExactTopKOnASmallSet() {
+        // ef 不小于节点数时走顺序扫描，结果必须与暴力计算完全一致
+        HnswVectorStore store = store(64, null, VectorQuantizer.NONE, null);
+        store.add(documents(0, 40));
+        List<Integer> all = IntStream.range(0, 40).boxed().toList();
+
+        for (int q = 0; q < 40; q++) {
+            List<Document> results = store.similaritySearch(query(q, 5));
+
+            assertThat(ids(results)).containsExactlyElementsOf(bruteForce(q, 5, all));
+            assertThat(results.get(0).getId()).isEqualTo(id(q));
+            assertThat(results.get(0).getScore()).isCloseTo(1.0, within(1e-5));
+            assertThat(results.get(0).getMetadata()).containsEntry("seedId", (long) q);
+            assertThat(results.get(0).getText()).isEqualTo(text(q));
+        }
+    }
+
+    @Test
+    void exactSearchMatchesBruteForce() {
+        HnswVectorStore store = store(16, null, VectorQuantizer.NONE, null);
+        store.add(documents(0, 300));
+        List<Integer> all = IntStream.range(0, 300).boxed().toList();
+
+        for (int q = 0; q < 20; q++) {
+            List<Document> results = store.exactSearch(query(q, 10), 1000).orElseThrow();
+
+            assertThat(ids(results)).containsExactlyElementsOf(bruteForce(q, 10, all));
+        }
+        assertThat(store.exactSearch(query(0, 10), 299)).isEmpty();
+    }
+
+    @Test
+    void graphSearchFindsTheNearestNeighbors() {
+        // ef 小于节点数时走图检索：近似结果，整体召回率应接近 1
+        HnswVectorStore store = store(64, null, VectorQuantizer.NONE, null);
+        store.add(documents(0, 500));
+        List<Integer> all = IntStream.range(0, 500).boxed().toList();
+
+        int hits = 0;
+        for (int q = 0; q < 50; q++) {
+            Set<String> expected = Set.copyOf(bruteForce(q, 10, all));
+            hits += (int) ids(store.similaritySearch(query(q, 10))).stream().filter(expected::contains).count();
+        }
+        assertThat(hits / 500.0).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void deleteHidesTheNode() {
+        HnswVectorStore store = store(64, null, VectorQuantizer.NONE, null);
+        store.add(documents(0, 20));
+
+        store.delete(List.of(id(3), "missing"));
+
+        assertThat(store.contains(id(3))).isFalse();
+        assertThat(store.liveCount()).isEqualTo(19);
+        assertThat(store.documentIds()).doesNotContain(id(3)).hasSize(19);
+        assertThat(ids(store.similaritySearch(query(3, 20)))).doesNotContain(id(3)).hasSize(19);
+        assertThat(ids(store.exactSearch(query(3, 20), 100).orElseThrow())).doesNotContain(id(3)).hasSize(19);
+    }
+
+    @Test
+    void reAddingADocumentReplacesItsPreviousNode() {
+        HnswVectorStore store = store(64, null, VectorQuantizer.NONE, null);
+        store.add(documents(0, 10));
+
+        store.add(List.of(Document.builder().id(id(2)).text(text(5)).metadata(Map.of("seedId", 2L)).build()));
+
+        assertThat(store.liveCount()).isEqualTo(10);
+        List<Document> results = store.similaritySearch(query(5, 10));
+        assertThat(ids(results)).containsOnlyOnce(id(2));
+        assertThat(results.stream().filter(document -> document.getId().equals(id(2))).findFirst().orElseThrow()
+                .getText()).isEqualTo(text(5));
+    }
+
+    @Test
+    void compactKeepsTheLiveNodes() {
+        HnswVectorStore store = store(64, null, VectorQuantizer.NONE, null);
+        store.add(documents(0, 100));
+        store.delete(IntStream.range(0, 100).filter(i -> i % 2 == 0).mapToObj(HnswVectorStoreTest::id).toList());
+
+        assertThat(store.compact(0.2)).isTrue();
+
+        List<Integer> live = IntStream.range(0, 100).filter(i -> i % 2 == 1).boxed().toList();
+        assertThat(store.liveCount()).isEqualTo(50);
+        assertThat(store.documentIds())
+                .containsExactlyInAnyOrderElementsOf(live.stream().map(HnswVectorStoreTest::id).toList());
+        for (int q : live) {
+            List<Document> results = store.similaritySearch(query(q, 5));
+            assertThat(ids(results)).containsExactlyElementsOf(bruteForce(q, 5, live));
+            assertThat(results.get(0).getText()).isEqualTo(text(q));
+            assertThat(results.get(0).getMetadata()).containsEntry("seedId", (long) q);
+        }
+        // 没有已删除的节点，不再重建
+        assertThat(store.compact(0.2)).isFalse();
+    }
+
+    @Test
+    void compactedMemoryMappedStoreKeepsAcceptingWrites() {
+        Path vectorFile = tempDir.resolve("seeds.vec");
+        HnswVectorStore store = store(64, null, VectorQuantizer.INT8, vectorFile);
+        store.add(documents(0, 60));
+        store.delete(IntStream.range(0, 30).mapToObj(HnswVectorStoreTest::id).toList());
+
+        assertThat(store.compact(0.2)).isTrue();
+        // 重建后的向量文件已替换原文件，之后的扩容映射原路径
+        store.add(documents(60, 2000));
+
+        assertThat(store.liveCount()).isEqualTo(1970);
+        assertThat(tempDir.resolve("seeds.vec.compact")).doesNotExist();
+        for (int q : List.of(30, 59, 60, 1000, 1999)) {
+            assertThat(store.exactSearch(query(q, 1), 5000).orElseThrow().get(0).getId()).isEqualTo(id(q));
+        }
+    }
+
+    @Test
+    void snapshotRoundTrip() {
+        Path snapshot = tempDir.resolve("seeds.idx");
+        HnswVectorStore store = store(16, snapshot, VectorQuantizer.NONE, null);
+        store.add(documents(0, 200));
+        store.delete(List.of(id(7)));
+        store.snapshot();
+
+        HnswVectorStore restored = store(16, snapshot, VectorQuantizer.NONE, null);
+
+        assertThat(restored.liveCount()).isEqualTo(199);
+        assertThat(restored.documentIds()).isEqualTo(store.documentIds());
+        for (int q = 0; q < 20; q++) {
+            List<Document> expected = store.similaritySearch(query(q, 10));
+            List<Document> actual = restored.similaritySearch(query(q, 10));
+            assertThat(ids(actual)).containsExactlyElementsOf(ids(expected));
+            assertThat(actual).extracting(Document::getScore)
+                    .containsExactlyElementsOf(expected.stream().map(Document::getScore).toList());
+        }
+        Document first = restored.similaritySearch(query(11, 1)).get(0);
+        assertThat(first.getText()).isEqualTo(text(11));
+        assertThat(first.getMetadata()).containsEntry("seedId", 11L).containsEntry("cropType", "水稻");
+    }
+
+    @Test
+    void restoreRejectsASnapshotWithOtherDimensions() {
+        Path snapshot = tempDir.resolve("seeds.idx");
+        HnswVectorStore store = store(16, snapshot, VectorQuantizer.NONE, null);
+        store.add(documents(0, 20));
+        store.snapshot();
+
+        FixedEmbeddingModel wider = new FixedEmbeddingModel(DIMENSIONS * 2, 7);
+        HnswVectorStore restored = new HnswVectorStore(wider, DIMENSIONS * 2, 8, 100, 16, snapshot, VectorQuantizer.NONE, 4, null);
+
+        assertThat(restored.liveCount()).isZero();
+        assertThat(restored.similaritySearch(SearchRequest.builder().query(text(0)).topK(5).build())).isEmpty();
+    }
+
+    @Test
+    void concurrentReadersNeverSeeAHalfWrittenNode() throws Exception {
+        int total = 3000;
+        HnswVectorStore store = store(16, null, VectorQuantizer.NONE, null);
+        store.add(documents(0, 1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> failures = new CopyOnWriteArrayList<>();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                try {
+                    for (int i = 1; i < total; i++) {
+                        store.add(documents(i, i + 1));
+                        if (i % 500 == 0) {
+                            store.delete(List.of(id(i - 1)));
+                        }
+                    }
+                } finally {
+                    writing.set(false);
+                }
+            });
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 4; r++) {
+                readers.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        int q = ThreadLocalRandom.current().nextInt(total);
+                        verify(store.similaritySearch(query(q, 10)), q, failures);
+                        verify(store.exactSearch(query(q, 10), total).orElseThrow(), q, failures);
+                    }
+                }));
+            }
+
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(failures).isEmpty();
+        assertThat(store.liveCount()).isEqualTo(total - 5);
+    }
+
+    /**
+     * 每个结果的文本、种子 ID 和得分都必须与写入的文档一致：节点在向量和元数据写完之前不能被读取方看到
+     */
+    private void verify(List<Document> results, int q, List<String> failures) {
+        for (Document document : results) {
+            int i = Integer.parseInt(document.getId().substring("doc-".length()));
+            if (!text(i).equals(document.getText())
+                    || !Long.valueOf(i).equals(document.getMetadata().get("seedId"))
+                    || Math.abs(document.getScore() - embeddingModel.cosine(q, i)) > 1e-4) {
+                failures.add("query " + q + " returned an inconsistent document " + document);
+            }
+        }
+    }
+
+    private HnswVectorStore store(int efSearch, Path snapshot, String quantization, Path vectorFile) {
+        return new HnswVectorStore(embeddingModel, DIMENSIONS, 8, 100, efSearch, snapshot, quantization, 4, vectorFile);
+    }
+
+    private List<Document> documents(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> Document.builder()
+                        .id(id(i))
+                        .text(text(i))
+                        .metadata(Map.of("seedId", (long) i, "cropType", "水稻"))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private SearchRequest query(int i, int topK) {
+        return SearchRequest.builder().query(text(i)).topK(topK).build();
+    }
+
+    private List<String> bruteForce(int q, int topK, List<Integer> candidates) {
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble((Integer i) -> embeddingModel.cosine(q, i)).reversed())
+                .limit(topK)
+                .map(HnswVectorStoreTest::id)
+                .toList();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    private static String id(int i) {
+        return "doc-" + i;
+    }
+
+    private static String text(int i) {
+        return "seed-" + i;
+    }
+
+    /**
+     * 文本 seed-i 映射为固定的随机向量（同一个种子生成），测试可以直接计算期望的相似度
+     */
+    private static final class FixedEmbeddingModel implements EmbeddingModel {
+
+        private final int dimensions;
+        private final long seed;
+        private final Map<Integer, float[]> vectors = new ConcurrentHashMap<>();
+
+        FixedEmbeddingModel(int dimensions, long seed) {
+            this.dimensions = dimensions;
+            this.seed = seed;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> instructions = request.getInstructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                embeddings.add(new Embedding(embed(instructions.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(String text) {
+            return vector(Integer.parseInt(text.substring("seed-".length()))).clone();
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return dimensions;
+        }
+
+        double cosine(int a, int b) {
+            float[] x = vector(a);
+            float[] y = vector(b);
+            double dot = 0;
+            double normX = 0;
+            double normY = 0;
+            for (int i = 0; i < dimensions; i++) {
+                dot += x[i] * y[i];
+                normX += x[i] * x[i];
+                normY += y[i] * y[i];
+            }
+            return dot / Math.sqrt(normX * normY);
+        }
+
+        private float[] vector(int i) {
+            return vectors.computeIfAbsent(i, key -> {
+                Random random = new Random(seed * 31 + key);
+                float[] vector = new float[dimensions];
+                for (int d = 0; d < dimensions; d++) {
+                    vector[d] = (float) random.nextGaussian();
+                }
+                return vector;
+            });
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.desheng.service;
+
+import com.desheng.model.dto.HybridSearchResultDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HybridSearchServiceTest {
+
+    private HybridSearchService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new HybridSearchService(null, null, null);
+        ReflectionTestUtils.setField(service, "rankConstant", 60);
+    }
+
+    @Test
+    void fusesBothLegsByReciprocalRank() {
+        HybridSearchService.Fused fused = service.fuse(
+                lexical(1L, 2L, 3L),
+                semantic(3L, 1L, 4L),
+                10);
+
+        List<HybridSearchResultDto> results = fused.results();
+        assertThat(results).extracting(HybridSearchResultDto::getSeedId).containsExactly(1L, 3L, 2L, 4L);
+        assertThat(results.get(0).getScore()).isCloseTo(1.0 / 61 + 1.0 / 62, within(1e-12));
+        assertThat(results.get(1).getScore()).isCloseTo(1.0 / 63 + 1.0 / 61, within(1e-12));
+        assertThat(results.get(2).getScore()).isCloseTo(1.0 / 62, within(1e-12));
+        assertThat(results.get(3).getScore()).isCloseTo(1.0 / 63, within(1e-12));
+
+        assertThat(results).extracting(HybridSearchResultDto::getLexicalRank).containsExactly(1, 3, 2, null);
+        assertThat(results).extracting(HybridSearchResultDto::getSemanticRank).containsExactly(2, 1, null, 3);
+        assertThat(fused.degradedLegs()).isEmpty();
+    }
+
+    @Test
+    void limitsToTopK() {
+        HybridSearchService.Fused fused = service.fuse(lexical(1L, 2L, 3L), semantic(3L, 1L, 4L), 2);
+
+        assertThat(fused.results()).extracting(HybridSearchResultDto::getSeedId).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void duplicateIdsInALegKeepTheirFirstRank() {
+        HybridSearchService.Fused fused = service.fuse(lexical(1L, 2L, 1L), semantic(), 10);
+
+        assertThat(fused.results()).extracting(HybridSearchResultDto::getSeedId).containsExactly(1L, 2L);
+        assertThat(fused.results()).extracting(HybridSearchResultDto::getLexicalRank).containsExactly(1, 2);
+        assertThat(fused.results().get(0).getScore()).isCloseTo(1.0 / 61, within(1e-12));
+    }
+
+    @Test
+    void equalScoresAreOrderedByBestRank() {
+        // k = 0 时得分为 1 / rank：7 号两路都排第 2（1/2 + 1/2），与各自只在一路排第 1 的 5 号、9 号得分相同
+        ReflectionTestUtils.setField(service, "rankConstant", 0);
+
+        HybridSearchService.Fused fused = service.fuse(lexical(5L, 7L), semantic(9L, 7L), 10);
+
+        List<HybridSearchResultDto> results = fused.results();
+        assertThat(results).extracting(HybridSearchResultDto::getScore).containsOnly(1.0);
+        assertThat(results).extracting(HybridSearchResultDto::getSeedId).containsExactly(5L, 9L, 7L);
+    }
+
+    @Test
+    void degradedLegIsReportedAndTheOtherLegIsRankedAlone() {
+        HybridSearchService.Fused fused = service.fuse(
+                new HybridSearchService.Leg(HybridSearchService.LEG_LEXICAL, List.of(), new TimeoutException()),
+                semantic(5L, 6L),
+                10);
+
+        List<HybridSearchResultDto> results = fused.results();
+        assertThat(results).extracting(HybridSearchResultDto::getSeedId).containsExactly(5L, 6L);
+        assertThat(results.get(0).getScore()).isCloseTo(1.0 / 61, within(1e-12));
+        assertThat(results.get(1).getScore()).isCloseTo(1.0 / 62, within(1e-12));
+        assertThat(results).extracting(HybridSearchResultDto::getLexicalRank).containsOnlyNulls();
+        assertThat(fused.degradedLegs()).containsExactly(HybridSearchService.LEG_LEXICAL);
+    }
+
+    @Test
+    void bothLegsDegradedAreBothReported() {
+        HybridSearchService.Fused fused = service.fuse(
+                new HybridSearchService.Leg(HybridSearchService.LEG_LEXICAL, List.of(), new IllegalStateException()),
+                new HybridSearchService.Leg(HybridSearchService.LEG_SEMANTIC, List.of(), new TimeoutException()),
+                10);
+
+        assertThat(fused.results()).isEmpty();
+        assertThat(fused.degradedLegs())
+                .containsExactly(HybridSearchService.LEG_LEXICAL, HybridSearchService.LEG_SEMANTIC);
+    }
+
+    private static HybridSearchService.Leg lexical(Long... ids) {
+        return new HybridSearchService.Leg(HybridSearchService.LEG_LEXICAL, List.of(ids), null);
+    }
+
+    private static HybridSearchService.Leg semantic(Long... ids) {
+        return new HybridSearchService.Leg(HybridSearchService.LEG_SEMANTIC, List.of(ids), null);
+    }
+}
@@ -0,0 +1,125 @@
+package com.desheng.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MicroBatchingEmbeddingModelTest {
+
+    private final ExecutorService batchExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger batchCalls = new AtomicInteger();
+    private final BlockingModel delegate = new BlockingModel();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        batchExecutor.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentEmbedsAreMergedIntoOneCall() throws Exception {
+        release.countDown();
+        MicroBatchingEmbeddingModel model = model(Duration.ofMillis(200), Duration.ofSeconds(5), 8, 1);
+
+        List<Future<float[]>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String text = "水稻 " + i;
+            results.add(callers.submit(() -> model.embed(text)));
+        }
+        for (int i = 0; i < 8; i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS)).containsExactly(delegate.embed("水稻 " + i));
+        }
+        assertThat(batchCalls.get()).isEqualTo(1);
+        model.destroy();
+    }
+
+    @Test
+    void embedFailsAfterTheResultTimeout() throws Exception {
+        MicroBatchingEmbeddingModel model = model(Duration.ofMillis(1), Duration.ofMillis(100), 1, 1);
+
+        assertThatThrownBy(() -> model.embed("水稻"))
+                .isInstanceOf(RuntimeException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        model.destroy();
+    }
+
+    @Test
+    void destroyFailsQueuedTextsAndLetsSubmittedBatchesFinish() throws Exception {
+        MicroBatchingEmbeddingModel model = model(Duration.ofMillis(1), Duration.ofSeconds(30), 1, 1);
+
+        // 第一条占用唯一的批次名额并阻塞在模型调用中，之后的请求留在调度线程或队列中
+        Future<float[]> submitted = callers.submit(() -> model.embed("submitted"));
+        awaitBatchCalls(1);
+        Future<float[]> waiting = callers.submit(() -> model.embed("waiting"));
+        Future<float[]> queued = callers.submit(() -> model.embed("queued"));
+        Thread.sleep(50);
+
+        model.destroy();
+
+        assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> model.embed("after shutdown")).isInstanceOf(IllegalStateException.class);
+
+        release.countDown();
+        assertThat(submitted.get(5, TimeUnit.SECONDS)).containsExactly(delegate.embed("submitted"));
+    }
+
+    private MicroBatchingEmbeddingModel model(Duration maxWait, Duration resultTimeout, int maxBatchSize,
+                                              int maxInFlight) {
+        return new MicroBatchingEmbeddingModel(delegate, batchExecutor, maxWait, resultTimeout, maxBatchSize,
+                maxInFlight, new SimpleMeterRegistry());
+    }
+
+    private void awaitBatchCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (batchCalls.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(batchCalls.get()).isEqualTo(expected);
+    }
+
+    /**
+     * 批量调用在 release 之前阻塞，单条 embed 直接计算（用于比对结果）
+     */
+    private final class BlockingModel extends HashingEmbeddingModel {
+
+        BlockingModel() {
+            super(16);
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            batchCalls.incrementAndGet();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.call(request);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.desheng.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentedVectorsTest {
+
+    private static final int DIMENSIONS = 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void segmentsStayBelowOneGigabyte() {
+        assertThat(SegmentedVectors.segmentShift(DIMENSIONS * Float.BYTES)).isEqualTo(16);
+        assertThat(SegmentedVectors.segmentShift(1536L * Float.BYTES)).isEqualTo(16);
+        // 8192 维一行 32KB：2^16 行超过 1GB，每段 2^15 行
+        assertThat(SegmentedVectors.segmentShift(8192L * Float.BYTES)).isEqualTo(15);
+    }
+
+    @Test
+    void growsByDoublingWithinTheFirstSegmentThenBySegment() {
+        assertThat(SegmentedVectors.grow(0, 1, 16)).isEqualTo(1024);
+        assertThat(SegmentedVectors.grow(1024, 1025, 16)).isEqualTo(2048);
+        assertThat(SegmentedVectors.grow(1 << 16, (1 << 16) + 1, 16)).isEqualTo(2 << 16);
+        assertThat(SegmentedVectors.grow(0, 5000, 16)).isEqualTo(5000);
+        assertThat(SegmentedVectors.segmentRows(0, 1024, 16)).isEqualTo(1024);
+        assertThat(SegmentedVectors.segmentRows(1, (1 << 16) + 10, 16)).isEqualTo(10);
+    }
+
+    @Test
+    void keepsWrittenRowsAcrossGrowthAndSegmentBoundaries() {
+        SegmentedVectors vectors = new SegmentedVectors(DIMENSIONS, null);
+        int rows = (1 << 16) + 100;
+        for (int i = 0; i < rows; i++) {
+            vectors.ensureCapacity(i + 1, i);
+            vectors.put(i, row(i));
+        }
+
+        assertThat(vectors.capacity()).isGreaterThanOrEqualTo(rows);
+        for (int i : new int[]{0, 1023, 1024, (1 << 16) - 1, 1 << 16, rows - 1}) {
+            assertThat(read(vectors, i)).containsExactly(row(i));
+        }
+        assertThat(vectors.dot(1, 2)).isEqualTo(dot(row(1), row(2)));
+    }
+
+    @Test
+    void bulkGetCopiesARowAtAnOffset() {
+        SegmentedVectors vectors = new SegmentedVectors(DIMENSIONS, null);
+        vectors.ensureCapacity(3, 0);
+        vectors.put(2, row(2));
+
+        float[] block = new float[DIMENSIONS * 3];
+        vectors.get(2, block, DIMENSIONS);
+
+        float[] copied = new float[DIMENSIONS];
+        System.arraycopy(block, DIMENSIONS, copied, 0, DIMENSIONS);
+        assertThat(copied).containsExactly(row(2));
+        assertThat(block[0]).isZero();
+        assertThat(block[DIMENSIONS * 2]).isZero();
+    }
+
+    @Test
+    void memoryMappedRowsSurviveRemapping() {
+        SegmentedVectors vectors = new SegmentedVectors(DIMENSIONS, tempDir.resolve("seeds.vec"));
+        for (int i = 0; i < 5000; i++) {
+            vectors.ensureCapacity(i + 1, i);
+            vectors.put(i, row(i));
+        }
+
+        // 扩容重新映射同一个文件区域，之前写入的行不需要复制
+        for (int i : new int[]{0, 1023, 1024, 4999}) {
+            assertThat(read(vectors, i)).containsExactly(row(i));
+        }
+    }
+
+    @Test
+    void writeToAndReadFromRoundTrip() throws IOException {
+        SegmentedVectors vectors = new SegmentedVectors(DIMENSIONS, null);
+        int rows = 3000;
+        vectors.ensureCapacity(rows, 0);
+        for (int i = 0; i < rows; i++) {
+            vectors.put(i, row(i));
+        }
+
+        Path file = tempDir.resolve("vectors.bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8));
+            vectors.writeTo(channel, rows);
+        }
+
+        SegmentedVectors restored = new SegmentedVectors(DIMENSIONS, null);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThat(restored.readFrom(channel, 8, rows)).isEqualTo((long) rows * DIMENSIONS * Float.BYTES);
+        }
+        for (int i = 0; i < rows; i++) {
+            assertThat(read(restored, i)).containsExactly(row(i));
+        }
+    }
+
+    private static float[] read(SegmentedVectors vectors, int row) {
+        float[] vector = new float[DIMENSIONS];
+        vectors.get(row, vector);
+        return vector;
+    }
+
+    private static float[] row(int i) {
+        float[] vector = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] = i * 10 + d + 0.5f;
+        }
+        return vector;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+}
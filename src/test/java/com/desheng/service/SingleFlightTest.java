@@ -0,0 +1,207 @@
+package com.desheng.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final String KEY = "seeds|q=水稻";
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight singleFlight;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight(meterRegistry, Duration.ofSeconds(5));
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalCallsShareOneBackendCall() throws Exception {
+        int callers = 8;
+        AtomicInteger backendCalls = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            backendCalls.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return "result";
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 1; i < callers; i++) {
+            followers.add(executor.submit(() -> singleFlight.execute(KEY, () -> {
+                backendCalls.incrementAndGet();
+                return "duplicate";
+            })));
+        }
+        awaitSharedCalls(callers - 1);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        for (Future<String> follower : followers) {
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        }
+        assertThat(backendCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void followersReceiveTheLeadersException() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("backend down");
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            leaderStarted.countDown();
+            await(release);
+            throw failure;
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<String> follower = executor.submit(() -> singleFlight.execute(KEY, () -> "unused"));
+        awaitSharedCalls(1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCause(failure);
+    }
+
+    @Test
+    void followerTimesOutWhileTheLeaderIsStillRunning() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute(KEY, () -> {
+            leaderStarted.countDown();
+            await(release);
+            return "result";
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> singleFlight.execute(KEY, Duration.ofMillis(50), () -> "unused"))
+                .isInstanceOf(RuntimeException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    }
+
+    @Test
+    void keyIsRemovedAfterCompletion() {
+        AtomicInteger backendCalls = new AtomicInteger();
+
+        assertThat(singleFlight.execute(KEY, () -> "first-" + backendCalls.incrementAndGet())).isEqualTo("first-1");
+        assertThat(singleFlight.execute(KEY, () -> "second-" + backendCalls.incrementAndGet())).isEqualTo("second-2");
+
+        assertThatThrownBy(() -> singleFlight.execute(KEY, () -> {
+            backendCalls.incrementAndGet();
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(singleFlight.execute(KEY, () -> "after-failure-" + backendCalls.incrementAndGet()))
+                .isEqualTo("after-failure-4");
+    }
+
+    @Test
+    void asyncFollowersShareOneBackendCall() throws Exception {
+        AtomicInteger backendCalls = new AtomicInteger();
+        CompletableFuture<String> backend = new CompletableFuture<>();
+
+        CompletableFuture<String> leader = singleFlight.executeAsync(KEY, () -> {
+            backendCalls.incrementAndGet();
+            return backend;
+        });
+        CompletableFuture<String> follower = singleFlight.executeAsync(KEY, () -> {
+            backendCalls.incrementAndGet();
+            return CompletableFuture.completedFuture("duplicate");
+        });
+        backend.complete("result");
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(backendCalls.get()).isEqualTo(1);
+
+        // 完成后 key 已移除，下一次调用重新访问后端
+        singleFlight.executeAsync(KEY, () -> {
+            backendCalls.incrementAndGet();
+            return CompletableFuture.completedFuture("next");
+        }).get(5, TimeUnit.SECONDS);
+        assertThat(backendCalls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void cancellingTheLeadersFutureDoesNotFailFollowers() throws Exception {
+        CompletableFuture<String> backend = new CompletableFuture<>();
+
+        CompletableFuture<String> leader = singleFlight.executeAsync(KEY, () -> backend);
+        CompletableFuture<String> follower = singleFlight.executeAsync(KEY,
+                () -> CompletableFuture.completedFuture("duplicate"));
+
+        leader.cancel(true);
+        backend.complete("result");
+
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(backend.isCancelled()).isFalse();
+        assertThatThrownBy(leader::join).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void cancellingAFollowersFutureDoesNotFailTheLeader() throws Exception {
+        CompletableFuture<String> backend = new CompletableFuture<>();
+
+        CompletableFuture<String> leader = singleFlight.executeAsync(KEY, () -> backend);
+        CompletableFuture<String> follower = singleFlight.executeAsync(KEY,
+                () -> CompletableFuture.completedFuture("duplicate"));
+
+        follower.cancel(true);
+        backend.complete("result");
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    }
+
+    private void awaitSharedCalls(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sharedCalls() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(sharedCalls()).isEqualTo(expected);
+    }
+
+    private double sharedCalls() {
+        return meterRegistry.get("search.singleflight.calls").tag("result", "shared").counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}